@@ -1,8 +1,10 @@
+import config.AppConfig;
 import lombok.extern.slf4j.Slf4j;
-import model.tmdb.Movie;
 import controller.GameController;
 import model.game.GameSession;
-import model.game.WinCondition;
+import server.GameServer;
+import service.game.GameEngine;
+import service.game.GameJournal;
 import service.movie.MovieDataService;
 import service.movie.MovieDataServiceImpl;
 import com.googlecode.lanterna.TerminalSize;
@@ -10,6 +12,8 @@ import com.googlecode.lanterna.gui2.*;
 import com.googlecode.lanterna.screen.Screen;
 import com.googlecode.lanterna.terminal.DefaultTerminalFactory;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 
@@ -26,13 +30,27 @@ public class Main {
             
             
 
-            Movie startMovie = movieDataService.getRandomStarterMovie();
+            GameEngine engine = new GameEngine(movieDataService);
 
-            
+            if (args.length > 0 && "--server".equals(args[0])) {
+                // Serve games over HTTP instead of the terminal UI
+                int port = Integer.parseInt(AppConfig
+                                                    .getInstance()
+                                                    .getProperty("server.port", "8080"));
+                GameJournal journal = openJournal(engine);
+                GameServer server = new GameServer(engine, movieDataService, port);
+                Runtime
+                        .getRuntime()
+                        .addShutdownHook(new Thread(() -> {
+                            server.close();
+                            if (journal != null) {
+                                closeJournal(engine, journal);
+                            }
+                        }));
+                server.start();
+                return;
+            }
 
-            WinCondition placeholder1 = new WinCondition("genre", "Action", 3);
-            WinCondition placeholder2 = new WinCondition("genre", "Comedy", 4);
-            
             Screen screen = new DefaultTerminalFactory().createScreen();
             screen.startScreen();
             MultiWindowTextGUI gui = new MultiWindowTextGUI(screen, new DefaultWindowManager(), new EmptySpace());
@@ -65,13 +83,47 @@ public class Main {
 
             gui.addWindowAndWait(inputWindow);
 
-            GameSession session = new GameSession("session-001", startMovie, placeholder1, placeholder2, player1Name.get(), player2Name.get());
+            // Random starting movie and win conditions, under a fresh session ID
+            // The controller starts the turn clock once the first turn is on screen
+            GameSession session = engine.createSession(player1Name.get(), player2Name.get(), false);
 
-            GameController controller = new GameController(session, movieDataService);
+            GameController controller = new GameController(engine, session.getSessionId(), movieDataService);
             controller.startGame();
 
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Open the session journal and restore its sessions, if game.journal.enabled is set
+     *
+     * @return The journal, or null if disabled
+     */
+    private static GameJournal openJournal(GameEngine engine) throws IOException {
+        AppConfig config = AppConfig.getInstance();
+        if (!Boolean.parseBoolean(config.getProperty("game.journal.enabled", "false"))) {
+            return null;
+        }
+        GameJournal journal = new GameJournal(Path.of(config.getProperty("game.journal.dir", "cache/journal")),
+                                              Integer.parseInt(config.getProperty("game.journal.shards", "8")),
+                                              Integer.parseInt(config.getProperty("game.journal.max-batch", "256")));
+        long snapshotInterval = TimeUnit.SECONDS.toMillis(
+                Long.parseLong(config.getProperty("game.journal.snapshot-interval-seconds", "60")));
+        int restored = engine.recoverFrom(journal, snapshotInterval);
+        log.info("Restored {} sessions from the journal", restored);
+        return journal;
+    }
+
+    /**
+     * Write a final snapshot and close the journal
+     */
+    private static void closeJournal(GameEngine engine, GameJournal journal) {
+        try {
+            engine.snapshot();
+            journal.close();
+        } catch (IOException e) {
+            log.error("Failed to close the journal", e);
+        }
+    }
 }
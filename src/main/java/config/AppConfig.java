@@ -8,6 +8,7 @@ import java.util.Properties;
 
 /**
  * Application Configuration Class
+ * Values come from application.properties; a JVM system property of the same name overrides them.
  */
 @Slf4j
 public class AppConfig {
@@ -49,7 +50,7 @@ public class AppConfig {
      * @return Configuration values
      */
     public String getProperty(String key) {
-        return properties.getProperty(key);
+        return System.getProperty(key, properties.getProperty(key));
     }
 
     /**
@@ -60,6 +61,6 @@ public class AppConfig {
      * @return Configuration values
      */
     public String getProperty(String key, String defaultValue) {
-        return properties.getProperty(key, defaultValue);
+        return System.getProperty(key, properties.getProperty(key, defaultValue));
     }
 }
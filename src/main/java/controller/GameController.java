@@ -1,143 +1,113 @@
 package controller;
 
-import model.game.Connection;
 import model.game.GameSession;
 import model.game.WinCondition;
-import model.tmdb.Movie;
-import model.tmdb.MovieCredits;
+import service.game.GameEngine;
+import service.game.TurnResult;
 import service.movie.MovieDataService;
-import service.movie.MovieDataServiceImpl;
-import service.movie.MovieGenreService;
 import view.ConsoleView;
-import java.util.List;
-import java.util.Map;
-import java.util.Random;
-
-import com.googlecode.lanterna.gui2.Label;
+import view.MovieSuggestion;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 public class GameController {
-    private final GameSession session;
+    private final GameEngine engine;
+    private final String sessionId;
     private final MovieDataService movieDataService;
     private ConsoleView view;
 
-    public GameController(GameSession session, MovieDataService movieDataService) {
-        this.session = session;
+    public GameController(GameEngine engine, String sessionId, MovieDataService movieDataService) {
+        this.engine = engine;
+        this.sessionId = sessionId;
         this.movieDataService = movieDataService;
     }
 
-    private WinCondition getRandomGenreWinConditiontion(int targetc) {
-        Map<Integer, String> genreMap = MovieGenreService.getInstance().getAllGenreMap();
-        List<String> genreNames = genreMap.values().stream().sorted().toList();
-        String randomGenre = genreNames.get(new Random().nextInt(genreNames.size()));
-        return new WinCondition("genre", randomGenre, targetc);
+    /**
+     * Check under the session lock whether the game is over, by a win or a missed deadline
+     */
+    private boolean isGameOver() {
+        Boolean over = engine.withSession(sessionId, GameSession::isGameOver);
+        return over == null || over;
     }
 
     public void startGame() {
         try {
+            GameSession session = engine.getSession(sessionId);
             this.view = new ConsoleView();
             view.showWelcome();
-            
-            int targetCount = new Random().nextInt(5) + 3;
-
-            WinCondition player1Condition = getRandomGenreWinConditiontion(targetCount);
-            //WinCondition player1Condition = new WinCondition("genre", "Action", 1);
-            WinCondition player2Condition = getRandomGenreWinConditiontion(targetCount);
-            //WinCondition player2Condition = new WinCondition("genre", "Action", 1);
-            session.setPlayer1WinCondition(player1Condition);
-            session.setPlayer2WinCondition(player2Condition);
 
+            WinCondition player1Condition = session.getPlayer1WinCondition();
+            WinCondition player2Condition = session.getPlayer2WinCondition();
             view.showWinCondition(session.getPlayer1Name() + ": " + player1Condition.getConditionValue() + ", " + player1Condition.getTargetCount() + " times");
             view.showWinCondition(session.getPlayer2Name() + ": " + player2Condition.getConditionValue() + ", " + player2Condition.getTargetCount() + " times");
 
-            Movie currentMovie = session.getCurrentMovie();
-            if (session.getRecentHistory().isEmpty()) {
-                session.addInitialMovieToHistory(currentMovie);
-            }
-            
-            boolean firstAttempt = true;
-            Label timerLabel = new Label("Time left: 30s");
+            // The engine owns the turn deadline; a missed one ends the turn on screen
+            engine.setTurnTimeoutListener(timedOut -> {
+                if (sessionId.equals(timedOut.getSessionId())) {
+                    view.endTurn();
+                }
+            });
+            // The first deadline starts once the first turn is shown, not while the dialogs above are open
+            engine.startTurnClock(sessionId);
 
-            while (!session.hasWon()) {
-                String selectedTitle = view.showGameTurn(
+            while (!isGameOver()) {
+                MovieSuggestion suggestion = view.showGameTurn(
                         session.getCurrentStep(),
                         session.getCurrentPlayerName(),
                         session.getRecentHistory(),
-                        currentMovie,
+                        session.getCurrentMovie(),
                         session.getCurrentPlayerWinCondition(),
+                        movieDataService.countQualifyingMovies(session.getCurrentPlayerWinCondition(), session),
                         movieDataService,
-                        () -> {
-                            try {
-                                view.stop();
-                            } catch (IOException e) {
-                                e.printStackTrace();
-                            }
-                            System.out.println("\u23F0 Time's up! " + session.getCurrentPlayerName() + " lost the game.");
-                            System.exit(0);
-                        },
-                        timerLabel,
-                        firstAttempt
+                        engine.getTurnTimeRemaining(sessionId, TimeUnit.MILLISECONDS)
                 );
-                
-                Movie selected = movieDataService.searchMoviesByPrefix(selectedTitle).stream()
-                        .findFirst()
-                        .orElseThrow(() -> new RuntimeException("selected movie not found"));
-                
-
-                if (selected == null) {
-                    view.showErrorNonBlocking("Movie not found or selection was invalid.");
-                    continue;
-                }
-
-                if (movieDataService.isMovieAlreadyUsed(selected, session)) {
-                    view.showErrorNonBlocking("You already used this movie.");
-                    continue;
+                if (isGameOver()) {
+                    break;
                 }
 
-                if (!movieDataService.validateConnection(currentMovie, selected)) {
-                    view.showErrorNonBlocking("No valid connection between movies.");
+                if (suggestion == null) {
+                    view.showErrorNonBlocking("Movie not found or selection was invalid.");
                     continue;
                 }
-                
-                timerLabel = new Label("Time left: 30s");
-                view.resettime();
-                
-
-                movieDataService.registerUsedMovie(selected, session);
-
-                List<Connection> connections = movieDataService.getConnections(currentMovie, selected);
-                boolean connectionRegistered = false;
 
-                for (Connection conn : connections) {
-                    if (!movieDataService.isConnectionUsedThreeTimes(conn, session)) {
-                        movieDataService.registerUsedConnection(conn, session);
-                        session.addToHistory(selected, conn);
-                        connectionRegistered = true;
+                // The suggestion carries the movie ID, so no second search is needed
+                TurnResult result = engine.submitMove(sessionId, suggestion.getMovieId());
+                switch (result.getStatus()) {
+                    case ACCEPTED:
+                    case WON:
+                    case GAME_OVER:
+                        // The loop condition ends a won or timed out game
                         break;
-                    }
-                }
-
-                if (!connectionRegistered) {
-                    view.showError("All available connections between the movies have been used 3 times.");
-                    continue;
-                }
-
-                WinCondition condition = session.getCurrentPlayerWinCondition();
-                if (movieDataService.matchesWinCondition(selected, condition)) {
-                    condition.incrementProgress();
-                }
-
-                
-                if (session.hasWon()) {
-                    break;
+                    case MOVIE_NOT_FOUND:
+                        view.showErrorNonBlocking("Movie not found or selection was invalid.");
+                        break;
+                    case MOVIE_ALREADY_USED:
+                        view.showErrorNonBlocking("You already used this movie.");
+                        break;
+                    case NO_CONNECTION:
+                        view.showErrorNonBlocking("No valid connection between movies.");
+                        break;
+                    case CONNECTIONS_EXHAUSTED:
+                        view.showError("All available connections between the movies have been used 3 times.");
+                        break;
+                    case CONFLICT:
+                        view.showErrorNonBlocking("The game changed while your move was checked, please try again.");
+                        break;
+                    case UNKNOWN_SESSION:
+                        view.stop();
+                        System.err.println("The game session no longer exists.");
+                        System.exit(1);
+                        return;
                 }
-                currentMovie = selected;
-                session.switchTurn();
-                firstAttempt = true;
             }
             view.stop();
-            System.out.println("\uD83C\uDF89" + session.getCurrentPlayerName() +" " +"won! You met the win condition!");
+            String winner = engine.withSession(sessionId, GameSession::getWinnerName);
+            if (session.isTimedOut()) {
+                System.out.println("\u23F0 Time's up! " + winner + " won the game.");
+            } else {
+                System.out.println("\uD83C\uDF89" + winner + " " + "won! You met the win condition!");
+            }
             System.out.flush();
             System.exit(0);
 
@@ -148,4 +118,4 @@ public class GameController {
             else System.err.println("Unexpected error: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
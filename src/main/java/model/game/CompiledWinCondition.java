@@ -0,0 +1,66 @@
+package model.game;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Win condition resolved against the movie index
+ * Built once per condition, so checking a move is a membership test instead of parsing the
+ * condition type and comparing names in the movie's credits.
+ */
+public class CompiledWinCondition {
+    /**
+     * Condition that no movie meets, e.g. an unknown type or genre
+     */
+    public static final CompiledWinCondition NONE = new CompiledWinCondition(-1, Collections.emptySet());
+
+    // Genre ID for a genre condition, -1 otherwise
+    private final int genreId;
+
+    // Live set of the indexed movies meeting the condition
+    private final Set<Integer> movieIds;
+
+    /**
+     * Constructor
+     *
+     * @param genreId  genre ID for a genre condition, -1 otherwise
+     * @param movieIds live set of the indexed movies meeting the condition
+     */
+    public CompiledWinCondition(int genreId, Set<Integer> movieIds) {
+        this.genreId = genreId;
+        this.movieIds = movieIds;
+    }
+
+    /**
+     * Check whether a movie meets the condition
+     * Genre conditions look at the movie's own genres, so movies outside the catalog count too;
+     * person conditions need the movie's credits to be indexed.
+     */
+    public boolean matches(int movieId, int[] genreIds) {
+        if (genreId < 0) {
+            return movieIds.contains(movieId);
+        }
+        if (genreIds != null) {
+            for (int id : genreIds) {
+                if (id == genreId) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether the condition is on a person, whose movies are only known once their credits are indexed
+     */
+    public boolean isPersonCondition() {
+        return genreId < 0 && this != NONE;
+    }
+
+    /**
+     * Get the indexed movies meeting the condition, a live read-only view
+     */
+    public Set<Integer> getMovieIds() {
+        return movieIds;
+    }
+}
@@ -1,11 +1,19 @@
 package model.game;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 import model.tmdb.Movie;
+import utils.IntHashSet;
+import utils.IntIntHashMap;
+import utils.RingBuffer;
 // Edit: Import WinCondition
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -14,17 +22,31 @@ import java.util.Map;
  */
 @Data
 public class GameSession {
+    // Number of history records shown to the players
+    private static final int HISTORY_SIZE = 5;
+    // Number of most recent connections kept; older ones only live on in the usage counts
+    private static final int USED_CONNECTIONS_SIZE = 32;
+
     // Session ID
     private String sessionId;
 
-    // List of used movies
+    // List of used movies, in the order they were played
     private List<Movie> usedMovies;
 
-    // List of used connections (including usage count)
-    private List<Connection> usedConnections;
+    // IDs of the used movies, for constant-time membership checks; queried through isMovieUsed
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final IntHashSet usedMovieIds = new IntHashSet();
+
+    // Most recently used connections, oldest first
+    private final RingBuffer<Connection> usedConnections = new RingBuffer<>(USED_CONNECTIONS_SIZE);
 
-    // Connection usage count (by personId)
-    private Map<Integer, Integer> connectionUsageCount;
+    // Connection usage count (by personId); queried through getConnectionUsage
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final IntIntHashMap connectionUsageCount = new IntIntHashMap();
 
     // Current Movies
     private Movie currentMovie;
@@ -43,8 +65,12 @@ public class GameSession {
     private String player1Name;
     private String player2Name;
     private boolean isPlayer1Turn;
+
+    // Set when the current player ran out of time, which ends the game
+    private boolean timedOut;
     
-    private final List<HistoryRecord> recentHistory = new LinkedList<>();
+    // Most recent history records, oldest first
+    private final RingBuffer<HistoryRecord> recentHistory = new RingBuffer<>(HISTORY_SIZE);
 
 
     /**
@@ -55,8 +81,7 @@ public class GameSession {
         this.currentMovie = startMovie;
         this.usedMovies = new ArrayList<>();
         this.usedMovies.add(startMovie);
-        this.usedConnections = new ArrayList<>();
-        this.connectionUsageCount = new HashMap<>();
+        this.usedMovieIds.add(startMovie.getId());
         this.currentStep = 1;
         this.inSetupPhase = true;
         this.player1WinCondition = player1WinCondition;
@@ -70,7 +95,7 @@ public class GameSession {
      * Movies registered for use
      */
     public void registerUsedMovie(Movie movie) {
-        if (!isMovieAlreadyUsed(movie)) {
+        if (usedMovieIds.add(movie.getId())) {
             this.usedMovies.add(movie);
         }
         this.currentMovie = movie;
@@ -91,25 +116,90 @@ public class GameSession {
         this.usedConnections.add(connection);
 
         // Update personId usage count
-        int personId = connection.getPersonId();
-        int count = this.connectionUsageCount.getOrDefault(personId, 0);
-        this.connectionUsageCount.put(personId, count + 1);
+        this.connectionUsageCount.increment(connection.getPersonId());
     }
 
     /**
      * Check if the movie is already used
      */
     public boolean isMovieAlreadyUsed(Movie movie) {
-        return usedMovies
-                .stream()
-                .anyMatch(m -> m.getId() == movie.getId());
+        return isMovieUsed(movie.getId());
+    }
+
+    /**
+     * Check if the movie with the given ID is already used
+     */
+    public boolean isMovieUsed(int movieId) {
+        return usedMovieIds.contains(movieId);
+    }
+
+    /**
+     * Keep only the movies that have not been used yet
+     *
+     * @param candidates Candidate movies, e.g. suggestions
+     * @return Unused candidates, in their original order
+     */
+    public List<Movie> filterUnusedMovies(Collection<Movie> candidates) {
+        List<Movie> unused = new ArrayList<>(candidates.size());
+        for (Movie movie : candidates) {
+            if (!usedMovieIds.contains(movie.getId())) {
+                unused.add(movie);
+            }
+        }
+        return unused;
+    }
+
+    /**
+     * Get the used movies in the order they were played
+     */
+    public List<Movie> getUsedMovies() {
+        return Collections.unmodifiableList(usedMovies);
+    }
+
+    /**
+     * Replace the used movies
+     */
+    public void setUsedMovies(List<Movie> usedMovies) {
+        this.usedMovies = new ArrayList<>(usedMovies);
+        this.usedMovieIds.clear();
+        usedMovies.forEach(movie -> usedMovieIds.add(movie.getId()));
+    }
+
+    /**
+     * Get the most recently used connections, oldest first
+     */
+    public List<Connection> getUsedConnections() {
+        return Collections.unmodifiableList(usedConnections);
+    }
+
+    /**
+     * Get how often a person has been used as a connection
+     */
+    public int getConnectionUsage(int personId) {
+        return this.connectionUsageCount.get(personId, 0);
+    }
+
+    /**
+     * Set how often a person has been used as a connection, e.g. when restoring a saved session
+     */
+    public void setConnectionUsage(int personId, int count) {
+        this.connectionUsageCount.put(personId, count);
+    }
+
+    /**
+     * Get a snapshot of the connection usage counts by personId
+     */
+    public Map<Integer, Integer> getConnectionUsageCount() {
+        Map<Integer, Integer> snapshot = new HashMap<>();
+        this.connectionUsageCount.forEach(snapshot::put);
+        return snapshot;
     }
 
     /**
      * Check if the connection has been used three times
      */
     public boolean isConnectionUsedThreeTimes(int personId) {
-        return this.connectionUsageCount.getOrDefault(personId, 0) >= 3;
+        return getConnectionUsage(personId) >= 3;
     }
         
     public WinCondition getCurrentPlayerWinCondition() {
@@ -121,6 +211,27 @@ public class GameSession {
         return getCurrentPlayerWinCondition().isAchieved();
     }
     
+    /**
+     * Check whether the game has ended, by a win or a timeout
+     */
+    public boolean isGameOver() {
+        return hasWon() || timedOut;
+    }
+
+    /**
+     * Get the winner, or null while the game is running
+     * A player who runs out of time loses to the other one.
+     */
+    public String getWinnerName() {
+        if (hasWon()) {
+            return getCurrentPlayerName();
+        }
+        if (timedOut) {
+            return isPlayer1Turn ? player2Name : player1Name;
+        }
+        return null;
+    }
+
     public String getCurrentPlayerName() {
         return isPlayer1Turn ? player1Name : player2Name;
     }
@@ -134,14 +245,16 @@ public class GameSession {
     }
     
     public void addToHistory(Movie movie, Connection connection) {
-        if (recentHistory.size() == 5) {
-            recentHistory.remove(0);  // Keep at most 5 history records
-        }
+        // The buffer drops the oldest record once it holds HISTORY_SIZE
         recentHistory.add(new HistoryRecord(movie, connection));
     }
 
+    /**
+     * Get a read-only view of the most recent history records, oldest first
+     * The view follows later moves, so render it before the session changes.
+     */
     public List<HistoryRecord> getRecentHistory() {
-        return new ArrayList<>(recentHistory);
+        return Collections.unmodifiableList(recentHistory);
     }
     public WinCondition getPlayer1WinCondition() {
         return player1WinCondition;
@@ -1,6 +1,8 @@
 package model.game;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 /**
  * Victory Condition Model
@@ -19,6 +21,11 @@ public class WinCondition {
     // Current progress
     private int currentCount;
 
+    // Condition resolved against the movie index, built on first use
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile CompiledWinCondition compiled;
+
     /**
      * Constructor
      */
@@ -54,4 +61,14 @@ public class WinCondition {
         return this.conditionValue;
     }
 
+    public void setConditionType(String conditionType) {
+        this.conditionType = conditionType;
+        this.compiled = null;
+    }
+
+    public void setConditionValue(String conditionValue) {
+        this.conditionValue = conditionValue;
+        this.compiled = null;
+    }
+
 }
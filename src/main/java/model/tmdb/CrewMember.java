@@ -10,7 +10,8 @@ import lombok.EqualsAndHashCode;
  */
 @Data
 @EqualsAndHashCode(of = "id")
-@JsonIgnoreProperties(ignoreUnknown = true)
+// Fields the game never reads are skipped at the token level when decoding API responses
+@JsonIgnoreProperties(value = {"profile_path"}, allowGetters = true, ignoreUnknown = true)
 
 public class CrewMember {
     @JsonProperty("id")
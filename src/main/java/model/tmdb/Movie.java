@@ -5,6 +5,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
+import java.util.List;
+
 /**
  * TMDB Movie Entity Class
  */
@@ -53,4 +55,17 @@ public class Movie {
 
     @JsonProperty("vote_count")
     private int voteCount;
+
+    /**
+     * Movie details carry genre objects instead of genre IDs
+     */
+    @JsonProperty("genres")
+    private void setGenres(List<Genre> genres) {
+        if (genres != null) {
+            this.genreIds = genres
+                    .stream()
+                    .mapToInt(Genre::getId)
+                    .toArray();
+        }
+    }
 }
\ No newline at end of file
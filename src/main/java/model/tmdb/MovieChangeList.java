@@ -0,0 +1,39 @@
+package model.tmdb;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * TMDB movie change list entity class
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MovieChangeList {
+    @JsonProperty("page")
+    private int page;
+
+    @JsonProperty("results")
+    private List<Change> results;
+
+    @JsonProperty("total_pages")
+    private int totalPages;
+
+    @JsonProperty("total_results")
+    private int totalResults;
+
+    /**
+     * Changed movie
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Change {
+        @JsonProperty("id")
+        private int id;
+
+        @JsonProperty("adult")
+        private Boolean adult;
+    }
+}
@@ -0,0 +1,429 @@
+package server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import config.AppConfig;
+import lombok.extern.slf4j.Slf4j;
+import model.game.Connection;
+import model.game.GameSession;
+import model.game.HistoryRecord;
+import model.game.WinCondition;
+import service.game.GameEngine;
+import service.game.TurnResult;
+import service.movie.MovieDataService;
+import utils.IoExecutors;
+import view.MovieSuggestion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP front end for the game engine
+ * Serves JSON over the JDK's built-in HTTP server, with one (virtual, where available) thread per
+ * request:
+ * <pre>
+ * POST   /sessions               {"player1": "...", "player2": "..."}  start a game
+ * GET    /sessions/{id}          current state
+ * DELETE /sessions/{id}          forget a game
+ * POST   /sessions/{id}/moves    {"movieId": 27205}                   play a movie
+ * GET    /sessions/{id}/events   server-sent events: state, then every move and a missed deadline
+ * GET    /autocomplete?q=...     movie suggestions
+ * </pre>
+ */
+@Slf4j
+public class GameServer implements AutoCloseable {
+    private static final AppConfig CONFIG = AppConfig.getInstance();
+    private static final String BIND_ADDRESS = CONFIG.getProperty("server.bind-address", "127.0.0.1");
+    // Request threads when virtual threads are not available
+    private static final int PLATFORM_THREADS = Integer.parseInt(CONFIG.getProperty("server.platform-threads", "64"));
+    // How long an autocomplete request waits for remote results (ms)
+    private static final long AUTOCOMPLETE_DEADLINE_MILLIS = Long.parseLong(CONFIG.getProperty(
+            "server.autocomplete-deadline-ms", "200"));
+    // Interval between keep-alive comments on idle event streams (s)
+    private static final long KEEPALIVE_SECONDS = 15;
+    // Events buffered per stream before a slow client starts missing them
+    private static final int STREAM_BUFFER = 64;
+    // Marks the end of an event stream
+    private static final String END_OF_STREAM = "";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final GameEngine engine;
+    private final MovieDataService movieDataService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // Open event streams by session ID
+    private final Map<String, Queue<BlockingQueue<String>>> streams = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param port port to listen on, 0 for any free port
+     */
+    public GameServer(GameEngine engine, MovieDataService movieDataService, int port) throws IOException {
+        this.engine = engine;
+        this.movieDataService = movieDataService;
+        this.server = HttpServer.create(new InetSocketAddress(BIND_ADDRESS, port), 0);
+        this.executor = IoExecutors.newExecutor("game-server", PLATFORM_THREADS);
+        server.setExecutor(executor);
+        engine.setTurnTimeoutListener(session -> publish(session.getSessionId(), "timeout", stateOf(session), true));
+        server.createContext("/sessions", this::handleSessions);
+        server.createContext("/autocomplete", this::handleAutocomplete);
+    }
+
+    /**
+     * Start accepting requests
+     */
+    public void start() {
+        server.start();
+        log.info("Game server listening on http://{}:{}", BIND_ADDRESS, getPort());
+    }
+
+    /**
+     * Get the port the server listens on
+     */
+    public int getPort() {
+        return server
+                .getAddress()
+                .getPort();
+    }
+
+    /**
+     * Close the event streams and stop the server
+     */
+    @Override
+    public void close() {
+        streams
+                .values()
+                .forEach(queues -> queues.forEach(GameServer::endStream));
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleSessions(HttpExchange exchange) throws IOException {
+        try {
+            String[] path = exchange
+                    .getRequestURI()
+                    .getPath()
+                    .split("/");
+            String method = exchange.getRequestMethod();
+            // path is ["", "sessions", id, action]
+            if (path.length == 2 && "POST".equals(method)) {
+                createSession(exchange);
+            } else if (path.length == 3 && "GET".equals(method)) {
+                sendState(exchange, path[2]);
+            } else if (path.length == 3 && "DELETE".equals(method)) {
+                boolean removed = engine.removeSession(path[2]) != null;
+                endStreams(path[2]);
+                sendJson(exchange, removed ? 200 : 404, Map.of("removed", removed));
+            } else if (path.length == 4 && "moves".equals(path[3]) && "POST".equals(method)) {
+                submitMove(exchange, path[2]);
+            } else if (path.length == 4 && "events".equals(path[3]) && "GET".equals(method)) {
+                streamEvents(exchange, path[2]);
+            } else {
+                sendJson(exchange, 404, Map.of("error", "Not found"));
+            }
+        } catch (IllegalArgumentException e) {
+            sendJson(exchange, 400, Map.of("error", String.valueOf(e.getMessage())));
+        } catch (IllegalStateException e) {
+            // e.g. no starting movies loaded yet
+            sendJson(exchange, 503, Map.of("error", String.valueOf(e.getMessage())));
+        } catch (RuntimeException e) {
+            log.error("Error handling {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            sendJson(exchange, 500, Map.of("error", "Internal error"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleAutocomplete(HttpExchange exchange) throws IOException {
+        try {
+            String query = queryParameter(exchange, "q");
+            List<MovieSuggestion> suggestions = new ArrayList<>();
+            if (query != null && !query.isBlank()) {
+                // A remote search missing the deadline is cancelled, the client asks again on the next keystroke
+                movieDataService
+                        .searchMoviesByPrefix(query.trim(), AUTOCOMPLETE_DEADLINE_MILLIS, null)
+                        .forEach(movie -> suggestions.add(MovieSuggestion.of(movie)));
+            }
+            sendJson(exchange, 200, suggestions);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void createSession(HttpExchange exchange) throws IOException {
+        JsonNode body = readBody(exchange);
+        String player1 = body
+                .path("player1")
+                .asText("");
+        String player2 = body
+                .path("player2")
+                .asText("");
+        if (player1.isBlank() || player2.isBlank()) {
+            throw new IllegalArgumentException("player1 and player2 are required");
+        }
+        GameSession session = engine.createSession(player1.trim(), player2.trim());
+        sendJson(exchange, 201, engine.withSession(session.getSessionId(), this::stateOf));
+    }
+
+    private void sendState(HttpExchange exchange, String sessionId) throws IOException {
+        Map<String, Object> state = engine.withSession(sessionId, this::stateOf);
+        if (state == null) {
+            sendJson(exchange, 404, Map.of("error", "Unknown session"));
+        } else {
+            sendJson(exchange, 200, state);
+        }
+    }
+
+    private void submitMove(HttpExchange exchange, String sessionId) throws IOException {
+        JsonNode movieId = readBody(exchange).path("movieId");
+        if (!movieId.canConvertToInt()) {
+            throw new IllegalArgumentException("movieId is required");
+        }
+        TurnResult result = engine.submitMove(sessionId, movieId.asInt());
+        Map<String, Object> json = resultOf(result);
+        if (result.isAccepted()) {
+            publish(sessionId, "move", json, result.getStatus() == TurnResult.Status.WON);
+        }
+        sendJson(exchange, statusCodeOf(result.getStatus()), json);
+    }
+
+    /**
+     * Stream the session state followed by every played move as server-sent events
+     * The stream ends when the game is over or removed, the client disconnects or the server stops.
+     */
+    private void streamEvents(HttpExchange exchange, String sessionId) throws IOException {
+        BlockingQueue<String> queue = new LinkedBlockingQueue<>(STREAM_BUFFER);
+        // Registering under the session lock means no final event can slip between the state and the stream
+        Map<String, Object> state = engine.withSession(sessionId, session -> {
+            if (!session.isGameOver()) {
+                streams.compute(sessionId, (id, queues) -> {
+                    Queue<BlockingQueue<String>> open = queues == null ? new ConcurrentLinkedQueue<>() : queues;
+                    open.add(queue);
+                    return open;
+                });
+            } else {
+                queue.offer(END_OF_STREAM);
+            }
+            return stateOf(session);
+        });
+        if (state == null) {
+            sendJson(exchange, 404, Map.of("error", "Unknown session"));
+            return;
+        }
+        try {
+            exchange
+                    .getResponseHeaders()
+                    .set("Content-Type", "text/event-stream");
+            exchange
+                    .getResponseHeaders()
+                    .set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            writeEvent(out, event("state", state));
+            while (true) {
+                String event = queue.poll(KEEPALIVE_SECONDS, TimeUnit.SECONDS);
+                if (event == null) {
+                    writeEvent(out, ": keepalive\n\n");
+                } else if (event.isEmpty()) {
+                    break;
+                } else {
+                    writeEvent(out, event);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Event stream of session {} closed by the client", sessionId);
+        } catch (InterruptedException e) {
+            Thread
+                    .currentThread()
+                    .interrupt();
+        } finally {
+            streams.computeIfPresent(sessionId, (id, queues) -> {
+                queues.remove(queue);
+                return queues.isEmpty() ? null : queues;
+            });
+        }
+    }
+
+    /**
+     * Send an event to every stream of a session, ending them after the last one
+     */
+    private void publish(String sessionId, String name, Object data, boolean last) {
+        Queue<BlockingQueue<String>> queues = last ? streams.remove(sessionId) : streams.get(sessionId);
+        if (queues == null) {
+            return;
+        }
+        String event = event(name, data);
+        for (BlockingQueue<String> queue : queues) {
+            if (!queue.offer(event)) {
+                log.warn("Event stream of session {} is not keeping up, dropping an event", sessionId);
+            }
+            if (last) {
+                endStream(queue);
+            }
+        }
+    }
+
+    /**
+     * End every stream of a session, e.g. once it is removed
+     */
+    private void endStreams(String sessionId) {
+        Queue<BlockingQueue<String>> queues = streams.remove(sessionId);
+        if (queues != null) {
+            queues.forEach(GameServer::endStream);
+        }
+    }
+
+    /**
+     * End a stream, making room for the end mark if a slow client filled its buffer
+     */
+    private static void endStream(BlockingQueue<String> queue) {
+        while (!queue.offer(END_OF_STREAM)) {
+            queue.poll();
+        }
+    }
+
+    private static void writeEvent(OutputStream out, String event) throws IOException {
+        out.write(event.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static String event(String name, Object data) {
+        try {
+            return "event: " + name + "\ndata: " + OBJECT_MAPPER.writeValueAsString(data) + "\n\n";
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to serialize event " + name, e);
+        }
+    }
+
+    /**
+     * JSON view of a session, must be called while holding the session lock
+     */
+    private Map<String, Object> stateOf(GameSession session) {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("sessionId", session.getSessionId());
+        state.put("step", session.getCurrentStep());
+        state.put("currentPlayer", session.getCurrentPlayerName());
+        state.put("currentMovie", MovieSuggestion.of(session.getCurrentMovie()));
+        state.put("winner", session.getWinnerName());
+        state.put("timedOut", session.isTimedOut());
+        state.put("players", List.of(playerOf(session, session.getPlayer1Name(), session.getPlayer1WinCondition()),
+                                     playerOf(session, session.getPlayer2Name(), session.getPlayer2WinCondition())));
+        List<Map<String, Object>> history = new ArrayList<>();
+        session
+                .getRecentHistory()
+                .forEach(record -> history.add(historyOf(record)));
+        state.put("history", history);
+        return state;
+    }
+
+    private Map<String, Object> playerOf(GameSession session, String name, WinCondition condition) {
+        Map<String, Object> player = new LinkedHashMap<>();
+        player.put("name", name);
+        player.put("conditionType", condition.getConditionType());
+        player.put("conditionValue", condition.getConditionValue());
+        player.put("targetCount", condition.getTargetCount());
+        player.put("currentCount", condition.getCurrentCount());
+        player.put("qualifyingMovies", movieDataService.countQualifyingMovies(condition, session));
+        return player;
+    }
+
+    private static Map<String, Object> historyOf(HistoryRecord record) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("movie", MovieSuggestion.of(record.getMovie()));
+        json.put("connection", connectionOf(record.getConnection()));
+        return json;
+    }
+
+    private static Map<String, Object> resultOf(TurnResult result) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("status", result.getStatus());
+        json.put("player", result.getPlayerName());
+        json.put("movie", result.getMovie() != null ? MovieSuggestion.of(result.getMovie()) : null);
+        json.put("connection", connectionOf(result.getConnection()));
+        return json;
+    }
+
+    private static Map<String, Object> connectionOf(Connection connection) {
+        if (connection == null) {
+            return null;
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("type", connection.getConnectionType());
+        json.put("name", connection.getConnectionValue());
+        json.put("personId", connection.getPersonId());
+        return json;
+    }
+
+    private static int statusCodeOf(TurnResult.Status status) {
+        switch (status) {
+            case ACCEPTED:
+            case WON:
+                return 200;
+            case UNKNOWN_SESSION:
+                return 404;
+            case GAME_OVER:
+            case CONFLICT:
+                return 409;
+            default:
+                // The move breaks a game rule
+                return 422;
+        }
+    }
+
+    private static JsonNode readBody(HttpExchange exchange) {
+        try {
+            JsonNode body = OBJECT_MAPPER.readTree(exchange.getRequestBody());
+            if (body == null || !body.isObject()) {
+                throw new IllegalArgumentException("JSON object expected");
+            }
+            return body;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getMessage());
+        }
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange
+                .getRequestURI()
+                .getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String key = equals < 0 ? parameter : parameter.substring(0, equals);
+            if (name.equals(URLDecoder.decode(key, StandardCharsets.UTF_8))) {
+                return equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void sendJson(HttpExchange exchange, int statusCode, Object body) throws IOException {
+        byte[] bytes = OBJECT_MAPPER.writeValueAsBytes(body);
+        exchange
+                .getResponseHeaders()
+                .set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
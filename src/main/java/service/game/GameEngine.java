@@ -0,0 +1,472 @@
+package service.game;
+
+import config.AppConfig;
+import lombok.extern.slf4j.Slf4j;
+import model.game.Connection;
+import model.game.GameSession;
+import model.game.WinCondition;
+import model.tmdb.Movie;
+import service.movie.MovieDataService;
+import service.movie.MovieGenreService;
+import utils.HashedWheelTimer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Headless game engine
+ * Holds any number of sessions and applies the game rules to submitted moves, without any
+ * user interface. Moves on the same session are serialized by a lock taken from a fixed pool
+ * of stripes, so sessions never contend on a global lock and idle sessions cost no lock object.
+ * Movie and credit lookups, which may go to TMDB, run outside the lock.
+ * Each turn has a deadline on the shared wheel timer; a player who misses it loses the game.
+ * With a journal, every change is appended while holding the session lock, and a move is only
+ * reported once its event is on disk.
+ */
+@Slf4j
+public class GameEngine {
+    // Number of lock stripes shared by all sessions, rounded up to a power of two
+    private static final int LOCK_STRIPES = Integer.parseInt(AppConfig
+                                                                     .getInstance()
+                                                                     .getProperty("game.engine.lock-stripes", "1024"));
+    // Time a player has for a move, 0 for no limit
+    private static final long TURN_TIMEOUT_SECONDS = Long.parseLong(AppConfig
+                                                                            .getInstance()
+                                                                            .getProperty("game.turn-timeout-seconds", "30"));
+    // Win condition targets are drawn from [MIN_TARGET_COUNT, MAX_TARGET_COUNT]
+    private static final int MIN_TARGET_COUNT = 3;
+    private static final int MAX_TARGET_COUNT = 7;
+
+    private final MovieDataService movieDataService;
+    private final Random random;
+    private final Map<String, GameSession> sessions = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks;
+    private final HashedWheelTimer timer;
+    private final long turnTimeoutMillis;
+    // Deadline of the current turn by session ID
+    private final Map<String, HashedWheelTimer.Timeout> turnDeadlines = new ConcurrentHashMap<>();
+    private volatile Consumer<GameSession> turnTimeoutListener = session -> {
+    };
+    // Durable record of the sessions, null when they only live in memory
+    private volatile GameJournal journal;
+    private ExecutorService snapshotExecutor;
+
+    /**
+     * Constructor
+     */
+    public GameEngine(MovieDataService movieDataService) {
+        this(movieDataService, new Random());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param random source of starting movies and win conditions (for testing)
+     */
+    public GameEngine(MovieDataService movieDataService, Random random) {
+        this(movieDataService, random, HashedWheelTimer.getInstance(), TimeUnit.SECONDS.toMillis(TURN_TIMEOUT_SECONDS));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param random            source of starting movies and win conditions (for testing)
+     * @param timer             timer for turn deadlines
+     * @param turnTimeoutMillis time a player has for a move, 0 for no limit
+     */
+    public GameEngine(MovieDataService movieDataService, Random random, HashedWheelTimer timer,
+                      long turnTimeoutMillis) {
+        this.movieDataService = movieDataService;
+        this.random = random;
+        this.timer = timer;
+        this.turnTimeoutMillis = turnTimeoutMillis;
+        int stripes = Integer.highestOneBit(Math.max(1, LOCK_STRIPES - 1)) << 1;
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Start a game with a random starting movie and random genre win conditions
+     *
+     * @return The new session
+     */
+    public GameSession createSession(String player1Name, String player2Name) {
+        return createSession(player1Name, player2Name, true);
+    }
+
+    /**
+     * Start a game with a random starting movie and random genre win conditions
+     *
+     * @param startClock whether the first turn's deadline starts now; if not, call startTurnClock once the
+     *                   first turn is shown
+     * @return The new session
+     */
+    public GameSession createSession(String player1Name, String player2Name, boolean startClock) {
+        List<Movie> starters = movieDataService.getInitialMoviesList();
+        if (starters.isEmpty()) {
+            throw new IllegalStateException("No starting movies available");
+        }
+        Movie startMovie = starters.get(random.nextInt(starters.size()));
+        int targetCount = MIN_TARGET_COUNT + random.nextInt(MAX_TARGET_COUNT - MIN_TARGET_COUNT + 1);
+        return createSession(player1Name, player2Name, startMovie, randomGenreWinCondition(targetCount),
+                             randomGenreWinCondition(targetCount), startClock);
+    }
+
+    /**
+     * Start a game from the given movie and win conditions
+     *
+     * @return The new session
+     */
+    public GameSession createSession(String player1Name, String player2Name, Movie startMovie,
+                                     WinCondition player1WinCondition, WinCondition player2WinCondition) {
+        return createSession(player1Name, player2Name, startMovie, player1WinCondition, player2WinCondition, true);
+    }
+
+    /**
+     * Start a game from the given movie and win conditions
+     *
+     * @param startClock whether the first turn's deadline starts now; if not, call startTurnClock once the
+     *                   first turn is shown
+     * @return The new session
+     */
+    public GameSession createSession(String player1Name, String player2Name, Movie startMovie,
+                                     WinCondition player1WinCondition, WinCondition player2WinCondition,
+                                     boolean startClock) {
+        String sessionId = UUID
+                .randomUUID()
+                .toString();
+        GameSession session = new GameSession(sessionId, startMovie, player1WinCondition, player2WinCondition,
+                                              player1Name, player2Name);
+        session.addInitialMovieToHistory(startMovie);
+        CompletableFuture<Long> logged;
+        ReentrantLock lock = lockFor(sessionId);
+        lock.lock();
+        try {
+            sessions.put(sessionId, session);
+            logged = journal == null ? null : journal.sessionCreated(session);
+            if (startClock) {
+                startTurnDeadline(session);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitJournal(logged, sessionId);
+        log.debug("Created session {} starting from {}", sessionId, startMovie.getTitle());
+        return session;
+    }
+
+    /**
+     * Get a session, or null if it does not exist
+     * The session must not be changed or read while moves may be submitted; use withSession for that.
+     */
+    public GameSession getSession(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    /**
+     * Read or change a session while holding its lock
+     *
+     * @return What the action returned, or null if the session does not exist
+     */
+    public <T> T withSession(String sessionId, Function<GameSession, T> action) {
+        ReentrantLock lock = lockFor(sessionId);
+        lock.lock();
+        try {
+            GameSession session = sessions.get(sessionId);
+            return session == null ? null : action.apply(session);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forget a session, e.g. once its game is over
+     *
+     * @return The removed session, or null if it did not exist
+     */
+    public GameSession removeSession(String sessionId) {
+        ReentrantLock lock = lockFor(sessionId);
+        lock.lock();
+        try {
+            cancelTurnDeadline(sessionId);
+            GameSession session = sessions.remove(sessionId);
+            if (session != null && journal != null) {
+                logFailure(journal.sessionRemoved(sessionId), sessionId);
+            }
+            return session;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restore the sessions of a journal and record every later change in it
+     * Sessions still being played get a fresh turn deadline.
+     *
+     * @param snapshotIntervalMillis time between snapshots, 0 for none
+     * @return The number of sessions restored
+     */
+    public int recoverFrom(GameJournal journal, long snapshotIntervalMillis) throws IOException {
+        Map<String, GameSession> recovered = journal.recover(movieDataService);
+        recovered.forEach((sessionId, session) -> {
+            sessions.put(sessionId, session);
+            if (!session.isGameOver()) {
+                startTurnDeadline(session);
+            }
+        });
+        this.journal = journal;
+        if (snapshotIntervalMillis > 0) {
+            snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduleSnapshot(snapshotIntervalMillis);
+        }
+        return recovered.size();
+    }
+
+    /**
+     * Write a snapshot of all sessions to the journal, so it no longer needs the events before it
+     */
+    public void snapshot() throws IOException {
+        GameJournal current = journal;
+        if (current != null) {
+            current.snapshot(sessions.keySet(), sessionId -> withSession(sessionId, GameJournal::encodeSession));
+        }
+    }
+
+    /**
+     * Start the deadline of the current turn, unless it is already running or the game is over
+     * For sessions created without starting the clock, e.g. once a user interface shows the first turn.
+     */
+    public void startTurnClock(String sessionId) {
+        withSession(sessionId, session -> {
+            if (!session.isGameOver() && !turnDeadlines.containsKey(sessionId)) {
+                startTurnDeadline(session);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Get the time left for the current turn
+     *
+     * @return Time left, 0 once the deadline has passed, or -1 if no deadline is running
+     */
+    public long getTurnTimeRemaining(String sessionId, TimeUnit unit) {
+        HashedWheelTimer.Timeout deadline = turnDeadlines.get(sessionId);
+        return deadline == null ? -1 : Math.max(0, deadline.getRemaining(unit));
+    }
+
+    /**
+     * Set what happens when a player misses a turn deadline
+     * The listener runs on the timer thread while holding the session lock, so it must not block.
+     *
+     * @param listener receives the session, which is already marked as timed out
+     */
+    public void setTurnTimeoutListener(Consumer<GameSession> listener) {
+        this.turnTimeoutListener = listener;
+    }
+
+    /**
+     * Get the number of sessions held
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Play a movie for the player whose turn it is
+     * The movie must share a person with the current movie who has been used fewer than three times
+     * and must not have been played before. A played move counts towards the player's win condition
+     * and, unless it wins the game, passes the turn.
+     *
+     * @param sessionId Session ID
+     * @param movieId   TMDB ID of the movie played
+     * @return The outcome of the move
+     */
+    public TurnResult submitMove(String sessionId, int movieId) {
+        // Resolve the move from the session state it was based on, without holding the lock
+        Movie currentMovie = withSession(sessionId, GameSession::getCurrentMovie);
+        if (currentMovie == null) {
+            return TurnResult.rejected(TurnResult.Status.UNKNOWN_SESSION, null, null);
+        }
+        Movie selected = movieDataService.getMovieById(movieId);
+        List<Connection> connections = selected == null
+                ? List.of()
+                : movieDataService.getConnections(currentMovie, selected);
+
+        TurnResult result;
+        CompletableFuture<Long> logged;
+        ReentrantLock lock = lockFor(sessionId);
+        lock.lock();
+        try {
+            GameSession session = sessions.get(sessionId);
+            if (session == null) {
+                return TurnResult.rejected(TurnResult.Status.UNKNOWN_SESSION, null, selected);
+            }
+            String playerName = session.getCurrentPlayerName();
+            if (session.isGameOver()) {
+                return TurnResult.rejected(TurnResult.Status.GAME_OVER, playerName, selected);
+            }
+            if (session.getCurrentMovie() != currentMovie) {
+                return TurnResult.rejected(TurnResult.Status.CONFLICT, playerName, selected);
+            }
+            if (selected == null) {
+                return TurnResult.rejected(TurnResult.Status.MOVIE_NOT_FOUND, playerName, null);
+            }
+            if (movieDataService.isMovieAlreadyUsed(selected, session)) {
+                return TurnResult.rejected(TurnResult.Status.MOVIE_ALREADY_USED, playerName, selected);
+            }
+            if (connections.isEmpty()) {
+                return TurnResult.rejected(TurnResult.Status.NO_CONNECTION, playerName, selected);
+            }
+            Connection connection = connections
+                    .stream()
+                    .filter(candidate -> !movieDataService.isConnectionUsedThreeTimes(candidate, session))
+                    .findFirst()
+                    .orElse(null);
+            if (connection == null) {
+                return TurnResult.rejected(TurnResult.Status.CONNECTIONS_EXHAUSTED, playerName, selected);
+            }
+
+            movieDataService.registerUsedMovie(selected, session);
+            movieDataService.registerUsedConnection(connection, session);
+            session.addToHistory(selected, connection);
+
+            WinCondition condition = session.getCurrentPlayerWinCondition();
+            if (movieDataService.matchesWinCondition(selected, condition)) {
+                condition.incrementProgress();
+            }
+            logged = journal == null
+                    ? null
+                    : journal.movePlayed(session, connection, session.isPlayer1Turn(), condition.getCurrentCount());
+            if (session.hasWon()) {
+                log.debug("Session {} won by {}", sessionId, playerName);
+                cancelTurnDeadline(sessionId);
+                result = new TurnResult(TurnResult.Status.WON, playerName, selected, connection);
+            } else {
+                session.switchTurn();
+                startTurnDeadline(session);
+                result = new TurnResult(TurnResult.Status.ACCEPTED, playerName, selected, connection);
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Wait for the fsync without holding the lock, so moves of other sessions share it
+        awaitJournal(logged, sessionId);
+        return result;
+    }
+
+    /**
+     * Give the current player turnTimeoutMillis for a move, replacing the previous turn's deadline
+     */
+    private void startTurnDeadline(GameSession session) {
+        if (turnTimeoutMillis <= 0) {
+            return;
+        }
+        String sessionId = session.getSessionId();
+        int step = session.getCurrentStep();
+        HashedWheelTimer.Timeout previous = turnDeadlines.put(sessionId, timer.schedule(
+                () -> expireTurn(sessionId, step), turnTimeoutMillis, TimeUnit.MILLISECONDS));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void cancelTurnDeadline(String sessionId) {
+        HashedWheelTimer.Timeout deadline = turnDeadlines.remove(sessionId);
+        if (deadline != null) {
+            deadline.cancel();
+        }
+    }
+
+    /**
+     * End the game if the turn that started at the given step is still being played
+     */
+    private void expireTurn(String sessionId, int step) {
+        ReentrantLock lock = lockFor(sessionId);
+        lock.lock();
+        try {
+            GameSession session = sessions.get(sessionId);
+            if (session == null || session.isGameOver() || session.getCurrentStep() != step) {
+                return;
+            }
+            session.setTimedOut(true);
+            turnDeadlines.remove(sessionId);
+            if (journal != null) {
+                logFailure(journal.turnTimedOut(session), sessionId);
+            }
+            log.debug("Session {}: {} ran out of time", sessionId, session.getCurrentPlayerName());
+            turnTimeoutListener.accept(session);
+        } catch (RuntimeException e) {
+            log.warn("Turn timeout listener failed for session {}", sessionId, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void scheduleSnapshot(long intervalMillis) {
+        timer.schedule(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to write a journal snapshot", e);
+            }
+            scheduleSnapshot(intervalMillis);
+        }, intervalMillis, TimeUnit.MILLISECONDS, snapshotExecutor);
+    }
+
+    /**
+     * Wait until an event is on disk; the change stays applied in memory if the write failed
+     */
+    private static void awaitJournal(CompletableFuture<Long> logged, String sessionId) {
+        if (logged == null) {
+            return;
+        }
+        try {
+            logged.join();
+        } catch (CompletionException e) {
+            log.error("Failed to journal a change of session {}", sessionId, e.getCause());
+        }
+    }
+
+    /**
+     * Log an event that could not be written, without waiting for it
+     */
+    private static void logFailure(CompletableFuture<Long> logged, String sessionId) {
+        logged.whenComplete((segment, error) -> {
+            if (error != null) {
+                log.error("Failed to journal a change of session {}", sessionId, error);
+            }
+        });
+    }
+
+    private WinCondition randomGenreWinCondition(int targetCount) {
+        List<String> genreNames = MovieGenreService
+                .getInstance()
+                .getAllGenreNames();
+        String genre = genreNames.get(random.nextInt(genreNames.size()));
+        return new WinCondition("genre", genre, targetCount);
+    }
+
+    private ReentrantLock lockFor(String sessionId) {
+        int hash = sessionId.hashCode();
+        return locks[(hash ^ (hash >>> 16)) & (locks.length - 1)];
+    }
+}
@@ -0,0 +1,516 @@
+package service.game;
+
+import lombok.extern.slf4j.Slf4j;
+import model.game.Connection;
+import model.game.GameSession;
+import model.game.HistoryRecord;
+import model.game.WinCondition;
+import model.tmdb.Movie;
+import service.movie.MovieDataService;
+import utils.FileUtil;
+import utils.GroupCommitLog;
+import utils.IoExecutors;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Event journal of game sessions
+ * Every session event is appended as a compact binary record to the group-commit log of the
+ * session's shard. A snapshot seals each shard's current segment, writes the state of the shard's
+ * sessions and then drops the sealed segments. Recovery loads the snapshots and replays the
+ * remaining events, one shard per thread. Events carry the session step they lead to, so events
+ * already covered by a snapshot are skipped.
+ */
+@Slf4j
+public class GameJournal implements Closeable {
+    private static final byte SESSION_CREATED = 1;
+    private static final byte MOVE_PLAYED = 2;
+    private static final byte TURN_TIMED_OUT = 3;
+    private static final byte SESSION_REMOVED = 4;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final Path directory;
+    private final GroupCommitLog[] shards;
+
+    /**
+     * Open or create a journal
+     *
+     * @param directory  journal directory
+     * @param shardCount number of shards, must stay the same across restarts
+     * @param maxBatch   most events written per fsync
+     */
+    public GameJournal(Path directory, int shardCount, int maxBatch) throws IOException {
+        this.directory = directory;
+        this.shards = new GroupCommitLog[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new GroupCommitLog(directory, "shard-" + i, maxBatch);
+        }
+    }
+
+    /**
+     * Record a new session
+     *
+     * @return completes once the event is on disk
+     */
+    public CompletableFuture<Long> sessionCreated(GameSession session) {
+        return append(session.getSessionId(), SESSION_CREATED, out -> {
+            out.writeUTF(session.getPlayer1Name());
+            out.writeUTF(session.getPlayer2Name());
+            out.writeInt(session
+                                 .getCurrentMovie()
+                                 .getId());
+            writeWinCondition(out, session.getPlayer1WinCondition());
+            writeWinCondition(out, session.getPlayer2WinCondition());
+        });
+    }
+
+    /**
+     * Record a played move, after it was applied to the session
+     *
+     * @param player1   whether player 1 made the move
+     * @param progress  win condition progress of the player after the move
+     */
+    public CompletableFuture<Long> movePlayed(GameSession session, Connection connection, boolean player1,
+                                              int progress) {
+        return append(session.getSessionId(), MOVE_PLAYED, out -> {
+            out.writeInt(session.getCurrentStep());
+            out.writeInt(session
+                                 .getCurrentMovie()
+                                 .getId());
+            writeConnection(out, connection);
+            out.writeBoolean(player1);
+            out.writeInt(progress);
+        });
+    }
+
+    /**
+     * Record that the current player ran out of time
+     */
+    public CompletableFuture<Long> turnTimedOut(GameSession session) {
+        return append(session.getSessionId(), TURN_TIMED_OUT, out -> out.writeInt(session.getCurrentStep()));
+    }
+
+    /**
+     * Record that a session was dropped
+     */
+    public CompletableFuture<Long> sessionRemoved(String sessionId) {
+        return append(sessionId, SESSION_REMOVED, out -> {
+        });
+    }
+
+    /**
+     * Write a snapshot of every shard and drop the journal segments it covers
+     * Events appended after the seal may also be in the snapshot; replay skips them by step.
+     *
+     * @param sessionIds live view of the IDs of the sessions to save
+     * @param reader     encodes a session while holding its lock, see encodeSession; returns null for a session that is gone
+     */
+    public void snapshot(Collection<String> sessionIds, Function<String, byte[]> reader) throws IOException {
+        long start = System.currentTimeMillis();
+        // Seal every shard before listing the sessions, so a session created after the listing has
+        // its events in the new segments
+        long[] sealed = new long[shards.length];
+        for (int shard = 0; shard < shards.length; shard++) {
+            sealed[shard] = shards[shard]
+                    .rotate()
+                    .join();
+        }
+        List<List<String>> idsByShard = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            idsByShard.add(new ArrayList<>());
+        }
+        sessionIds.forEach(id -> idsByShard
+                .get(shardOf(id))
+                .add(id));
+
+        int saved = 0;
+        for (int shard = 0; shard < shards.length; shard++) {
+            Path file = snapshotFile(shard);
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING,
+                                                        StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(
+                         new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+                out.writeInt(SNAPSHOT_VERSION);
+                for (String id : idsByShard.get(shard)) {
+                    byte[] session = reader.apply(id);
+                    if (session != null) {
+                        out.writeInt(session.length);
+                        out.write(session);
+                        saved++;
+                    }
+                }
+                out.writeInt(-1);
+                out.flush();
+                channel.force(true);
+            }
+            // The snapshot must be durable before the segments it replaces are deleted
+            FileUtil.replaceAtomically(temporary, file);
+            shards[shard].deleteSegmentsUpTo(sealed[shard]);
+        }
+        log.info("Snapshot of {} sessions in {} ms", saved, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Rebuild the sessions from the snapshots and the journal
+     * Shards are replayed in parallel. Must be called before any event is appended.
+     *
+     * @return Sessions by ID, in no particular order
+     */
+    public Map<String, GameSession> recover(MovieDataService movieDataService) throws IOException {
+        long start = System.currentTimeMillis();
+        Map<Integer, Movie> movies = new ConcurrentHashMap<>();
+        Function<Integer, Movie> movieById = id -> movies.computeIfAbsent(id, key -> findMovie(movieDataService, key));
+
+        ExecutorService executor = IoExecutors.newExecutor("journal-replay", shards.length);
+        try {
+            List<Future<Map<String, GameSession>>> replays = new ArrayList<>();
+            for (int i = 0; i < shards.length; i++) {
+                int shard = i;
+                replays.add(executor.submit(() -> recoverShard(shard, movieById)));
+            }
+            Map<String, GameSession> sessions = new HashMap<>();
+            for (Future<Map<String, GameSession>> replay : replays) {
+                sessions.putAll(replay.get());
+            }
+            log.info("Recovered {} sessions from {} in {} ms", sessions.size(), directory,
+                     System.currentTimeMillis() - start);
+            return sessions;
+        } catch (InterruptedException e) {
+            Thread
+                    .currentThread()
+                    .interrupt();
+            throw new IOException("Interrupted while recovering " + directory, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to recover " + directory, e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Get the number of events written
+     */
+    public long getEventCount() {
+        long count = 0;
+        for (GroupCommitLog shard : shards) {
+            count += shard.getRecordCount();
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of fsyncs
+     */
+    public long getBatchCount() {
+        long count = 0;
+        for (GroupCommitLog shard : shards) {
+            count += shard.getBatchCount();
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (GroupCommitLog shard : shards) {
+            shard.close();
+        }
+    }
+
+    /**
+     * Encode the full state of a session for a snapshot; call while holding the session lock
+     */
+    public static byte[] encodeSession(GameSession session) {
+        return encode(out -> {
+            out.writeUTF(session.getSessionId());
+            out.writeUTF(session.getPlayer1Name());
+            out.writeUTF(session.getPlayer2Name());
+            writeWinCondition(out, session.getPlayer1WinCondition());
+            writeWinCondition(out, session.getPlayer2WinCondition());
+            out.writeInt(session
+                                 .getPlayer1WinCondition()
+                                 .getCurrentCount());
+            out.writeInt(session
+                                 .getPlayer2WinCondition()
+                                 .getCurrentCount());
+            out.writeBoolean(session.isPlayer1Turn());
+            out.writeBoolean(session.isTimedOut());
+            out.writeBoolean(session.isInSetupPhase());
+            out.writeInt(session.getCurrentStep());
+            out.writeInt(session
+                                 .getCurrentMovie()
+                                 .getId());
+
+            List<Movie> usedMovies = session.getUsedMovies();
+            out.writeInt(usedMovies.size());
+            for (Movie movie : usedMovies) {
+                out.writeInt(movie.getId());
+            }
+            Map<Integer, Integer> usage = session.getConnectionUsageCount();
+            out.writeInt(usage.size());
+            for (Map.Entry<Integer, Integer> entry : usage.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+            List<HistoryRecord> history = session.getRecentHistory();
+            out.writeInt(history.size());
+            for (HistoryRecord record : history) {
+                out.writeInt(record
+                                     .getMovie()
+                                     .getId());
+                out.writeBoolean(record.getConnection() != null);
+                if (record.getConnection() != null) {
+                    writeConnection(out, record.getConnection());
+                }
+            }
+        });
+    }
+
+    private Map<String, GameSession> recoverShard(int shard, Function<Integer, Movie> movieById) throws IOException {
+        Map<String, GameSession> sessions = new LinkedHashMap<>();
+        Path file = snapshotFile(shard);
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != SNAPSHOT_VERSION) {
+                    throw new IOException("Unsupported snapshot version in " + file);
+                }
+                for (int length = in.readInt(); length >= 0; length = in.readInt()) {
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    GameSession session = decodeSession(new DataInputStream(new ByteArrayInputStream(bytes)),
+                                                        movieById);
+                    sessions.put(session.getSessionId(), session);
+                }
+            }
+        }
+        int[] events = new int[1];
+        shards[shard].replay(record -> {
+            try {
+                apply(sessions, new DataInputStream(new ByteBufferInputStream(record)), movieById);
+                events[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Corrupt event in shard " + shard, e);
+            }
+        });
+        log.debug("Shard {}: {} sessions after replaying {} events", shard, sessions.size(), events[0]);
+        return sessions;
+    }
+
+    /**
+     * Apply one event to the sessions of its shard
+     */
+    private static void apply(Map<String, GameSession> sessions, DataInputStream in,
+                              Function<Integer, Movie> movieById) throws IOException {
+        byte type = in.readByte();
+        String sessionId = in.readUTF();
+        GameSession session = sessions.get(sessionId);
+        switch (type) {
+            case SESSION_CREATED: {
+                String player1 = in.readUTF();
+                String player2 = in.readUTF();
+                Movie startMovie = movieById.apply(in.readInt());
+                WinCondition condition1 = readWinCondition(in);
+                WinCondition condition2 = readWinCondition(in);
+                if (session == null) {
+                    session = new GameSession(sessionId, startMovie, condition1, condition2, player1, player2);
+                    session.addInitialMovieToHistory(startMovie);
+                    sessions.put(sessionId, session);
+                }
+                break;
+            }
+            case MOVE_PLAYED: {
+                int step = in.readInt();
+                Movie movie = movieById.apply(in.readInt());
+                String connectionType = in.readUTF();
+                String connectionValue = in.readUTF();
+                int personId = in.readInt();
+                boolean player1 = in.readBoolean();
+                int progress = in.readInt();
+                if (session == null || step <= session.getCurrentStep()) {
+                    // Already in the snapshot
+                    break;
+                }
+                Connection connection = new Connection(session.getCurrentMovie(), movie, connectionType,
+                                                       connectionValue, personId);
+                session.setPlayer1Turn(player1);
+                session.registerUsedMovie(movie);
+                session.registerUsedConnection(connection);
+                session.addToHistory(movie, connection);
+                session
+                        .getCurrentPlayerWinCondition()
+                        .setCurrentCount(progress);
+                if (!session.hasWon()) {
+                    session.switchTurn();
+                }
+                break;
+            }
+            case TURN_TIMED_OUT:
+                if (session != null) {
+                    session.setTimedOut(true);
+                }
+                break;
+            case SESSION_REMOVED:
+                sessions.remove(sessionId);
+                break;
+            default:
+                throw new IOException("Unknown event type " + type);
+        }
+    }
+
+    private static GameSession decodeSession(DataInputStream in, Function<Integer, Movie> movieById)
+            throws IOException {
+        String sessionId = in.readUTF();
+        String player1 = in.readUTF();
+        String player2 = in.readUTF();
+        WinCondition condition1 = readWinCondition(in);
+        WinCondition condition2 = readWinCondition(in);
+        condition1.setCurrentCount(in.readInt());
+        condition2.setCurrentCount(in.readInt());
+        boolean player1Turn = in.readBoolean();
+        boolean timedOut = in.readBoolean();
+        boolean inSetupPhase = in.readBoolean();
+        int step = in.readInt();
+        Movie currentMovie = movieById.apply(in.readInt());
+
+        List<Movie> usedMovies = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            usedMovies.add(movieById.apply(in.readInt()));
+        }
+        GameSession session = new GameSession(sessionId, usedMovies.isEmpty() ? currentMovie : usedMovies.get(0),
+                                              condition1, condition2, player1, player2);
+        session.setUsedMovies(usedMovies);
+        session.setCurrentMovie(currentMovie);
+        session.setCurrentStep(step);
+        session.setInSetupPhase(inSetupPhase);
+        session.setPlayer1Turn(player1Turn);
+        session.setTimedOut(timedOut);
+        for (int i = in.readInt(); i > 0; i--) {
+            session.setConnectionUsage(in.readInt(), in.readInt());
+        }
+        Movie previous = null;
+        for (int i = in.readInt(); i > 0; i--) {
+            Movie movie = movieById.apply(in.readInt());
+            if (in.readBoolean()) {
+                session.addToHistory(movie, new Connection(previous, movie, in.readUTF(), in.readUTF(), in.readInt()));
+            } else {
+                session.addInitialMovieToHistory(movie);
+            }
+            previous = movie;
+        }
+        return session;
+    }
+
+    private CompletableFuture<Long> append(String sessionId, byte type, EventWriter writer) {
+        byte[] event = encode(out -> {
+            out.writeByte(type);
+            out.writeUTF(sessionId);
+            writer.write(out);
+        });
+        return shards[shardOf(sessionId)].append(event);
+    }
+
+    private int shardOf(String sessionId) {
+        return Math.floorMod(sessionId.hashCode(), shards.length);
+    }
+
+    private Path snapshotFile(int shard) {
+        return directory.resolve("shard-" + shard + ".snapshot");
+    }
+
+    private static Movie findMovie(MovieDataService movieDataService, int movieId) {
+        Movie movie = movieDataService.getMovieById(movieId);
+        if (movie == null) {
+            // Keep the game playable even if the movie can no longer be looked up
+            log.warn("Movie {} of a recovered session not found", movieId);
+            movie = new Movie();
+            movie.setId(movieId);
+            movie.setTitle("Movie " + movieId);
+        }
+        return movie;
+    }
+
+    private static void writeWinCondition(DataOutputStream out, WinCondition condition) throws IOException {
+        out.writeUTF(condition.getConditionType());
+        out.writeUTF(condition.getConditionValue());
+        out.writeInt(condition.getTargetCount());
+    }
+
+    private static WinCondition readWinCondition(DataInputStream in) throws IOException {
+        return new WinCondition(in.readUTF(), in.readUTF(), in.readInt());
+    }
+
+    private static void writeConnection(DataOutputStream out, Connection connection) throws IOException {
+        out.writeUTF(connection.getConnectionType());
+        out.writeUTF(connection.getConnectionValue());
+        out.writeInt(connection.getPersonId());
+    }
+
+    private static byte[] encode(EventWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface EventWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Reads a buffer without copying it
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
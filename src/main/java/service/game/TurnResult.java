@@ -0,0 +1,53 @@
+package service.game;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import model.game.Connection;
+import model.tmdb.Movie;
+
+/**
+ * Outcome of a submitted move
+ */
+@Getter
+@AllArgsConstructor
+public class TurnResult {
+    /**
+     * Why a move was accepted or rejected
+     */
+    public enum Status {
+        // The move was played and the turn passed to the other player
+        ACCEPTED,
+        // The move was played and met the player's win condition
+        WON,
+        UNKNOWN_SESSION,
+        // The session already has a winner
+        GAME_OVER,
+        MOVIE_NOT_FOUND,
+        MOVIE_ALREADY_USED,
+        // The movie shares no cast or crew with the current movie
+        NO_CONNECTION,
+        // Every shared person has already been used three times
+        CONNECTIONS_EXHAUSTED,
+        // Another move on the same session was accepted while this one was being checked
+        CONFLICT
+    }
+
+    private final Status status;
+    // Player who submitted the move, null for an unknown session
+    private final String playerName;
+    // Movie submitted, null if it was not found
+    private final Movie movie;
+    // Connection used, only set for played moves
+    private final Connection connection;
+
+    /**
+     * Check whether the move was played
+     */
+    public boolean isAccepted() {
+        return status == Status.ACCEPTED || status == Status.WON;
+    }
+
+    static TurnResult rejected(Status status, String playerName, Movie movie) {
+        return new TurnResult(status, playerName, movie, null);
+    }
+}
@@ -0,0 +1,187 @@
+package service.movie;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import model.tmdb.Movie;
+import model.tmdb.MovieCredits;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Catalog importer
+ * Streams a gzipped newline-delimited JSON export line by line, parses the records
+ * in parallel and feeds them into the movie index.
+ * Memory stays bounded: only a fixed number of line batches are in flight at any time.
+ */
+@Slf4j
+public class CatalogImporter {
+    private static final int THREAD_POOL_SIZE = Runtime
+            .getRuntime()
+            .availableProcessors();
+    private static final int BATCH_SIZE = 1000; // Lines per parse task
+    private static final int MAX_PENDING_BATCHES = THREAD_POOL_SIZE * 2; // Batches waiting for a worker
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ObjectReader MOVIE_READER = OBJECT_MAPPER.readerFor(Movie.class);
+    private static final ObjectReader CREDITS_READER = OBJECT_MAPPER.readerFor(MovieCredits.class);
+
+    /**
+     * Import movies from a gzipped NDJSON export into the ID and title indexes
+     *
+     * @param file         gzipped file, one movie object per line
+     * @param indexService target index
+     * @return import statistics
+     */
+    public static ImportResult importMovies(Path file, MovieIndexService indexService) throws IOException {
+        return importFile(file, MOVIE_READER, (List<Movie> movies) -> {
+            List<Movie> valid = new ArrayList<>(movies.size());
+            for (Movie movie : movies) {
+                // Export records may only carry the original title
+                if (movie.getTitle() == null) {
+                    movie.setTitle(movie.getOriginalTitle());
+                }
+                if (movie.getTitle() != null) {
+                    valid.add(movie);
+                }
+            }
+            indexService.indexMovies(valid);
+            return valid.size();
+        });
+    }
+
+    /**
+     * Import credits from a gzipped NDJSON export into the person indexes
+     *
+     * @param file         gzipped file, one credits object per line
+     * @param indexService target index
+     * @return import statistics
+     */
+    public static ImportResult importCredits(Path file, MovieIndexService indexService) throws IOException {
+        return importFile(file, CREDITS_READER, (List<MovieCredits> creditsList) -> {
+            int count = 0;
+            for (MovieCredits credits : creditsList) {
+                if (credits.getCast() == null) {
+                    credits.setCast(new ArrayList<>());
+                }
+                if (credits.getCrew() == null) {
+                    credits.setCrew(new ArrayList<>());
+                }
+                indexService.indexMovieCredits(credits.getId(), credits);
+                count++;
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Read the file on the calling thread and parse batches of lines on the worker pool
+     */
+    private static <T> ImportResult importFile(Path file, ObjectReader reader,
+                                               BatchSink<T> sink) throws IOException {
+        long start = System.currentTimeMillis();
+        AtomicLong imported = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        long lines = 0;
+
+        // A full queue makes the reading thread parse the batch itself, which throttles reading
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREAD_POOL_SIZE, THREAD_POOL_SIZE, 0,
+                                                             TimeUnit.MILLISECONDS,
+                                                             new ArrayBlockingQueue<>(MAX_PENDING_BATCHES),
+                                                             new ThreadPoolExecutor.CallerRunsPolicy());
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file), READ_BUFFER_SIZE);
+             BufferedReader lineReader = new BufferedReader(
+                     new InputStreamReader(in, StandardCharsets.UTF_8), READ_BUFFER_SIZE)) {
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            String line;
+            while ((line = lineReader.readLine()) != null) {
+                lines++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                batch.add(line);
+                if (batch.size() == BATCH_SIZE) {
+                    submitBatch(executor, batch, reader, sink, imported, skipped);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                submitBatch(executor, batch, reader, sink, imported, skipped);
+            }
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(10, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread
+                        .currentThread()
+                        .interrupt();
+            }
+        }
+
+        long duration = System.currentTimeMillis() - start;
+        log.info("Imported {} records from {} ({} lines, {} skipped) in {} ms", imported.get(),
+                 file.getFileName(), lines, skipped.get(), duration);
+        return new ImportResult(lines, imported.get(), skipped.get(), duration);
+    }
+
+    /**
+     * Parse one batch of lines and hand the records to the sink
+     */
+    private static <T> void submitBatch(ThreadPoolExecutor executor, List<String> batch,
+                                        ObjectReader reader, BatchSink<T> sink,
+                                        AtomicLong imported, AtomicLong skipped) {
+        executor.execute(() -> {
+            List<T> records = new ArrayList<>(batch.size());
+            for (String line : batch) {
+                try {
+                    records.add(reader.readValue(line));
+                } catch (IOException e) {
+                    skipped.incrementAndGet();
+                }
+            }
+            int accepted = sink.accept(records);
+            imported.addAndGet(accepted);
+            skipped.addAndGet(records.size() - accepted);
+        });
+    }
+
+    /**
+     * Receives parsed records and returns how many of them were indexed
+     */
+    private interface BatchSink<T> {
+        int accept(List<T> records);
+    }
+
+    /**
+     * Import statistics
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class ImportResult {
+        // Lines read from the file
+        private final long lines;
+        // Records added to the index
+        private final long imported;
+        // Malformed or incomplete records
+        private final long skipped;
+        // Import duration (ms)
+        private final long durationMillis;
+    }
+}
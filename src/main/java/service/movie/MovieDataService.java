@@ -7,6 +7,7 @@ import model.tmdb.Movie;
 import model.tmdb.MovieCredits;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
 * Movie data service interface
@@ -35,6 +36,36 @@ public interface MovieDataService {
      */
     List<Movie> searchMoviesByPrefix(String selectedTitle);
 
+    /**
+     * Search movies by prefix without blocking past a deadline
+     * Local matches are returned at once. Without any, TMDB is searched in the background:
+     * results arriving within the deadline are returned, later ones are passed to the callback,
+     * and the remote search is abandoned once its own time budget runs out.
+     *
+     * @param prefix         Movie title prefix
+     * @param deadlineMillis How long the caller may be blocked
+     * @param lateResults    Receives remote results that arrive after the deadline, on a background thread;
+     *                       null to cancel the remote search at the deadline
+     * @return List of matching movies known by the deadline
+     */
+    default List<Movie> searchMoviesByPrefix(String prefix, long deadlineMillis, Consumer<List<Movie>> lateResults) {
+        return searchMoviesByPrefix(prefix, deadlineMillis, lateResults, null);
+    }
+
+    /**
+     * Search movies by prefix without blocking past a deadline, superseding the caller's previous search
+     * A remote search still running for the same slot is cancelled, HTTP call included.
+     *
+     * @param prefix         Movie title prefix
+     * @param deadlineMillis How long the caller may be blocked
+     * @param lateResults    Receives remote results that arrive after the deadline, on a background thread;
+     *                       null to cancel the remote search at the deadline
+     * @param slot           The caller's in-flight remote search, or null
+     * @return List of matching movies known by the deadline
+     */
+    List<Movie> searchMoviesByPrefix(String prefix, long deadlineMillis, Consumer<List<Movie>> lateResults,
+                                     SearchSlot slot);
+
     /**
      * Get movie details by ID
      *
@@ -88,6 +119,15 @@ public interface MovieDataService {
      */
     boolean matchesWinCondition(Movie movie, WinCondition condition);
 
+    /**
+    * Count the movies known to the index that meet the victory condition and are still unused
+    *
+    * @param condition victory condition
+    * @param session game session
+    * @return number of movies that can still count towards the condition
+    */
+    int countQualifyingMovies(WinCondition condition, GameSession session);
+
     /**
     * Register the used movie
     *
@@ -1,7 +1,9 @@
 package service.movie;
 
+import config.AppConfig;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import model.game.CompiledWinCondition;
 import model.game.Connection;
 import model.game.GameSession;
 import model.game.WinCondition;
@@ -10,9 +12,19 @@ import model.tmdb.CrewMember;
 import model.tmdb.Movie;
 import model.tmdb.MovieCredits;
 import service.tmdbApi.TMDBApiService;
+import service.tmdbApi.TMDBCreditsCrawler;
 import service.tmdbApi.TMDBMovieCacheService;
+import utils.IoExecutors;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -23,6 +35,16 @@ import java.util.stream.Collectors;
 public class MovieDataServiceImpl implements MovieDataService {
     // Number of test data movies
     private static final int TEST_MOVIES_LIMIT = 20;
+    // Crawl credits for the whole catalog in the background after startup
+    private static final boolean CRAWL_CREDITS_ON_STARTUP = Boolean.parseBoolean(AppConfig
+            .getInstance()
+            .getProperty("tmdb.credits.crawl-on-startup", "true"));
+    // Time budget of a remote search started by a deadline-bound search (ms)
+    private static final long REMOTE_SEARCH_TIMEOUT_MILLIS = Long.parseLong(AppConfig
+            .getInstance()
+            .getProperty("search.remote-timeout-ms", "3000"));
+    // Runs remote searches so the caller never waits past its deadline
+    private static final ExecutorService SEARCH_EXECUTOR = IoExecutors.newExecutor("remote-search", 4);
     // Singleton Instance
     private static MovieDataServiceImpl instance;
     /**
@@ -36,16 +58,18 @@ public class MovieDataServiceImpl implements MovieDataService {
     private final MovieIndexService indexService;
     // Random Number Generator
     private final Random random = new Random();
-    // Initial movie list (Top 5000)
-    private List<Movie> initialMoviesList;
+    // Initial movie list (Top 5000), swapped as a whole when the cache refreshes in the background
+    private volatile List<Movie> initialMoviesList;
     // Starter Movie List (daily updated starter movies)
-    private List<Movie> starterMovies;
+    private volatile List<Movie> starterMovies;
 
     /**
      * Private Constructor
      */
     private MovieDataServiceImpl() {
         this.indexService = MovieIndexService.getInstance();
+        // Swap refreshed movies into the live index
+        TMDBMovieCacheService.setRefreshListener(this::onMovieCacheRefreshed);
         // Loading the initial movie list
         loadInitialMovies();
     }
@@ -74,9 +98,37 @@ public class MovieDataServiceImpl implements MovieDataService {
         // Initialize the movie index
         indexService.initializeIndexes(initialMoviesList);
 
+        // Load precomputed credits and crawl the missing ones, so moves need no network calls
+        if (!testMode) {
+            TMDBCreditsCrawler.loadCredits(indexService::indexMovieCredits);
+            if (CRAWL_CREDITS_ON_STARTUP) {
+                TMDBCreditsCrawler.crawlAsync(initialMoviesList, indexService::indexMovieCredits);
+            }
+        }
+
         // Preload launcher movie list (currently uses first 20 movies or all as examples)
+        starterMovies = selectStarterMovies(initialMoviesList);
+    }
+
+    /**
+     * Merge a refreshed movie cache into the running service
+     */
+    private void onMovieCacheRefreshed(List<Movie> movies, List<Movie> changed) {
+        indexService.updateMovies(changed);
+        initialMoviesList = movies;
+        starterMovies = selectStarterMovies(movies);
+        if (!testMode && CRAWL_CREDITS_ON_STARTUP) {
+            TMDBCreditsCrawler.crawlAsync(changed, indexService::indexMovieCredits);
+        }
+        log.info("Movie list refreshed: {} movies, {} changed", movies.size(), changed.size());
+    }
+
+    /**
+     * Select the starter movies from the movie list
+     */
+    private List<Movie> selectStarterMovies(List<Movie> movies) {
         int starterLimit = 20;
-        starterMovies = initialMoviesList
+        return movies
                 .stream()
                 .limit(starterLimit)
                 .collect(Collectors.toList());
@@ -116,6 +168,68 @@ public class MovieDataServiceImpl implements MovieDataService {
         return results;
     }
 
+    @Override
+    public List<Movie> searchMoviesByPrefix(String prefix, long deadlineMillis, Consumer<List<Movie>> lateResults,
+                                            SearchSlot slot) {
+        if (prefix == null || prefix.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // The local index answers within any reasonable deadline
+        List<Movie> results = indexService.searchByPrefix(prefix);
+        if (!results.isEmpty()) {
+            return results;
+        }
+
+        // A FutureTask, unlike supplyAsync, interrupts its thread on cancel(true), and the interrupt
+        // cancels the HTTP call; the remote search still carries its own deadline down to the calls
+        CompletableFuture<List<Movie>> outcome = new CompletableFuture<>();
+        FutureTask<List<Movie>> remote = new FutureTask<>(
+                () -> TMDBApiService.searchMovies(prefix, 1, REMOTE_SEARCH_TIMEOUT_MILLIS)) {
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    outcome.cancel(false);
+                    return;
+                }
+                try {
+                    outcome.complete(get());
+                } catch (ExecutionException e) {
+                    outcome.completeExceptionally(e.getCause());
+                } catch (InterruptedException e) {
+                    outcome.completeExceptionally(e);
+                }
+            }
+        };
+        if (slot != null) {
+            slot.replace(remote);
+        }
+        SEARCH_EXECUTOR.execute(remote);
+        try {
+            return outcome.get(deadlineMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (lateResults == null) {
+                remote.cancel(true);
+            } else {
+                outcome.thenAccept(late -> {
+                    if (!late.isEmpty()) {
+                        lateResults.accept(late);
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread
+                    .currentThread()
+                    .interrupt();
+            remote.cancel(true);
+        } catch (CancellationException e) {
+            log.debug("Remote search for '{}' was superseded", prefix);
+        } catch (ExecutionException e) {
+            log.error("Remote search for '{}' failed", prefix, e.getCause());
+        }
+        return Collections.emptyList();
+    }
+
     @Override
     public Movie getMovieById(int movieId) {
         return indexService.getMovieById(movieId);
@@ -215,91 +329,54 @@ public class MovieDataServiceImpl implements MovieDataService {
             return false;
         }
 
-        String type = condition.getConditionType();
-        String value = condition.getConditionValue();
-
-        switch (type.toLowerCase()) {
-            case "genre":
-                // Check movie genre
-                return checkMovieGenre(movie, value);
-
-            case "actor":
-                // Check the actors
-                return checkMovieActor(movie, value);
-
-            case "director":
-                // Check Director
-                return checkMovieDirector(movie, value);
-
-            case "writer":
-                // Check the screenwriter
-                return checkMovieWriter(movie, value);
-
-            default:
-                return false;
+        CompiledWinCondition compiled = compileWinCondition(condition);
+        if (compiled.matches(movie.getId(), movie.getGenreIds())) {
+            return true;
         }
+        // A person's movies are only known once their credits are indexed
+        return compiled.isPersonCondition()
+                && indexService.getMovieCredits(movie.getId()) != null
+                && compiled.matches(movie.getId(), movie.getGenreIds());
     }
 
-    /**
-     * Check if the movie genre matches
-     */
-    private boolean checkMovieGenre(Movie movie, String genreName) {
-        return MovieGenreService
-                .getInstance()
-                .hasGenre(movie.getGenreIds(), genreName);
-    }
-
-    /**
-     * Check if movie actors match
-     */
-    private boolean checkMovieActor(Movie movie, String actorName) {
-        MovieCredits credits = indexService.getMovieCredits(movie.getId());
-        if (credits == null) {
-            return false;
+    @Override
+    public int countQualifyingMovies(WinCondition condition, GameSession session) {
+        int count = 0;
+        for (int movieId : compileWinCondition(condition).getMovieIds()) {
+            if (!session.isMovieUsed(movieId)) {
+                count++;
+            }
         }
-
-        return credits
-                .getCast()
-                .stream()
-                .anyMatch(cast -> cast
-                        .getName()
-                        .equalsIgnoreCase(actorName));
+        return count;
     }
 
     /**
-     * Check if the movie director matches
+     * Resolve a victory condition against the index, once per condition
      */
-    private boolean checkMovieDirector(Movie movie, String directorName) {
-        MovieCredits credits = indexService.getMovieCredits(movie.getId());
-        if (credits == null) {
-            return false;
+    private CompiledWinCondition compileWinCondition(WinCondition condition) {
+        CompiledWinCondition compiled = condition.getCompiled();
+        if (compiled != null) {
+            return compiled;
         }
 
-        return credits
-                .getCrew()
-                .stream()
-                .filter(crew -> "Director".equals(crew.getJob()))
-                .anyMatch(director -> director
-                        .getName()
-                        .equalsIgnoreCase(directorName));
-    }
-
-    /**
-     * Check if the movie screenwriter matches
-     */
-    private boolean checkMovieWriter(Movie movie, String writerName) {
-        MovieCredits credits = indexService.getMovieCredits(movie.getId());
-        if (credits == null) {
-            return false;
+        String type = condition.getConditionType();
+        String value = condition.getConditionValue();
+        if (type == null || value == null) {
+            compiled = CompiledWinCondition.NONE;
+        } else if ("genre".equalsIgnoreCase(type)) {
+            Integer genreId = MovieGenreService
+                    .getInstance()
+                    .getGenreId(value);
+            compiled = genreId == null
+                    ? CompiledWinCondition.NONE
+                    : new CompiledWinCondition(genreId, indexService.trackMovieIdsByGenre(genreId));
+        } else {
+            // Actor, director or screenwriter; the live set picks up credits indexed later
+            Set<Integer> movieIds = indexService.trackMovieIdsByPersonName(type, value);
+            compiled = movieIds == null ? CompiledWinCondition.NONE : new CompiledWinCondition(-1, movieIds);
         }
-
-        return credits
-                .getCrew()
-                .stream()
-                .filter(crew -> "Writer".equals(crew.getJob()) || "Screenplay".equals(crew.getJob()))
-                .anyMatch(writer -> writer
-                        .getName()
-                        .equalsIgnoreCase(writerName));
+        condition.setCompiled(compiled);
+        return compiled;
     }
 
     @Override
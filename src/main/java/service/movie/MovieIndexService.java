@@ -1,14 +1,18 @@
 package service.movie;
 
+import config.AppConfig;
 import lombok.extern.slf4j.Slf4j;
 import model.tmdb.CastMember;
 import model.tmdb.CrewMember;
 import model.tmdb.Movie;
 import model.tmdb.MovieCredits;
 import service.tmdbApi.TMDBApiService;
+import utils.CacheTier;
+import utils.TieredCache;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 
 /**
@@ -17,14 +21,25 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 public class MovieIndexService {
+    private static final AppConfig CONFIG = AppConfig.getInstance();
+    // On-heap movies besides the pinned catalog
+    private static final int MOVIE_CACHE_CAPACITY = Integer.parseInt(
+            CONFIG.getProperty("cache.l1.movies.capacity", "2000"));
+    // On-heap credits
+    private static final int CREDITS_CACHE_CAPACITY = Integer.parseInt(
+            CONFIG.getProperty("cache.l1.credits.capacity", "10000"));
+
     // Singleton instance
     private static MovieIndexService instance;
 
     //Title index (prefix -> movie list)
     private final Map<String, Set<Integer>> titlePrefixIndex = new ConcurrentHashMap<>();
 
-    //ID Index (ID -> Movie)
-    private final Map<Integer, Movie> idIndex = new ConcurrentHashMap<>();
+    // Movies by ID: catalog pinned on heap, then LRU, persistent store and TMDB API
+    private final TieredCache<Movie> movieCache = new TieredCache<>("movies", MOVIE_CACHE_CAPACITY,
+                                                                    MovieStore.movieTier(),
+                                                                    new ApiTier<>("tmdb",
+                                                                                  TMDBApiService::getMovieDetails));
 
     // Actor index (actor ID -> movie list)
     private final Map<Integer, Set<Integer>> actorIndex = new ConcurrentHashMap<>();
@@ -38,11 +53,19 @@ public class MovieIndexService {
     //Director name index (director name -> director ID)
     private final Map<String, Integer> directorNameIndex = new ConcurrentHashMap<>();
 
-    // Movie details cache
-    private final Map<Integer, Movie> movieDetailsCache = new ConcurrentHashMap<>();
+    // Genre index (genre ID -> catalog movie IDs)
+    private final Map<Integer, Set<Integer>> genreIndex = new ConcurrentHashMap<>();
+
+    // Person name indexes by role (lower-case name -> movie IDs), so win conditions on a name need no credit scan
+    private final Map<String, Set<Integer>> actorNameMovieIndex = new ConcurrentHashMap<>();
+    private final Map<String, Set<Integer>> directorNameMovieIndex = new ConcurrentHashMap<>();
+    private final Map<String, Set<Integer>> writerNameMovieIndex = new ConcurrentHashMap<>();
 
-    // Movie cast and crew cache
-    private final Map<Integer, MovieCredits> movieCreditsCache = new ConcurrentHashMap<>();
+    // Movie cast and crew by movie ID: LRU, persistent store and TMDB API
+    private final TieredCache<MovieCredits> creditsCache = new TieredCache<>("credits", CREDITS_CACHE_CAPACITY,
+                                                                             MovieStore.creditsTier(),
+                                                                             new ApiTier<>("tmdb",
+                                                                                           TMDBApiService::getMovieCredits));
 
     /**
      * Private Constructor
@@ -68,15 +91,65 @@ public class MovieIndexService {
     public void initializeIndexes(List<Movie> movies) {
         log.info("Start initializing the movie index, the number of movies: {}", movies.size());
 
+        indexMovies(movies);
+
+        log.info("Movie index initialization completed");
+    }
+
+    /**
+     * Add movies to the ID and title indexes
+     *
+     * @param movies Movies to add
+     */
+    public void indexMovies(Collection<Movie> movies) {
         for (Movie movie : movies) {
-            // Add to ID Index
-            idIndex.put(movie.getId(), movie);
+            // Pin in the ID Index
+            movieCache.pin(movie.getId(), movie);
 
             // Add to title index
             indexMovieTitle(movie);
+
+            // Add to genre index
+            indexMovieGenres(movie);
         }
+    }
 
-        log.info("Movie index initialization completed");
+    /**
+     * Replace changed movies in the live index
+     * Title prefixes of renamed movies are moved and stale details are dropped
+     *
+     * @param movies Changed or new movies
+     */
+    public void updateMovies(Collection<Movie> movies) {
+        for (Movie movie : movies) {
+            Movie previous = movieCache.peek(movie.getId());
+            movieCache.pin(movie.getId(), movie);
+            if (previous != null && previous.getTitle() != null
+                    && !previous.getTitle().equalsIgnoreCase(movie.getTitle())) {
+                removeMovieTitle(previous);
+            }
+            if (previous != null) {
+                removeMovieGenres(previous);
+            }
+            indexMovieTitle(movie);
+            indexMovieGenres(movie);
+        }
+        log.info("{} movies updated in the index", movies.size());
+    }
+
+    /**
+     * Remove a movie from the title index
+     */
+    private void removeMovieTitle(Movie movie) {
+        String title = movie
+                .getTitle()
+                .toLowerCase();
+        for (int i = 1; i <= title.length(); i++) {
+            Set<Integer> movieIds = titlePrefixIndex.get(title.substring(0, i));
+            if (movieIds != null) {
+                movieIds.remove(movie.getId());
+            }
+        }
     }
 
     /**
@@ -89,17 +162,46 @@ public class MovieIndexService {
         for (int i = 1; i <= title.length(); i++) {
             String prefix = title.substring(0, i);
             titlePrefixIndex
-                    .computeIfAbsent(prefix, k -> new HashSet<>())
+                    .computeIfAbsent(prefix, k -> ConcurrentHashMap.newKeySet())
                     .add(movie.getId());
         }
     }
 
+    /**
+     * Add a movie to the genre index
+     */
+    private void indexMovieGenres(Movie movie) {
+        if (movie.getGenreIds() == null) {
+            return;
+        }
+        for (int genreId : movie.getGenreIds()) {
+            genreIndex
+                    .computeIfAbsent(genreId, k -> ConcurrentHashMap.newKeySet())
+                    .add(movie.getId());
+        }
+    }
+
+    /**
+     * Remove a movie from the genre index
+     */
+    private void removeMovieGenres(Movie movie) {
+        if (movie.getGenreIds() == null) {
+            return;
+        }
+        for (int genreId : movie.getGenreIds()) {
+            Set<Integer> movieIds = genreIndex.get(genreId);
+            if (movieIds != null) {
+                movieIds.remove(movie.getId());
+            }
+        }
+    }
+
     /**
      * Index Movie Cast
      */
     public void indexMovieCredits(int movieId, MovieCredits credits) {
         // Cache cast and crew information
-        movieCreditsCache.put(movieId, credits);
+        creditsCache.put(movieId, credits);
 
         // Index Actor
         for (CastMember cast : credits.getCast()) {
@@ -110,8 +212,9 @@ public class MovieIndexService {
 
             // Add actor-movie association
             actorIndex
-                    .computeIfAbsent(cast.getId(), k -> new HashSet<>())
+                    .computeIfAbsent(cast.getId(), k -> ConcurrentHashMap.newKeySet())
                     .add(movieId);
+            indexPersonName(actorNameMovieIndex, cast.getName(), movieId);
         }
 
         // Index Director
@@ -124,12 +227,21 @@ public class MovieIndexService {
 
                 // Adding Director-Movie Associations
                 directorIndex
-                        .computeIfAbsent(crew.getId(), k -> new HashSet<>())
+                        .computeIfAbsent(crew.getId(), k -> ConcurrentHashMap.newKeySet())
                         .add(movieId);
+                indexPersonName(directorNameMovieIndex, crew.getName(), movieId);
+            } else if ("Writer".equals(crew.getJob()) || "Screenplay".equals(crew.getJob())) {
+                indexPersonName(writerNameMovieIndex, crew.getName(), movieId);
             }
         }
     }
 
+    private static void indexPersonName(Map<String, Set<Integer>> index, String name, int movieId) {
+        index
+                .computeIfAbsent(name.toLowerCase(), k -> ConcurrentHashMap.newKeySet())
+                .add(movieId);
+    }
+
     /**
      * Search movies by prefix
      */
@@ -143,7 +255,7 @@ public class MovieIndexService {
 
         return movieIds
                 .stream()
-                .map(idIndex::get)
+                .map(movieCache::getLocal)
                 .filter(Objects::nonNull)
                 .sorted(Comparator
                                 .comparing(Movie::getPopularity)
@@ -155,33 +267,15 @@ public class MovieIndexService {
      * Get movies by ID
      */
     public Movie getMovieById(int movieId) {
-        // First query from the details cache
-        Movie movie = movieDetailsCache.get(movieId);
-        if (movie != null) {
-            return movie;
-        }
-
-        // Then query from the ID index
-        movie = idIndex.get(movieId);
-        if (movie != null) {
-            return movie;
-        }
-
-        // If none is found, call the API to obtain
-        movie = TMDBApiService.getMovieDetails(movieId);
-        if (movie != null) {
-            // Cache movie details
-            movieDetailsCache.put(movieId, movie);
+        boolean inMemory = movieCache.containsInMemory(movieId);
+        // Read through the heap cache, the persistent store and the API
+        Movie movie = movieCache.get(movieId);
+        if (movie != null && !inMemory) {
             // Indexing movie titles
             indexMovieTitle(movie);
-            // Cache movie ID
-            idIndex.put(movieId, movie);
 
             // Get and index movie cast and crew
-            MovieCredits credits = TMDBApiService.getMovieCredits(movieId);
-            if (credits != null) {
-                indexMovieCredits(movieId, credits);
-            }
+            getMovieCredits(movieId);
         }
 
         return movie;
@@ -191,15 +285,10 @@ public class MovieIndexService {
      * 获取电影演职人员
      */
     public MovieCredits getMovieCredits(int movieId) {
-        // Query from cache first
-        MovieCredits credits = movieCreditsCache.get(movieId);
-        if (credits != null) {
-            return credits;
-        }
-
-        // Call API if cache misses
-        credits = TMDBApiService.getMovieCredits(movieId);
-        if (credits != null) {
+        boolean inMemory = creditsCache.containsInMemory(movieId);
+        // Read through the heap cache, the persistent store and the API
+        MovieCredits credits = creditsCache.get(movieId);
+        if (credits != null && !inMemory) {
             // Index Movie Cast
             indexMovieCredits(movieId, credits);
         }
@@ -247,6 +336,87 @@ public class MovieIndexService {
         return directorNameIndex.get(name.toLowerCase());
     }
 
+    /**
+     * Get the IDs of the catalog movies in a genre
+     * Unknown genres get an empty set and leave the index untouched.
+     */
+    public Set<Integer> getMovieIdsByGenre(int genreId) {
+        Set<Integer> movieIds = genreIndex.get(genreId);
+        return movieIds == null ? Collections.emptySet() : Collections.unmodifiableSet(movieIds);
+    }
+
+    /**
+     * Register a genre and get a live view of its catalog movies that follows later indexing
+     * Meant for compiled win conditions, which are few; lookups go through getMovieIdsByGenre.
+     */
+    public Set<Integer> trackMovieIdsByGenre(int genreId) {
+        return Collections.unmodifiableSet(genreIndex.computeIfAbsent(genreId, k -> ConcurrentHashMap.newKeySet()));
+    }
+
+    /**
+     * Get the IDs of the movies whose indexed credits name a person in a role
+     * Unknown names get an empty set and leave the index untouched.
+     *
+     * @param role actor, director or writer
+     * @param name person name, in any case
+     * @return Movie IDs, or null if the role is unknown
+     */
+    public Set<Integer> getMovieIdsByPersonName(String role, String name) {
+        Map<String, Set<Integer>> index = personNameIndex(role);
+        if (index == null) {
+            return null;
+        }
+        Set<Integer> movieIds = index.get(name.toLowerCase());
+        return movieIds == null ? Collections.emptySet() : Collections.unmodifiableSet(movieIds);
+    }
+
+    /**
+     * Register a person in a role and get a live view of their movies that grows as credits are indexed
+     * Meant for compiled win conditions, which are few; lookups go through getMovieIdsByPersonName.
+     *
+     * @param role actor, director or writer
+     * @param name person name, in any case
+     * @return Movie IDs, or null if the role is unknown
+     */
+    public Set<Integer> trackMovieIdsByPersonName(String role, String name) {
+        Map<String, Set<Integer>> index = personNameIndex(role);
+        if (index == null) {
+            return null;
+        }
+        return Collections.unmodifiableSet(index.computeIfAbsent(name.toLowerCase(),
+                                                                 k -> ConcurrentHashMap.newKeySet()));
+    }
+
+    /**
+     * Get the person name index of a role, or null if the role is unknown
+     */
+    private Map<String, Set<Integer>> personNameIndex(String role) {
+        switch (role.toLowerCase()) {
+            case "actor":
+                return actorNameMovieIndex;
+            case "director":
+                return directorNameMovieIndex;
+            case "writer":
+                return writerNameMovieIndex;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Get hit and latency metrics of the movie cache tiers
+     */
+    public List<TieredCache.TierStats> getMovieCacheStats() {
+        return movieCache.getStats();
+    }
+
+    /**
+     * Get hit and latency metrics of the credits cache tiers
+     */
+    public List<TieredCache.TierStats> getCreditsCacheStats() {
+        return creditsCache.getStats();
+    }
+
     /**
      * Set movie cast and crew information (for testing only)
      *
@@ -254,7 +424,6 @@ public class MovieIndexService {
      * @param credits Cast and crew information
      */
     public void setMovieCreditsForTest(int movieId, MovieCredits credits) {
-        movieCreditsCache.put(movieId, credits);
         indexMovieCredits(movieId, credits);
     }
 
@@ -263,12 +432,62 @@ public class MovieIndexService {
      */
     public void clearIndexes() {
         titlePrefixIndex.clear();
-        idIndex.clear();
         actorIndex.clear();
         actorNameIndex.clear();
         directorIndex.clear();
         directorNameIndex.clear();
-        movieDetailsCache.clear();
-        movieCreditsCache.clear();
+        // Empty the sets rather than dropping them, as views of them may be kept
+        genreIndex
+                .values()
+                .forEach(Set::clear);
+        actorNameMovieIndex
+                .values()
+                .forEach(Set::clear);
+        directorNameMovieIndex
+                .values()
+                .forEach(Set::clear);
+        writerNameMovieIndex
+                .values()
+                .forEach(Set::clear);
+        movieCache.clear();
+        creditsCache.clear();
+    }
+
+    /**
+     * Remote tier backed by the TMDB API, rate limited by TMDBApiService
+     */
+    private static class ApiTier<V> implements CacheTier<V> {
+        private final String name;
+        private final IntFunction<V> loader;
+
+        private ApiTier(String name, IntFunction<V> loader) {
+            this.name = name;
+            this.loader = loader;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public V get(int key) {
+            return loader.apply(key);
+        }
+
+        @Override
+        public void put(int key, V value) {
+            // Read-only
+        }
+
+        @Override
+        public boolean contains(int key) {
+            return false;
+        }
+
+        @Override
+        public boolean isLocal() {
+            return false;
+        }
     }
 }
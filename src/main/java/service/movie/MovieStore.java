@@ -0,0 +1,288 @@
+package service.movie;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import config.AppConfig;
+import lombok.extern.slf4j.Slf4j;
+import model.tmdb.Movie;
+import model.tmdb.MovieCredits;
+import utils.CacheTier;
+import utils.LogStore;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Persistent movie store
+ * Keeps movie details and credits fetched from TMDB on disk, keyed by movie ID,
+ * so they survive restarts and are never fetched twice.
+ * The logs keep their index and append offset in memory, so a single process owns the
+ * directory at a time; other processes sharing the cache run without the store.
+ */
+@Slf4j
+public class MovieStore {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private static final ObjectReader MOVIE_READER = OBJECT_MAPPER.readerFor(Movie.class);
+    private static final ObjectReader CREDITS_READER = OBJECT_MAPPER.readerFor(MovieCredits.class);
+    private static final ObjectWriter WRITER = OBJECT_MAPPER.writer();
+
+    // Singleton instance, shared by every index service
+    private static MovieStore instance;
+    // Set when the store could not be opened, so the lookup is not retried on every call
+    private static boolean unavailable = false;
+    private static String directory = AppConfig
+            .getInstance()
+            .getProperty("store.dir", "cache/store");
+
+    // Marks the directory as owned by this process
+    private static final String LOCK_FILE_NAME = ".lock";
+
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final LogStore details;
+    private final LogStore credits;
+
+    /**
+     * Private Constructor
+     *
+     * @throws StoreInUseException if another process owns the directory
+     */
+    private MovieStore(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        this.lockChannel = FileChannel.open(dir.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE,
+                                            StandardOpenOption.WRITE);
+        try {
+            this.lock = tryLock(lockChannel);
+            if (lock == null) {
+                throw new StoreInUseException("Movie store " + dir + " is in use by another process");
+            }
+            this.details = new LogStore(dir.resolve("movie_details.log"));
+            this.credits = new LogStore(dir.resolve("movie_credits.log"));
+        } catch (IOException | RuntimeException e) {
+            // Closing the channel also releases the lock
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Already held within this JVM, e.g. by a store that was not closed
+            return null;
+        }
+    }
+
+    /**
+     * Get a singleton instance
+     *
+     * @return the store, or null if it cannot be opened
+     */
+    public static synchronized MovieStore getInstance() {
+        if (instance == null && !unavailable) {
+            try {
+                instance = new MovieStore(Paths.get(directory));
+                MovieStore store = instance;
+                Runtime
+                        .getRuntime()
+                        .addShutdownHook(new Thread(store::close, "movie-store-close"));
+            } catch (StoreInUseException e) {
+                log.warn("{}, continuing without it", e.getMessage());
+                unavailable = true;
+            } catch (IOException e) {
+                log.error("Failed to open the movie store, continuing without it", e);
+                unavailable = true;
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Get store directory
+     */
+    public static synchronized String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Set store directory (for testing)
+     */
+    public static synchronized void setDirectory(String dir) {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+        unavailable = false;
+        directory = dir;
+    }
+
+    /**
+     * Get the movie details store as a cache tier
+     */
+    public static CacheTier<Movie> movieTier() {
+        return new StoreTier<Movie>() {
+            @Override
+            Movie read(MovieStore store, int movieId) {
+                return store.getMovie(movieId);
+            }
+
+            @Override
+            void write(MovieStore store, int movieId, Movie movie) {
+                store.putMovie(movie);
+            }
+
+            @Override
+            boolean holds(MovieStore store, int movieId) {
+                return store.details.contains(movieId);
+            }
+        };
+    }
+
+    /**
+     * Get the movie credits store as a cache tier
+     */
+    public static CacheTier<MovieCredits> creditsTier() {
+        return new StoreTier<MovieCredits>() {
+            @Override
+            MovieCredits read(MovieStore store, int movieId) {
+                return store.getCredits(movieId);
+            }
+
+            @Override
+            void write(MovieStore store, int movieId, MovieCredits movieCredits) {
+                store.putCredits(movieId, movieCredits);
+            }
+
+            @Override
+            boolean holds(MovieStore store, int movieId) {
+                return store.credits.contains(movieId);
+            }
+        };
+    }
+
+    /**
+     * Get stored movie details
+     *
+     * @return the movie, or null if it is not stored
+     */
+    public Movie getMovie(int movieId) {
+        return read(details, movieId, MOVIE_READER);
+    }
+
+    /**
+     * Store movie details
+     */
+    public void putMovie(Movie movie) {
+        write(details, movie.getId(), movie);
+    }
+
+    /**
+     * Get stored movie credits
+     *
+     * @return the credits, or null if they are not stored
+     */
+    public MovieCredits getCredits(int movieId) {
+        return read(credits, movieId, CREDITS_READER);
+    }
+
+    /**
+     * Store movie credits
+     */
+    public void putCredits(int movieId, MovieCredits movieCredits) {
+        write(credits, movieId, movieCredits);
+    }
+
+    /**
+     * Flush and close both logs
+     */
+    public void close() {
+        try {
+            details.close();
+            credits.close();
+        } catch (IOException e) {
+            log.error("Failed to close the movie store", e);
+        } finally {
+            try {
+                if (lock.isValid()) {
+                    lock.release();
+                }
+                lockChannel.close();
+            } catch (IOException e) {
+                log.error("Failed to release the movie store lock", e);
+            }
+        }
+    }
+
+    private static <T> T read(LogStore store, int movieId, ObjectReader reader) {
+        try {
+            byte[] value = store.get(movieId);
+            return value == null ? null : reader.readValue(value);
+        } catch (IOException e) {
+            log.error("Failed to read movie {} from the store", movieId, e);
+            return null;
+        }
+    }
+
+    private static void write(LogStore store, int movieId, Object value) {
+        try {
+            store.put(movieId, WRITER.writeValueAsBytes(value));
+        } catch (IOException e) {
+            log.error("Failed to write movie {} to the store", movieId, e);
+        }
+    }
+
+    /**
+     * Cache tier backed by the current store instance, so it follows directory changes
+     */
+    private abstract static class StoreTier<V> implements CacheTier<V> {
+        abstract V read(MovieStore store, int movieId);
+
+        abstract void write(MovieStore store, int movieId, V value);
+
+        abstract boolean holds(MovieStore store, int movieId);
+
+        @Override
+        public String getName() {
+            return "store";
+        }
+
+        @Override
+        public V get(int key) {
+            MovieStore store = getInstance();
+            return store == null ? null : read(store, key);
+        }
+
+        @Override
+        public void put(int key, V value) {
+            MovieStore store = getInstance();
+            if (store != null) {
+                write(store, key, value);
+            }
+        }
+
+        @Override
+        public boolean contains(int key) {
+            MovieStore store = getInstance();
+            return store != null && holds(store, key);
+        }
+    }
+
+    /**
+     * Thrown when another process owns the store directory
+     */
+    private static class StoreInUseException extends IOException {
+        private StoreInUseException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package service.movie;
+
+import java.util.concurrent.Future;
+
+/**
+ * One caller's in-flight remote search
+ * Each caller, e.g. a text box, keeps at most one remote search running: starting a new one
+ * cancels the one it supersedes, which also cancels its HTTP call.
+ */
+public class SearchSlot {
+    // Latest remote search started through this slot
+    private Future<?> current;
+
+    /**
+     * Make a new remote search the current one, cancelling the previous one
+     */
+    synchronized void replace(Future<?> search) {
+        if (current != null) {
+            current.cancel(true);
+        }
+        current = search;
+    }
+
+    /**
+     * Cancel the current remote search, if any
+     */
+    public synchronized void cancel() {
+        replace(null);
+    }
+}
@@ -5,14 +5,27 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import model.tmdb.Genre;
 import model.tmdb.Movie;
+import model.tmdb.MovieChangeList;
 import model.tmdb.MovieCredits;
 import model.tmdb.MovieList;
+import utils.CircuitBreaker;
+import utils.HttpStatusException;
 import utils.HttpUtil;
+import utils.NegativeCache;
+import utils.RequestScheduler;
+import utils.ResiliencePolicy;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
 * TMDB API service
@@ -22,6 +35,44 @@ import java.util.Map;
 public class TMDBApiService {
     private static final AppConfig CONFIG = AppConfig.getInstance();
 
+    // Request headers shared by all TMDB calls
+    private static final Map<String, String> HEADERS = Collections.singletonMap("accept",
+                                                                                "application/json");
+
+    // Fails fast while TMDB is down or slow instead of waiting out the HTTP timeouts
+    private static final CircuitBreaker CIRCUIT_BREAKER = new CircuitBreaker("tmdb",
+            Integer.parseInt(CONFIG.getProperty("tmdb.breaker.failure-threshold", "5")),
+            Long.parseLong(CONFIG.getProperty("tmdb.breaker.slow-call-ms", "5000")),
+            Long.parseLong(CONFIG.getProperty("tmdb.breaker.open-ms", "30000")));
+
+    // Request budget shared by every TMDB call, interactive requests first
+    private static final RequestScheduler SCHEDULER = new RequestScheduler(
+            Double.parseDouble(CONFIG.getProperty("tmdb.rate-limit.per-second", "40")));
+
+    // Retries with jittered backoff, per-attempt deadlines and hedging for player-facing requests
+    private static final ResiliencePolicy RESILIENCE = new ResiliencePolicy("tmdb", SCHEDULER,
+            Integer.parseInt(CONFIG.getProperty("tmdb.retry.max-attempts", "3")),
+            Long.parseLong(CONFIG.getProperty("tmdb.retry.base-backoff-ms", "200")),
+            Long.parseLong(CONFIG.getProperty("tmdb.retry.max-backoff-ms", "5000")),
+            Long.parseLong(CONFIG.getProperty("tmdb.request.attempt-timeout-ms", "5000")),
+            Long.parseLong(CONFIG.getProperty("tmdb.hedge.default-delay-ms", "500")));
+
+    private static final int HTTP_NOT_FOUND = 404;
+
+    // Movie IDs TMDB answered 404 for, and search queries without results
+    private static final long NEGATIVE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(
+            Long.parseLong(CONFIG.getProperty("tmdb.negative-cache.ttl-minutes", "30")));
+    private static final int NEGATIVE_MAX_ENTRIES = Integer.parseInt(
+            CONFIG.getProperty("tmdb.negative-cache.max-entries", "10000"));
+    private static final boolean NEGATIVE_BLOOM_FILTER = Boolean.parseBoolean(
+            CONFIG.getProperty("tmdb.negative-cache.bloom-filter", "true"));
+    private static final NegativeCache<Integer> MISSING_MOVIES = new NegativeCache<>("missing-movies",
+            NEGATIVE_TTL_MILLIS, NEGATIVE_MAX_ENTRIES, NEGATIVE_BLOOM_FILTER);
+    private static final NegativeCache<Integer> MISSING_CREDITS = new NegativeCache<>("missing-credits",
+            NEGATIVE_TTL_MILLIS, NEGATIVE_MAX_ENTRIES, NEGATIVE_BLOOM_FILTER);
+    private static final NegativeCache<String> EMPTY_SEARCHES = new NegativeCache<>("empty-searches",
+            NEGATIVE_TTL_MILLIS, NEGATIVE_MAX_ENTRIES, NEGATIVE_BLOOM_FILTER);
+
     // Test mode flag
     private static boolean testMode = false;
     // Test data
@@ -36,6 +87,7 @@ public class TMDBApiService {
     private static String searchMovieUrl = baseUrl + "/search/movie";
     private static String movieDetailsUrl = baseUrl + "/movie/%d";
     private static String movieCreditsUrl = baseUrl + "/movie/%d/credits";
+    private static String movieChangesUrl = baseUrl + "/movie/changes";
     private static String genresUrl = baseUrl + "/genre/movie/list";
 
     /**
@@ -47,7 +99,10 @@ public class TMDBApiService {
         searchMovieUrl = baseUrl + "/search/movie";
         movieDetailsUrl = baseUrl + "/movie/%d";
         movieCreditsUrl = baseUrl + "/movie/%d/credits";
+        movieChangesUrl = baseUrl + "/movie/changes";
         genresUrl = baseUrl + "/genre/movie/list";
+        // Misses remembered for another server do not apply
+        clearNegativeCache();
     }
 
     /**
@@ -87,9 +142,6 @@ public class TMDBApiService {
         }
 
         try {
-            Map<String, String> headers = new HashMap<>();
-            headers.put("accept", "application/json");
-
             // Constructing URLs with parameters
             String url =
                     String.format("%s?include_adult=false&include_video=false&language=%s" +
@@ -97,8 +149,7 @@ public class TMDBApiService {
                                   CONFIG.getProperty("tmdb.api.language", "en-US"), page, sortBy,
                                   CONFIG.getProperty("tmdb.api.key"));
 
-            String response = HttpUtil.get(url, headers);
-            return HttpUtil.fromJson(response, MovieList.class);
+            return fetch(url, MovieList.class);
         } catch (Exception e) {
             log.error("Getting movie list exception", e);
             return null;
@@ -113,24 +164,48 @@ public class TMDBApiService {
 * @return Movie list
      */
     public static List<Movie> searchMovies(String query, int page) {
+        return searchMovies(query, page, 0);
+    }
+
+    /**
+     * Search movie API, giving up once a deadline has passed
+    *
+    * @param query Search keyword
+    * @param page Page number
+    * @param timeoutMillis deadline of the search including retries (0 for none)
+    * @return Movie list, empty if nothing matched or the deadline was missed
+     */
+    public static List<Movie> searchMovies(String query, int page, long timeoutMillis) {
         // Directly return test data in test mode
         if (testMode && testMovieList != null) {
             log.info("Test mode: Returns search test data");
             return testMovieList.getResults();
         }
 
-        try {
-            Map<String, String> headers = new HashMap<>();
-            headers.put("accept", "application/json");
+        String searchKey = query
+                .trim()
+                .toLowerCase(Locale.ROOT) + "#" + page;
+        if (EMPTY_SEARCHES.contains(searchKey)) {
+            return Collections.emptyList();
+        }
 
+        try {
             // Constructing URLs with parameters
             String url = String.format("%s?query=%s&include_adult=false&language=%s&page=%d" +
                                                "&api_key=%s", searchMovieUrl,
                                        HttpUtil.urlEncode(query), CONFIG.getProperty("tmdb.api.language", "en-US"), page, CONFIG.getProperty("tmdb.api.key"));
 
-            String response = HttpUtil.get(url, headers);
-            MovieList movieList = HttpUtil.fromJson(response, MovieList.class);
-            return movieList != null ? movieList.getResults() : Collections.emptyList();
+            MovieList movieList = fetch(url, MovieList.class, timeoutMillis);
+            if (movieList == null || movieList.getResults() == null || movieList
+                    .getResults()
+                    .isEmpty()) {
+                EMPTY_SEARCHES.add(searchKey);
+                return Collections.emptyList();
+            }
+            return movieList.getResults();
+        } catch (InterruptedIOException e) {
+            log.info("Search for '{}' missed its deadline: {}", query, e.getMessage());
+            return Collections.emptyList();
         } catch (Exception e) {
             log.error("Search movie exception", e);
             return Collections.emptyList();
@@ -150,17 +225,24 @@ public class TMDBApiService {
             return testMovieDetails;
         }
 
-        try {
-            Map<String, String> headers = new HashMap<>();
-            headers.put("accept", "application/json");
+        if (MISSING_MOVIES.contains(movieId)) {
+            return null;
+        }
 
-            
+        try {
             String url = String.format(movieDetailsUrl + "?language=%s&api_key=%s", movieId,
                                        CONFIG.getProperty("tmdb.api.language", "en-US"),
                                        CONFIG.getProperty("tmdb.api.key"));
 
-            String response = HttpUtil.get(url, headers);
-            return HttpUtil.fromJson(response, Movie.class);
+            return fetch(url, Movie.class);
+        } catch (HttpStatusException e) {
+            if (e.getCode() == HTTP_NOT_FOUND) {
+                log.info("Movie {} does not exist on TMDB", movieId);
+                MISSING_MOVIES.add(movieId);
+            } else {
+                log.error("Exception in getting movie details", e);
+            }
+            return null;
         } catch (Exception e) {
             log.error("Exception in getting movie details", e);
             return null;
@@ -180,22 +262,63 @@ public class TMDBApiService {
             return testMovieCredits;
         }
 
-        try {
-            Map<String, String> headers = new HashMap<>();
-            headers.put("accept", "application/json");
+        if (MISSING_CREDITS.contains(movieId)) {
+            return null;
+        }
 
+        try {
             String url = String.format(movieCreditsUrl + "?language=%s&api_key=%s", movieId,
                                        CONFIG.getProperty("tmdb.api.language", "en-US"),
                                        CONFIG.getProperty("tmdb.api.key"));
 
-            String response = HttpUtil.get(url, headers);
-            return HttpUtil.fromJson(response, MovieCredits.class);
+            return fetch(url, MovieCredits.class);
+        } catch (HttpStatusException e) {
+            if (e.getCode() == HTTP_NOT_FOUND) {
+                log.info("Movie {} has no credits on TMDB", movieId);
+                MISSING_CREDITS.add(movieId);
+            } else {
+                log.error("Get movie cast and crew exception", e);
+            }
+            return null;
         } catch (Exception e) {
             log.error("Get movie cast and crew exception", e);
             return null;
         }
     }
 
+    /**
+    * Get the IDs of movies changed in a date range (change feed API)
+    *
+    * @param startDate first day of the range
+    * @param endDate last day of the range (at most 14 days after startDate)
+    * @return changed movie IDs, or null if the feed could not be read completely
+    */
+    public static List<Integer> getChangedMovieIds(LocalDate startDate, LocalDate endDate) {
+        List<Integer> movieIds = new ArrayList<>();
+        int page = 1;
+        int totalPages = 1;
+        try {
+            while (page <= totalPages) {
+                String url = String.format("%s?start_date=%s&end_date=%s&page=%d&api_key=%s",
+                                           movieChangesUrl, startDate, endDate, page,
+                                           CONFIG.getProperty("tmdb.api.key"));
+                MovieChangeList changes = fetch(url, MovieChangeList.class);
+                if (changes == null || changes.getResults() == null) {
+                    break;
+                }
+                changes
+                        .getResults()
+                        .forEach(change -> movieIds.add(change.getId()));
+                totalPages = changes.getTotalPages();
+                page++;
+            }
+            return movieIds;
+        } catch (Exception e) {
+            log.error("Exception when getting movie changes", e);
+            return null;
+        }
+    }
+
     /**
     * Get the movie type list API
     *
@@ -203,15 +326,11 @@ public class TMDBApiService {
     */
     public static List<Genre> getMovieGenres() {
         try {
-            Map<String, String> headers = new HashMap<>();
-            headers.put("accept", "application/json");
-
             String url = String.format("%s?language=%s&api_key=%s", genresUrl,
                                        CONFIG.getProperty("tmdb.api.language", "en-US"),
                                        CONFIG.getProperty("tmdb.api.key"));
 
-            String response = HttpUtil.get(url, headers);
-            GenreList genreList = HttpUtil.fromJson(response, GenreList.class);
+            GenreList genreList = fetch(url, GenreList.class);
             return genreList != null ? genreList.getGenres() : Collections.emptyList();
         } catch (Exception e) {
             log.error("Exception when getting movie type list", e);
@@ -219,6 +338,141 @@ public class TMDBApiService {
         }
     }
 
+    /**
+     * Get the TMDB circuit breaker state
+     */
+    public static CircuitBreaker.State getCircuitState() {
+        return CIRCUIT_BREAKER.getState();
+    }
+
+    /**
+     * Reset the TMDB circuit breaker (for testing only)
+     */
+    public static void resetCircuitBreaker() {
+        CIRCUIT_BREAKER.reset();
+    }
+
+    /**
+     * Get the number of TMDB requests avoided because the lookup is known to have no result
+     */
+    public static long getAvoidedRequests() {
+        return MISSING_MOVIES.getHits() + MISSING_CREDITS.getHits() + EMPTY_SEARCHES.getHits();
+    }
+
+    /**
+     * Forget every remembered missing movie and empty search
+     */
+    public static void clearNegativeCache() {
+        MISSING_MOVIES.clear();
+        MISSING_CREDITS.clear();
+        EMPTY_SEARCHES.clear();
+    }
+
+    /**
+     * Get queue and wait-time metrics of a TMDB request lane
+     */
+    public static RequestScheduler.LaneStats getSchedulerStats(RequestScheduler.Lane lane) {
+        return SCHEDULER.getStats(lane);
+    }
+
+    /**
+     * Get retry and hedging counters of TMDB requests
+     */
+    public static ResiliencePolicy.Stats getResilienceStats() {
+        return RESILIENCE.getStats();
+    }
+
+    /**
+     * Get the backoff before a retry of a TMDB call (ms)
+     *
+     * @param retry retry number, starting at 1
+     */
+    public static long getRetryBackoffMillis(int retry) {
+        return RESILIENCE.backoffMillis(retry);
+    }
+
+    /**
+     * Send a GET request through the circuit breaker.
+     * While the breaker is open, stale cached responses are served instead of calling TMDB.
+     *
+     * @param url request address
+     * @param clazz target class
+     * @return decoded response
+     */
+    private static <T> T fetch(String url, Class<T> clazz) throws IOException {
+        return fetch(url, clazz, 0);
+    }
+
+    /**
+     * Send a GET request through the circuit breaker, giving up once a deadline has passed
+     *
+     * @param url request address
+     * @param clazz target class
+     * @param timeoutMillis deadline including retries (0 for none)
+     * @return decoded response
+     */
+    private static <T> T fetch(String url, Class<T> clazz, long timeoutMillis) throws IOException {
+        if (!CIRCUIT_BREAKER.allowRequest()) {
+            T stale = HttpUtil.getCached(url, HEADERS, clazz);
+            if (stale != null) {
+                log.info("Circuit open: serving stale data for {}", clazz.getSimpleName());
+                return stale;
+            }
+            throw new IOException("TMDB circuit breaker is open");
+        }
+
+        long start = System.currentTimeMillis();
+        // Time spent on the network by the last attempt, excluding permit waits and retry backoff
+        AtomicLong networkMillis = new AtomicLong();
+        try {
+            T result = RESILIENCE.execute(timeout -> {
+                long attemptStart = System.currentTimeMillis();
+                try {
+                    return HttpUtil.get(url, HEADERS, clazz, timeout);
+                } finally {
+                    networkMillis.set(System.currentTimeMillis() - attemptStart);
+                }
+            }, timeoutMillis);
+            CIRCUIT_BREAKER.recordSuccess(networkMillis.get());
+            return result;
+        } catch (HttpStatusException e) {
+            // A 4xx means TMDB answered, so it does not count against the upstream
+            if (e.isClientError()) {
+                CIRCUIT_BREAKER.recordSuccess(networkMillis.get());
+            } else {
+                CIRCUIT_BREAKER.recordFailure();
+            }
+            throw e;
+        } catch (IOException e) {
+            if (isCallerAbort(e, timeoutMillis, System.currentTimeMillis() - start)) {
+                // Says nothing about TMDB, but a half-open trial must not stay in flight forever
+                CIRCUIT_BREAKER.releaseTrial();
+            } else {
+                CIRCUIT_BREAKER.recordFailure();
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            CIRCUIT_BREAKER.releaseTrial();
+            throw e;
+        }
+    }
+
+    /**
+     * Check whether a request failed because the caller gave up rather than because TMDB misbehaved:
+     * the calling thread was interrupted or the caller's own deadline ran out
+     */
+    private static boolean isCallerAbort(IOException e, long timeoutMillis, long elapsedMillis) {
+        if (Thread
+                .currentThread()
+                .isInterrupted()) {
+            return true;
+        }
+        if (e instanceof SocketTimeoutException) {
+            return timeoutMillis > 0 && elapsedMillis >= timeoutMillis;
+        }
+        return e instanceof InterruptedIOException;
+    }
+
     @Getter
     private static class GenreList {
         private List<Genre> genres;
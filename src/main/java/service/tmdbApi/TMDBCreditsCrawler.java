@@ -0,0 +1,265 @@
+package service.tmdbApi;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import model.tmdb.Movie;
+import model.tmdb.MovieCredits;
+import utils.IoExecutors;
+import utils.RequestScheduler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * TMDB credits crawler
+ * Fetches credits for a whole movie catalog in parallel and checkpoints every result
+ * to an NDJSON file, so an interrupted crawl resumes where it stopped.
+ * Requests go through the background lane of the scheduler shared by all TMDB calls,
+ * so they never delay a player's lookups
+ */
+@Slf4j
+public class TMDBCreditsCrawler {
+    private static final int THREAD_POOL_SIZE = 8; // Thread pool size when virtual threads are not available
+    private static final int PROGRESS_LOG_INTERVAL = 100; // Log progress every N movies
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private static final ObjectReader CREDITS_READER = OBJECT_MAPPER.readerFor(MovieCredits.class);
+
+    private static final ReentrantLock CHECKPOINT_LOCK = new ReentrantLock();
+
+    private static String creditsFile = "cache/credits.ndjson";
+
+    /**
+     * Set cache directory (for testing)
+     */
+    public static void setCache(String dir) {
+        creditsFile = dir + "/credits.ndjson";
+    }
+
+    /**
+     * Load all checkpointed credits from disk
+     *
+     * @param consumer receives (movie ID, credits) for every stored record
+     * @return IDs of the movies whose credits were loaded
+     */
+    public static Set<Integer> loadCredits(BiConsumer<Integer, MovieCredits> consumer) {
+        Set<Integer> loaded = new HashSet<>();
+        Path path = Paths.get(creditsFile);
+        if (!Files.exists(path)) {
+            return loaded;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    MovieCredits credits = CREDITS_READER.readValue(line);
+                    consumer.accept(credits.getId(), credits);
+                    loaded.add(credits.getId());
+                } catch (IOException e) {
+                    // A torn last line after a crash: skip it, the movie is fetched again
+                    log.warn("Skipping unreadable credits record");
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to read credits file", e);
+        }
+        log.info("{} checkpointed credits loaded", loaded.size());
+        return loaded;
+    }
+
+    /**
+     * Crawl credits for every movie that is not yet checkpointed
+     *
+     * @param movies   movie catalog
+     * @param consumer receives (movie ID, credits) as each result arrives
+     * @return number of credits fetched from the API
+     */
+    public static int crawl(List<Movie> movies, BiConsumer<Integer, MovieCredits> consumer) {
+        Set<Integer> completed = readCompletedIds();
+        Set<Integer> pending = new LinkedHashSet<>();
+        for (Movie movie : movies) {
+            if (!completed.contains(movie.getId())) {
+                pending.add(movie.getId());
+            }
+        }
+        if (pending.isEmpty()) {
+            log.info("Credits crawl: all {} movies already checkpointed", completed.size());
+            return 0;
+        }
+        log.info("Credits crawl: {} checkpointed, {} to fetch", completed.size(), pending.size());
+
+        // One virtual thread per movie on Java 21+, paced by the shared request scheduler
+        ExecutorService executor = IoExecutors.newExecutor("credits-crawler", THREAD_POOL_SIZE);
+        AtomicInteger fetched = new AtomicInteger(0);
+        Path path = Paths.get(creditsFile);
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        } catch (IOException e) {
+            log.error("Failed to create cache directory", e);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(path,
+                                                             StandardCharsets.UTF_8,
+                                                             StandardOpenOption.CREATE,
+                                                             StandardOpenOption.APPEND)) {
+            // Terminate a record torn by a crash so the next record starts on a fresh line
+            if (!endsWithNewline(path)) {
+                writer.newLine();
+            }
+            List<Future<?>> futures = new ArrayList<>();
+            for (int movieId : pending) {
+                futures.add(executor.submit(() -> {
+                    MovieCredits credits = RequestScheduler.callInLane(RequestScheduler.Lane.BACKGROUND,
+                                                                       () -> TMDBApiService.getMovieCredits(movieId));
+                    if (credits == null) {
+                        // Not checkpointed, retried on the next crawl
+                        return;
+                    }
+                    credits.setId(movieId);
+                    checkpoint(writer, credits);
+                    consumer.accept(movieId, credits);
+                    int current = fetched.incrementAndGet();
+                    if (current % PROGRESS_LOG_INTERVAL == 0) {
+                        log.info("Credits crawl progress: {}/{}", current, pending.size());
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get(5, TimeUnit.MINUTES);
+                } catch (Exception e) {
+                    log.error("Failed to crawl movie credits", e);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to open credits file", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        log.info("Credits crawl completed, {} of {} movies fetched", fetched.get(), pending.size());
+        return fetched.get();
+    }
+
+    /**
+     * Crawl credits on a background daemon thread
+     *
+     * @param movies   movie catalog
+     * @param consumer receives (movie ID, credits) as each result arrives
+     */
+    public static void crawlAsync(List<Movie> movies, BiConsumer<Integer, MovieCredits> consumer) {
+        List<Movie> snapshot = new ArrayList<>(movies);
+        Thread thread = new Thread(() -> crawl(snapshot, consumer), "credits-crawl");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Append one credits record to the checkpoint file
+     */
+    private static void checkpoint(BufferedWriter writer, MovieCredits credits) {
+        try {
+            String json = OBJECT_MAPPER.writeValueAsString(credits);
+            // A lock instead of synchronized, so virtual threads do not pin their carrier during the write
+            CHECKPOINT_LOCK.lock();
+            try {
+                writer.write(json);
+                writer.newLine();
+                writer.flush();
+            } finally {
+                CHECKPOINT_LOCK.unlock();
+            }
+        } catch (IOException e) {
+            log.error("Failed to checkpoint credits of movie {}", credits.getId(), e);
+        }
+    }
+
+    /**
+     * Check if the file is empty or ends with a line break
+     */
+    private static boolean endsWithNewline(Path path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            if (file.length() == 0) {
+                return true;
+            }
+            file.seek(file.length() - 1);
+            return file.read() == '\n';
+        }
+    }
+
+    /**
+     * Read the IDs of checkpointed movies without decoding the full credits
+     */
+    private static Set<Integer> readCompletedIds() {
+        Set<Integer> ids = new HashSet<>();
+        Path path = Paths.get(creditsFile);
+        if (!Files.exists(path)) {
+            return ids;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Integer id = readId(line);
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to read credits file", e);
+        }
+        return ids;
+    }
+
+    /**
+     * Read the "id" field of a complete record, or null if the line is torn
+     */
+    private static Integer readId(String line) {
+        // A record is only complete once its closing brace was written
+        if (!line.endsWith("}")) {
+            return null;
+        }
+        try (JsonParser parser = OBJECT_MAPPER
+                .getFactory()
+                .createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("id".equals(field)) {
+                    return parser.getIntValue();
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            log.warn("Skipping unreadable credits record");
+        }
+        return null;
+    }
+}
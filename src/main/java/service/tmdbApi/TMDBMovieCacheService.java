@@ -1,23 +1,51 @@
 package service.tmdbApi;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import config.AppConfig;
 import lombok.extern.slf4j.Slf4j;
 import model.tmdb.Movie;
 import model.tmdb.MovieList;
-
+import utils.DirectoryLock;
+import utils.FileUtil;
+import utils.IoExecutors;
+import utils.RequestScheduler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 /**
 * TMDB movie cache service
@@ -26,31 +54,69 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Slf4j
 public class TMDBMovieCacheService {
     private static final int CACHE_DURATION_HOURS = 24; // Cache update cycle (hours)
-    private static final int THREAD_POOL_SIZE = 5; //Thread pool size
+    private static final int THREAD_POOL_SIZE = 5; // Thread pool size when virtual threads are not available
     private static final int BATCH_SIZE = 100; // Number of movies processed per thread
     private static final int PAGE_SIZE = 20; //TMDB API default number of pages
     private static final int MAX_RETRIES = 3; // Maximum number of retries
-    private static final long RETRY_DELAY = 1000; // Retry delay (ms)
-    private static final long REQUEST_DELAY = 200; // Request interval (milliseconds）
+    private static final int CHANGES_MAX_DAYS = 14; // Longest range accepted by the TMDB change feed (days)
+    private static final int DELTA_TOP_PAGES = 5; // Leading pages re-fetched by an incremental refresh
+    // Beyond this age a stale cache is no longer served while it refreshes (hours)
+    private static final long MAX_STALENESS_HOURS = Long.parseLong(AppConfig
+            .getInstance()
+            .getProperty("tmdb.cache.max-staleness-hours", "168"));
 
     private static final ExecutorService EXECUTOR_SERVICE =
-            Executors.newFixedThreadPool(THREAD_POOL_SIZE);
+            IoExecutors.newExecutor("movie-cache", THREAD_POOL_SIZE);
+    // Runs stale-while-revalidate refreshes off the caller's thread
+    private static final ExecutorService REFRESH_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "movie-cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // At most one background refresh at a time
+    private static final AtomicBoolean REFRESH_RUNNING = new AtomicBoolean(false);
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ObjectReader MOVIE_READER = OBJECT_MAPPER.readerFor(Movie.class);
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    // First line of the cache file, holding the CRC32 of the records after it in 8 hex digits,
+    // so the records and their checksum are replaced together by a single rename
+    private static final String CHECKSUM_HEADER_PREFIX = "#crc32:";
+    private static final int CHECKSUM_HEADER_LENGTH = CHECKSUM_HEADER_PREFIX.length() + 9;
     private static String cache = "cache";
-    private static String cacheFile = cache + "/popular_movies.json";
+    // One movie per line, sorted by popularity (descending)
+    private static String cacheFile = cache + "/popular_movies.ndjson";
+    // Single JSON array written by older versions, still readable
+    private static String legacyCacheFile = cache + "/popular_movies.json";
+    // Separate checksum file written by older versions, removed on the next write
+    private static String legacyChecksumFile = cacheFile + ".crc32";
     private static String lastUpdateFile = cache + "/last_update.txt";
 
     // Test mode flag
     private static boolean testMode = false;
     // Disable cache flag
     private static boolean disableCache = false;
+    // Notified after every refresh, so live indexes can swap in the new data
+    private static volatile RefreshListener refreshListener;
+
+    /**
+    * Receives the result of a cache refresh
+    */
+    public interface RefreshListener {
+        /**
+        * @param movies  the complete refreshed movie list
+        * @param changed the movies that are new or changed since the previous list
+        */
+        void onRefresh(List<Movie> movies, List<Movie> changed);
+    }
 
     /**
     * Set cache directory (for testing)
     */
     public static void setCache(String dir) {
         cache = dir;
-        cacheFile = cache + "/popular_movies.json";
+        cacheFile = cache + "/popular_movies.ndjson";
+        legacyCacheFile = cache + "/popular_movies.json";
+        legacyChecksumFile = cacheFile + ".crc32";
         lastUpdateFile = cache + "/last_update.txt";
         // Set to test mode
         testMode = true;
@@ -65,6 +131,24 @@ public class TMDBMovieCacheService {
         disableCache = disableCaching;
     }
 
+    /**
+    * Set the listener notified with the changed movies after each cache refresh
+    */
+    public static void setRefreshListener(RefreshListener listener) {
+        refreshListener = listener;
+    }
+
+    /**
+    * Refresh the cache now, incrementally when the last refresh is recent enough
+    *
+    * @param count The number of movies to keep in the cache
+    * @return Refreshed movie list
+    */
+    public static List<Movie> refreshMovieCache(int count) {
+        createCacheDirectoryIfNeeded();
+        return updateMovieCache(count);
+    }
+
     /**
     * Get a specified number of popular movies (supports caching)
     *
@@ -87,19 +171,48 @@ public class TMDBMovieCacheService {
         // Check the cache directory
         createCacheDirectoryIfNeeded();
 
-        // Check if cache needs to be updated
-        if (shouldUpdateCache()) {
+        LocalDateTime lastUpdate = readLastUpdate();
+        // Block on a refresh only when there is no usable cache
+        if (lastUpdate == null || isOlderThan(lastUpdate, MAX_STALENESS_HOURS)) {
             return updateMovieCache(count);
         }
 
-        // Reading from cache
-        List<Movie> movies = readFromCache();
+        // Reading only the specified number of movies from cache
+        List<Movie> movies = readFromCache(count);
         // If the number of cached movies is insufficient, re-acquire
         if (movies.size() < count) {
             return updateMovieCache(count);
         }
-        // Returns the specified number of movies
-        return movies.size() > count ? movies.subList(0, count) : movies;
+
+        // Serve the stale cache now and refresh it in the background
+        if (isOlderThan(lastUpdate, CACHE_DURATION_HOURS)) {
+            log.info("Movie cache from {} is stale, serving it while refreshing in the background", lastUpdate);
+            refreshMovieCacheAsync(count);
+        }
+        return movies;
+    }
+
+    /**
+    * Refresh the cache on a background daemon thread, unless a refresh is already running
+    *
+    * @param count The number of movies to keep in the cache
+    * @return true if a refresh was scheduled
+    */
+    public static boolean refreshMovieCacheAsync(int count) {
+        if (!REFRESH_RUNNING.compareAndSet(false, true)) {
+            return false;
+        }
+        REFRESH_EXECUTOR.execute(() -> {
+            try {
+                // Yield the request budget to interactive lookups
+                RequestScheduler.runInLane(RequestScheduler.Lane.BACKGROUND, () -> refreshMovieCache(count));
+            } catch (Exception e) {
+                log.error("Background movie cache refresh failed", e);
+            } finally {
+                REFRESH_RUNNING.set(false);
+            }
+        });
+        return true;
     }
 
     /**
@@ -114,67 +227,331 @@ public class TMDBMovieCacheService {
     }
 
     /**
-    * Check if the cache needs to be updated
+    * Check if the last update is older than the given number of hours
     */
-    private static boolean shouldUpdateCache() {
+    private static boolean isOlderThan(LocalDateTime lastUpdate, long hours) {
+        return LocalDateTime
+                .now()
+                .minusHours(hours)
+                .isAfter(lastUpdate);
+    }
+
+    /**
+    * Read the last update time, or null if it is unknown
+    */
+    private static LocalDateTime readLastUpdate() {
         Path lastUpdatePath = Paths.get(lastUpdateFile);
         if (!Files.exists(lastUpdatePath)) {
-            return true;
+            return null;
         }
 
         try {
             String lastUpdateStr = new String(Files.readAllBytes(lastUpdatePath),
                                               StandardCharsets.UTF_8);
-            LocalDateTime lastUpdate = LocalDateTime.parse(lastUpdateStr);
-            return LocalDateTime
-                    .now()
-                    .minusHours(CACHE_DURATION_HOURS)
-                    .isAfter(lastUpdate);
+            return LocalDateTime.parse(lastUpdateStr.trim());
         } catch (Exception e) {
             log.error("Failed to read the last update time", e);
-            return true;
+            return null;
         }
     }
 
     /**
-    * Update movie cache
+    * Update movie cache, letting only one thread or process on the host refresh at a time.
+    * While another one refreshes, a usable cache is served as is; otherwise this call waits
+    * and uses the other refresh's result.
     */
     private static List<Movie> updateMovieCache(int count) {
+        DirectoryLock lock = DirectoryLock.forDirectory(Paths.get(cache));
+        LocalDateTime seenUpdate = readLastUpdate();
+        try {
+            if (!lock.tryLock()) {
+                List<Movie> stale = readFromCache(count);
+                if (stale.size() >= count && seenUpdate != null
+                        && !isOlderThan(seenUpdate, MAX_STALENESS_HOURS)) {
+                    log.info("The movie cache is being refreshed by another process, serving the cached list");
+                    return stale;
+                }
+                log.info("Waiting for another process to refresh the movie cache...");
+                lock.lock();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to lock the cache directory, refreshing without coordination", e);
+            return refreshMovieCacheLocked(count);
+        }
+
+        try {
+            // Someone else refreshed while this call was waiting
+            LocalDateTime lastUpdate = readLastUpdate();
+            if (lastUpdate != null && !lastUpdate.equals(seenUpdate)) {
+                List<Movie> movies = readFromCache(count);
+                if (movies.size() >= count) {
+                    log.info("Movie cache was refreshed by another process at {}", lastUpdate);
+                    notifyRefreshListener(movies, movies);
+                    return movies;
+                }
+            }
+            return refreshMovieCacheLocked(count);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+    * Update movie cache, incrementally when the change feed covers the time since the last update
+    */
+    private static List<Movie> refreshMovieCacheLocked(int count) {
+        LocalDateTime lastUpdate = readLastUpdate();
+        if (lastUpdate != null && lastUpdate.isAfter(LocalDateTime
+                                                             .now()
+                                                             .minusDays(CHANGES_MAX_DAYS))) {
+            List<Movie> movies = updateMovieCacheIncrementally(count, lastUpdate);
+            if (movies != null) {
+                return movies;
+            }
+            log.info("Incremental refresh not possible, falling back to a full refresh");
+        }
+
         log.info("Starting to update movie cache...");
         List<Movie> movies = fetchMoviesWithThreadPool(count);
-
         if (!movies.isEmpty()) {
-            // Save to cache
+            saveCache(movies);
+            notifyRefreshListener(movies, movies);
+        }
+        return movies;
+    }
+
+    /**
+    * Refresh only the movies TMDB reports as changed since the last update, plus the leading
+    * popularity pages where new movies enter the list, and merge them into the cached list
+    *
+    * @return merged movie list, or null if an incremental refresh is not possible
+    */
+    private static List<Movie> updateMovieCacheIncrementally(int count, LocalDateTime lastUpdate) {
+        long start = System.currentTimeMillis();
+        List<Movie> cached = readFromCache(count);
+        if (cached.size() < count) {
+            return null;
+        }
+        List<Integer> changedIds = TMDBApiService.getChangedMovieIds(lastUpdate.toLocalDate(),
+                                                                     LocalDate.now());
+        if (changedIds == null) {
+            return null;
+        }
+
+        Map<Integer, Movie> merged = new LinkedHashMap<>();
+        for (Movie movie : cached) {
+            merged.putIfAbsent(movie.getId(), movie);
+        }
+
+        // Re-fetch details of cached movies that changed
+        Set<Integer> toFetch = new LinkedHashSet<>();
+        for (int movieId : changedIds) {
+            if (merged.containsKey(movieId)) {
+                toFetch.add(movieId);
+            }
+        }
+        List<Movie> changed = fetchMovieDetailsWithThreadPool(toFetch);
+
+        // New entries and popularity shifts show up at the top of the list
+        List<Movie> top = getPopularMoviesFromApi(1, DELTA_TOP_PAGES * PAGE_SIZE);
+        for (Movie movie : top) {
+            Movie previous = merged.get(movie.getId());
+            if (previous == null || previous.getPopularity() != movie.getPopularity()
+                    || !Objects.equals(previous.getTitle(), movie.getTitle())) {
+                changed.add(movie);
+            }
+        }
+        for (Movie movie : changed) {
+            merged.put(movie.getId(), movie);
+        }
+
+        List<Movie> movies = new ArrayList<>(merged.values());
+        movies.sort((m1, m2) -> Double.compare(m2.getPopularity(), m1.getPopularity()));
+        if (movies.size() > count) {
+            movies = new ArrayList<>(movies.subList(0, count));
+        }
+        saveCache(movies);
+        notifyRefreshListener(movies, changed);
+
+        log.info("Incremental cache refresh: {} changes reported, {} details and {} top pages re-fetched, " +
+                         "{} movies updated in {} ms", changedIds.size(), toFetch.size(), DELTA_TOP_PAGES,
+                 changed.size(), System.currentTimeMillis() - start);
+        return movies;
+    }
+
+    /**
+    * Write the movie list and the update time to the cache
+    */
+    private static void saveCache(List<Movie> movies) {
+        try {
+            writeToCache(movies);
+            // Update the last updated time
+            writeAtomically(Paths.get(lastUpdateFile), LocalDateTime
+                    .now()
+                    .toString()
+                    .getBytes(StandardCharsets.UTF_8));
+            log.info("Movie cache updated successfully, total {} movies", movies.size());
+        } catch (Exception e) {
+            log.error("Failed to save cache file", e);
+        }
+    }
+
+    /**
+    * Pass refreshed movies to the refresh listener, if any
+    */
+    private static void notifyRefreshListener(List<Movie> movies, List<Movie> changed) {
+        RefreshListener listener = refreshListener;
+        if (listener != null && !movies.isEmpty()) {
             try {
-                String json = OBJECT_MAPPER.writeValueAsString(movies);
-                Files.write(Paths.get(cacheFile), json.getBytes(StandardCharsets.UTF_8));
-                // Update the last updated time
-                Files.write(Paths.get(lastUpdateFile), LocalDateTime
-                        .now()
-                        .toString()
-                        .getBytes(StandardCharsets.UTF_8));
-                log.info("Movie cache updated successfully, total {} movies", movies.size());
+                listener.onRefresh(movies, changed);
             } catch (Exception e) {
-                log.error("Failed to save cache file", e);
+                log.error("Refresh listener failed", e);
             }
         }
+    }
 
+    /**
+    * Use thread pool to get movie details
+    */
+    private static List<Movie> fetchMovieDetailsWithThreadPool(Collection<Integer> movieIds) {
+        List<Future<Movie>> futures = new ArrayList<>();
+        // Pool threads inherit the caller's request lane
+        RequestScheduler.Lane lane = RequestScheduler.currentLane();
+        for (int movieId : movieIds) {
+            futures.add(EXECUTOR_SERVICE.submit(() -> RequestScheduler.callInLane(lane, () -> TMDBApiService.getMovieDetails(movieId))));
+        }
+
+        List<Movie> movies = new ArrayList<>();
+        for (Future<Movie> future : futures) {
+            try {
+                Movie movie = future.get(5, TimeUnit.MINUTES);
+                if (movie != null) {
+                    movies.add(movie);
+                }
+            } catch (Exception e) {
+                log.error("Failed to obtain movie details", e);
+            }
+        }
         return movies;
     }
 
     /**
-    * Read movie data from cache
+    * Read the first movies from the cache, streaming one record at a time.
+    * Falls back to the legacy JSON array file if no NDJSON cache exists.
+    * A cache file that does not match its checksum is treated as missing.
+    *
+    * @param count maximum number of movies to read
+    * @return the most popular cached movies, at most count
     */
-    private static List<Movie> readFromCache() {
-        try {
-            String json = new String(Files.readAllBytes(Paths.get(cacheFile)),
-                                     StandardCharsets.UTF_8);
-            return OBJECT_MAPPER.readValue(json, new TypeReference<List<Movie>>() {
-            });
+    public static List<Movie> readFromCache(int count) {
+        Path path = Paths.get(cacheFile);
+        if (!Files.exists(path)) {
+            path = Paths.get(legacyCacheFile);
+        }
+        List<Movie> movies = new ArrayList<>(Math.min(count, 8192));
+        // The checksum and the records are read through one open file, so a concurrent rename cannot mix them
+        try (FileChannel channel = FileChannel.open(path)) {
+            long firstRecord = verifyChecksum(channel);
+            if (firstRecord < 0) {
+                log.warn("Cache file {} does not match its checksum, ignoring it", path);
+                return movies;
+            }
+            channel.position(firstRecord);
+            // readValues handles both one object per line and a root-level array
+            try (InputStream in = new BufferedInputStream(Channels.newInputStream(channel), IO_BUFFER_SIZE);
+                 MappingIterator<Movie> iterator = MOVIE_READER.readValues(in)) {
+                while (movies.size() < count && iterator.hasNextValue()) {
+                    movies.add(iterator.nextValue());
+                }
+            }
+        } catch (NoSuchFileException e) {
+            log.debug("No cache file {}", path);
         } catch (Exception e) {
             log.error("Failed to read cache file", e);
-            return new ArrayList<>();
         }
+        return movies;
+    }
+
+    /**
+    * Write movies to the cache, one record per line, without building the whole file in memory.
+    * The file is written to a temporary file with its checksum in the first line and renamed
+    * into place, so readers never see a half-written cache or a checksum of another version.
+    *
+    * @param movies movies sorted by popularity
+    */
+    public static void writeToCache(List<Movie> movies) throws IOException {
+        Path path = Paths.get(cacheFile);
+        Path temp = Paths.get(cacheFile + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            // Reserve the header, filled in once the records are written
+            channel.write(ByteBuffer.wrap(checksumHeader(0)));
+            OutputStream out = new BufferedOutputStream(new CheckedOutputStream(Channels.newOutputStream(channel), crc),
+                                                        IO_BUFFER_SIZE);
+            SequenceWriter writer = OBJECT_MAPPER
+                    .writer()
+                    .withRootValueSeparator("\n")
+                    .writeValues(out);
+            writer.writeAll(movies);
+            writer.flush();
+            channel.write(ByteBuffer.wrap(checksumHeader(crc.getValue())), 0);
+            channel.force(true);
+        }
+        FileUtil.replaceAtomically(temp, path);
+        Files.deleteIfExists(Paths.get(legacyChecksumFile));
+    }
+
+    /**
+    * Build the checksum header line for the given CRC32
+    */
+    private static byte[] checksumHeader(long crc) {
+        return String
+                .format("%s%08x\n", CHECKSUM_HEADER_PREFIX, crc)
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+    * Check the records of an open cache file against the checksum in its first line.
+    * Files written before the checksum header existed have none and are accepted.
+    *
+    * @return position of the first record, or -1 if the records do not match the checksum
+    */
+    private static long verifyChecksum(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(CHECKSUM_HEADER_LENGTH);
+        while (header.hasRemaining() && channel.read(header) >= 0) {
+            // Fill the header, unless the file is shorter
+        }
+        String line = new String(header.array(), 0, header.position(), StandardCharsets.US_ASCII);
+        if (!line.startsWith(CHECKSUM_HEADER_PREFIX)) {
+            return 0;
+        }
+        if (header.hasRemaining()) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            crc.update(buffer);
+            buffer.clear();
+        }
+        String expected = line.substring(CHECKSUM_HEADER_PREFIX.length(), CHECKSUM_HEADER_LENGTH - 1);
+        return expected.equals(String.format("%08x", crc.getValue())) ? CHECKSUM_HEADER_LENGTH : -1;
+    }
+
+    /**
+    * Replace a file with new content via a temporary file and a durable atomic rename
+    */
+    private static void writeAtomically(Path path, byte[] content) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+            out.write(content);
+            out
+                    .getChannel()
+                    .force(true);
+        }
+        FileUtil.replaceAtomically(temp, path);
     }
 
     /**
@@ -184,13 +561,17 @@ public class TMDBMovieCacheService {
         int batchCount = (totalCount + BATCH_SIZE - 1) / BATCH_SIZE;
         List<Future<List<Movie>>> futures = new ArrayList<>();
         AtomicInteger processedCount = new AtomicInteger(0);
+        // Pool threads inherit the caller's request lane
+        RequestScheduler.Lane lane = RequestScheduler.currentLane();
 
         //Submit tasks to the thread pool, each thread processes a different batch
         for (int i = 0; i < batchCount; i++) {
             final int batchIndex = i;
             final int batchSize = Math.min(BATCH_SIZE, totalCount - i * BATCH_SIZE);
+            // Each batch covers its own range of pages
+            final int startPage = i * (BATCH_SIZE / PAGE_SIZE) + 1;
             futures.add(EXECUTOR_SERVICE.submit(() -> {
-                List<Movie> batchMovies = getPopularMoviesFromApi(batchSize);
+                List<Movie> batchMovies = RequestScheduler.callInLane(lane, () -> getPopularMoviesFromApi(startPage, batchSize));
                 if (batchMovies != null && !batchMovies.isEmpty()) {
                     int current = processedCount.addAndGet(batchMovies.size());
                     log.info("Thread [{}] has obtained the {}th batch of data, currently there are {} movies", Thread
@@ -201,13 +582,13 @@ public class TMDBMovieCacheService {
             }));
         }
 
-        // Collecting Results
-        List<Movie> allMovies = new ArrayList<>();
+        // Collecting Results (a movie can move across page boundaries while batches run)
+        Map<Integer, Movie> moviesById = new LinkedHashMap<>();
         for (Future<List<Movie>> future : futures) {
             try {
                 List<Movie> movies = future.get(5, TimeUnit.MINUTES);
                 if (movies != null) {
-                    allMovies.addAll(movies);
+                    movies.forEach(movie -> moviesById.putIfAbsent(movie.getId(), movie));
                 }
             } catch (Exception e) {
                 log.error("Failed to obtain movie data", e);
@@ -215,6 +596,7 @@ public class TMDBMovieCacheService {
         }
 
         // Sort by popularity and limit the number
+        List<Movie> allMovies = new ArrayList<>(moviesById.values());
         allMovies.sort((m1, m2) -> Double.compare(m2.getPopularity(), m1.getPopularity()));
         return allMovies.size() > totalCount ? allMovies.subList(0, totalCount) : allMovies;
     }
@@ -226,11 +608,22 @@ public class TMDBMovieCacheService {
     * @return Movie list
     */
     private static List<Movie> getPopularMoviesFromApi(int count) {
+        return getPopularMoviesFromApi(1, count);
+    }
+
+    /**
+    * Get the specified number of popular movies from the API, starting at the given page
+    *
+    * @param startPage First page to fetch
+    * @param count The number of movies to be obtained
+    * @return Movie list
+    */
+    private static List<Movie> getPopularMoviesFromApi(int startPage, int count) {
         List<Movie> allMovies = new ArrayList<>();
-        int totalPages = (count + PAGE_SIZE - 1) / PAGE_SIZE; 
-        int currentPage = 1;
+        int lastPage = startPage + (count + PAGE_SIZE - 1) / PAGE_SIZE - 1;
+        int currentPage = startPage;
 
-        while (currentPage <= totalPages && allMovies.size() < count) {
+        while (currentPage <= lastPage && allMovies.size() < count) {
             MovieList movieList = null;
             // Add a retry mechanism
             for (int retry = 0; retry < MAX_RETRIES; retry++) {
@@ -241,15 +634,19 @@ public class TMDBMovieCacheService {
                             .isEmpty()) {
                         break;
                     }
+                    // Past the last page there is nothing to retry
+                    if (movieList != null && currentPage > movieList.getTotalPages()) {
+                        break;
+                    }
                     if (retry < MAX_RETRIES - 1) {
                         log.info("{}th retry to get data for page {}...", retry + 1, currentPage);
-                        Thread.sleep(RETRY_DELAY);
+                        Thread.sleep(TMDBApiService.getRetryBackoffMillis(retry + 1));
                     }
                 } catch (Exception e) {
                     log.error("The {}th attempt to obtain data for page {} failed", retry + 1, currentPage, e);
                     if (retry < MAX_RETRIES - 1) {
                         try {
-                            Thread.sleep(RETRY_DELAY);
+                            Thread.sleep(TMDBApiService.getRetryBackoffMillis(retry + 1));
                         } catch (InterruptedException ie) {
                             Thread
                                     .currentThread()
@@ -260,6 +657,10 @@ public class TMDBMovieCacheService {
                 }
             }
 
+            if (movieList != null && currentPage > movieList.getTotalPages()) {
+                log.info("Page {} is past the last page {}", currentPage, movieList.getTotalPages());
+                break;
+            }
             if (movieList == null || movieList.getResults() == null || movieList
                     .getResults()
                     .isEmpty()) {
@@ -284,17 +685,8 @@ public class TMDBMovieCacheService {
                 break;
             }
 
+            // Requests are spaced out by the shared TMDB request scheduler
             currentPage++;
-
-            // To avoid triggering API throttling, add a short delay
-            try {
-                Thread.sleep(REQUEST_DELAY);
-            } catch (InterruptedException e) {
-                Thread
-                        .currentThread()
-                        .interrupt();
-                break;
-            }
         }
 
         // If the number of movies obtained exceeds the specified number, only the specified number will be returned
@@ -0,0 +1,73 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter over object hash codes
+ * Answers "definitely absent" or "possibly present"; bits are never cleared.
+ */
+public class BloomFilter {
+    // Bits per expected entry, about 1% false positives with 7 hashes
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int HASH_COUNT = 7;
+
+    private final AtomicLongArray words;
+    private final int bitCount;
+
+    /**
+     * Constructor
+     *
+     * @param expectedEntries number of entries the filter is sized for
+     */
+    public BloomFilter(int expectedEntries) {
+        long bits = Math.max(64L, (long) expectedEntries * BITS_PER_ENTRY);
+        this.words = new AtomicLongArray((int) ((bits + 63) / 64));
+        this.bitCount = words.length() * 64;
+    }
+
+    /**
+     * Record a key
+     */
+    public void add(Object key) {
+        int h1 = mix(key.hashCode());
+        int h2 = mix(h1 ^ 0x9E3779B9) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            long mask = 1L << bit;
+            int index = bit >>> 6;
+            long word;
+            do {
+                word = words.get(index);
+            } while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask));
+        }
+    }
+
+    /**
+     * Check whether a key may have been recorded
+     *
+     * @return false if the key was definitely never added
+     */
+    public boolean mightContain(Object key) {
+        int h1 = mix(key.hashCode());
+        int h2 = mix(h1 ^ 0x9E3779B9) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Murmur3 finalizer, spreads sequential IDs over the whole bit array
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,38 @@
+package utils;
+
+/**
+ * A lower tier of a {@link TieredCache}
+ *
+ * @param <V> value type
+ */
+public interface CacheTier<V> {
+    /**
+     * Tier name used in metrics
+     */
+    String getName();
+
+    /**
+     * Look up a value
+     *
+     * @return the value, or null on a miss
+     */
+    V get(int key);
+
+    /**
+     * Store a value promoted from a lower tier or demoted from a higher one.
+     * Read-only tiers ignore it.
+     */
+    void put(int key, V value);
+
+    /**
+     * Check whether the tier holds a key without loading the value
+     */
+    boolean contains(int key);
+
+    /**
+     * Whether lookups stay on this machine (false for remote tiers such as an HTTP API)
+     */
+    default boolean isLocal() {
+        return true;
+    }
+}
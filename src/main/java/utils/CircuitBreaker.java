@@ -0,0 +1,141 @@
+package utils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker tool class
+ * Opens after consecutive failures or slow calls so callers fail fast,
+ * then lets a single half-open trial request probe the upstream
+ */
+@Slf4j
+public class CircuitBreaker {
+    /**
+     * Breaker state
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    // Consecutive failures (or slow calls) that open the breaker
+    private final int failureThreshold;
+    // Calls slower than this count as failures (ms)
+    private final long slowCallMillis;
+    // How long the breaker stays open before a trial request (ms)
+    private final long openMillis;
+    // Clock in milliseconds
+    private final LongSupplier clock;
+
+    @Getter
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    /**
+     * Constructor
+     */
+    public CircuitBreaker(String name, int failureThreshold, long slowCallMillis, long openMillis) {
+        this(name, failureThreshold, slowCallMillis, openMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor with a custom clock (for testing)
+     */
+    public CircuitBreaker(String name, int failureThreshold, long slowCallMillis, long openMillis,
+                          LongSupplier clock) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.slowCallMillis = slowCallMillis;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Check whether a request may go to the upstream
+     *
+     * @return true if the request is allowed, false if the caller should fail fast
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAt < openMillis) {
+                    return false;
+                }
+                log.info("Circuit breaker [{}] half-open, sending a trial request", name);
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                // Only one trial request at a time while half-open
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    /**
+     * Record a completed call
+     *
+     * @param latencyMillis call duration
+     */
+    public synchronized void recordSuccess(long latencyMillis) {
+        if (latencyMillis > slowCallMillis) {
+            log.warn("Circuit breaker [{}] slow call: {} ms", name, latencyMillis);
+            recordFailure();
+            return;
+        }
+        if (state != State.CLOSED) {
+            log.info("Circuit breaker [{}] closed", name);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    /**
+     * Record a failed call
+     */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                log.warn("Circuit breaker [{}] opened after {} consecutive failures", name, consecutiveFailures);
+            }
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+        }
+    }
+
+    /**
+     * Record a call that ended without a verdict on the upstream, e.g. because the caller gave up
+     * A half-open trial ending this way goes back to OPEN with its original open time, so the
+     * next request after the cool-down probes again.
+     */
+    public synchronized void releaseTrial() {
+        if (!trialInFlight) {
+            return;
+        }
+        trialInFlight = false;
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    /**
+     * Close the breaker and clear its counters
+     */
+    public synchronized void reset() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+}
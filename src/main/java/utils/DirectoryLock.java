@@ -0,0 +1,108 @@
+package utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock on a directory, shared by threads and processes
+ * Backed by a FileChannel lock on a lock file inside the directory, plus an in-process lock,
+ * because file locks are held per JVM and cannot be taken twice by the same process.
+ * One instance (and one open channel) exists per lock file, since closing any channel
+ * on a file may release every lock the JVM holds on it.
+ */
+@Slf4j
+public class DirectoryLock {
+    private static final String LOCK_FILE_NAME = ".lock";
+    private static final Map<Path, DirectoryLock> LOCKS = new ConcurrentHashMap<>();
+
+    private final Path lockFile;
+    private final ReentrantLock threadLock = new ReentrantLock();
+    private FileChannel channel;
+    private FileLock fileLock;
+
+    private DirectoryLock(Path lockFile) {
+        this.lockFile = lockFile;
+    }
+
+    /**
+     * Get the lock of a directory
+     */
+    public static DirectoryLock forDirectory(Path directory) {
+        Path lockFile = directory
+                .toAbsolutePath()
+                .normalize()
+                .resolve(LOCK_FILE_NAME);
+        return LOCKS.computeIfAbsent(lockFile, DirectoryLock::new);
+    }
+
+    /**
+     * Acquire the lock if no other thread or process holds it
+     *
+     * @return true if the lock was acquired
+     */
+    public boolean tryLock() throws IOException {
+        if (!threadLock.tryLock()) {
+            return false;
+        }
+        try {
+            fileLock = channel().tryLock();
+        } catch (IOException | RuntimeException e) {
+            threadLock.unlock();
+            throw e;
+        }
+        if (fileLock == null) {
+            threadLock.unlock();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Acquire the lock, waiting for other threads and processes to release it
+     */
+    public void lock() throws IOException {
+        threadLock.lock();
+        try {
+            fileLock = channel().lock();
+        } catch (IOException | RuntimeException e) {
+            threadLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Release the lock
+     */
+    public void unlock() {
+        try {
+            if (fileLock != null) {
+                fileLock.release();
+            }
+        } catch (IOException e) {
+            log.error("Failed to release the lock on {}", lockFile, e);
+        } finally {
+            fileLock = null;
+            threadLock.unlock();
+        }
+    }
+
+    /**
+     * Open the lock file once; only called while holding the thread lock
+     */
+    private FileChannel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            Files.createDirectories(lockFile.getParent());
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+        return channel;
+    }
+}
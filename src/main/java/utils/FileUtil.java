@@ -0,0 +1,48 @@
+package utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File tool class for crash-safe replacement of files
+ */
+@Slf4j
+public class FileUtil {
+    private FileUtil() {
+    }
+
+    /**
+     * Atomically rename a fully written and synced file over another, and sync the rename
+     * Without the directory sync, a crash can bring back the old file or no file at all.
+     *
+     * @param source temporary file, already forced to disk
+     * @param target file to replace
+     */
+    public static void replaceAtomically(Path source, Path target) throws IOException {
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(target
+                              .toAbsolutePath()
+                              .getParent());
+    }
+
+    /**
+     * Force a directory entry change, such as a rename, to disk
+     * Some platforms cannot open a directory; the rename is then only as durable as the file system makes it.
+     */
+    public static void syncDirectory(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (FileChannel directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            log.debug("Cannot sync directory {}", dir, e);
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record log with group commit
+ * Records are framed as [length][CRC32][payload] in numbered segment files. Appenders only
+ * enqueue; a single writer thread writes everything queued so far and forces it to disk with
+ * one fsync, then completes the appenders' futures. Under load many records share an fsync.
+ * Rotating seals the current segment, so older segments can be deleted once a snapshot covers
+ * them. On open, a torn or corrupt tail of the last segment is truncated.
+ */
+@Slf4j
+public class GroupCommitLog implements Closeable {
+    private static final int HEADER_SIZE = 8; // length and CRC32 (4 bytes each)
+    private static final int MAX_RECORD_SIZE = 1024 * 1024; // Larger lengths mean a corrupt header
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final String name;
+    // Most records written per fsync
+    private final int maxBatch;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    // Current segment, only changed by the writer once it runs
+    private FileChannel channel;
+    private volatile long segment;
+    private long position;
+
+    private final LongAdder records = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * Queued record or control request
+     */
+    private static final class Request {
+        private final ByteBuffer record;
+        private final boolean rotate;
+        private final boolean close;
+        private final CompletableFuture<Long> done = new CompletableFuture<>();
+
+        private Request(ByteBuffer record, boolean rotate, boolean close) {
+            this.record = record;
+            this.rotate = rotate;
+            this.close = close;
+        }
+    }
+
+    /**
+     * Open or create a log
+     *
+     * @param directory directory of the segment files
+     * @param name      segment file prefix
+     * @param maxBatch  most records written per fsync, 1 to sync every record
+     */
+    public GroupCommitLog(Path directory, String name, int maxBatch) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.maxBatch = Math.max(1, maxBatch);
+        Files.createDirectories(directory);
+
+        List<Long> segments = segments();
+        segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        channel = FileChannel.open(segmentFile(segment), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE);
+        position = validLength(channel, segmentFile(segment));
+        if (position < channel.size()) {
+            log.warn("Truncating {} bytes of torn or corrupt records from {}", channel.size() - position,
+                     segmentFile(segment).getFileName());
+            channel.truncate(position);
+            channel.force(true);
+        }
+
+        writer = new Thread(this::run, name + "-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Append a record
+     *
+     * @return completes once the record is on disk
+     */
+    public CompletableFuture<Long> append(byte[] payload) {
+        if (payload.length > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Record too large: " + payload.length + " bytes");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        record
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+        return submit(new Request(record, false, false));
+    }
+
+    /**
+     * Seal the current segment and continue in a new one
+     *
+     * @return completes with the number of the sealed segment, which holds every record appended before
+     */
+    public CompletableFuture<Long> rotate() {
+        return submit(new Request(null, true, false));
+    }
+
+    /**
+     * Delete sealed segments up to and including the given one
+     */
+    public void deleteSegmentsUpTo(long lastSegment) throws IOException {
+        for (long number : segments()) {
+            if (number <= lastSegment && number != segment) {
+                Files.deleteIfExists(segmentFile(number));
+            }
+        }
+    }
+
+    /**
+     * Pass every valid record, oldest first, to the consumer
+     * Must not run concurrently with appends, e.g. only while recovering.
+     */
+    public void replay(Consumer<ByteBuffer> consumer) throws IOException {
+        for (long number : segments()) {
+            Path file = segmentFile(number);
+            try (FileChannel segmentChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = segmentChannel.size();
+                if (size == 0) {
+                    continue;
+                }
+                MappedByteBuffer buffer = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                int offset = 0;
+                while (offset + HEADER_SIZE <= size) {
+                    ByteBuffer payload = validPayload(buffer, offset, size);
+                    if (payload == null) {
+                        log.warn("Skipping the corrupt end of {}", file.getFileName());
+                        break;
+                    }
+                    consumer.accept(payload.asReadOnlyBuffer());
+                    offset += HEADER_SIZE + payload.remaining();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of records written
+     */
+    public long getRecordCount() {
+        return records.sum();
+    }
+
+    /**
+     * Get the number of fsyncs, each covering a batch of records
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Write what is queued and close the log
+     */
+    @Override
+    public void close() throws IOException {
+        Request request = new Request(null, false, true);
+        synchronized (queue) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(request);
+        }
+        try {
+            request.done.join();
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread
+                    .currentThread()
+                    .interrupt();
+        } catch (RuntimeException e) {
+            throw new IOException("Failed to close " + name, e);
+        }
+    }
+
+    private CompletableFuture<Long> submit(Request request) {
+        synchronized (queue) {
+            if (closed) {
+                request.done.completeExceptionally(new IOException("Log " + name + " is closed"));
+            } else {
+                queue.add(request);
+            }
+        }
+        return request.done;
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>(maxBatch);
+        List<Request> written = new ArrayList<>(maxBatch);
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, maxBatch - 1);
+            for (Request request : batch) {
+                if (request.record != null) {
+                    written.add(request);
+                    continue;
+                }
+                // Records queued before a control request are committed first
+                commit(written);
+                try {
+                    if (request.rotate) {
+                        request.done.complete(startNextSegment());
+                    } else {
+                        channel.close();
+                        request.done.complete(segment);
+                        running = false;
+                    }
+                } catch (IOException e) {
+                    request.done.completeExceptionally(e);
+                }
+            }
+            commit(written);
+            batch.clear();
+        }
+        // Nothing is queued after the close request, unless the writer was interrupted
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.done.completeExceptionally(new IOException("Log " + name + " is closed"));
+        }
+    }
+
+    /**
+     * Write the records with a single fsync and complete their futures
+     */
+    private void commit(List<Request> written) {
+        if (written.isEmpty()) {
+            return;
+        }
+        try {
+            ByteBuffer[] buffers = new ByteBuffer[written.size()];
+            long bytes = 0;
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = written.get(i).record;
+                bytes += buffers[i].remaining();
+            }
+            long end = position + bytes;
+            channel.position(position);
+            while (channel.position() < end) {
+                channel.write(buffers);
+            }
+            channel.force(false);
+            position = end;
+            records.add(written.size());
+            batches.increment();
+            for (Request request : written) {
+                request.done.complete(segment);
+            }
+        } catch (IOException e) {
+            log.error("Failed to write {} records to {}", written.size(), name, e);
+            written.forEach(request -> request.done.completeExceptionally(e));
+        }
+        written.clear();
+    }
+
+    private long startNextSegment() throws IOException {
+        long sealed = segment;
+        channel.force(true);
+        channel.close();
+        segment++;
+        channel = FileChannel.open(segmentFile(segment), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        position = 0;
+        return sealed;
+    }
+
+    private List<Long> segments() throws IOException {
+        String prefix = name + "-";
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(file -> file
+                            .getFileName()
+                            .toString())
+                    .filter(file -> file.startsWith(prefix) && file.endsWith(SUFFIX))
+                    .map(file -> file.substring(prefix.length(), file.length() - SUFFIX.length()))
+                    .filter(number -> !number.isEmpty() && number
+                            .chars()
+                            .allMatch(Character::isDigit))
+                    .map(Long::parseLong)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentFile(long number) {
+        return directory.resolve(String.format("%s-%08d%s", name, number, SUFFIX));
+    }
+
+    /**
+     * Get the length of the valid records at the start of a segment
+     */
+    private static long validLength(FileChannel channel, Path file) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return 0;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        int offset = 0;
+        while (offset + HEADER_SIZE <= size) {
+            ByteBuffer payload = validPayload(buffer, offset, size);
+            if (payload == null) {
+                break;
+            }
+            offset += HEADER_SIZE + payload.remaining();
+        }
+        log.debug("Opened {}: {} valid bytes", file.getFileName(), offset);
+        return offset;
+    }
+
+    /**
+     * Get the payload of the record at an offset, or null if the record is torn or corrupt
+     */
+    private static ByteBuffer validPayload(ByteBuffer buffer, int offset, long size) {
+        int length = buffer.getInt(offset);
+        int checksum = buffer.getInt(offset + 4);
+        if (length < 0 || length > MAX_RECORD_SIZE || offset + HEADER_SIZE + (long) length > size) {
+            return null;
+        }
+        ByteBuffer payload = buffer
+                .duplicate()
+                .position(offset + HEADER_SIZE)
+                .limit(offset + HEADER_SIZE + length)
+                .slice();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue() == checksum ? payload : null;
+    }
+}
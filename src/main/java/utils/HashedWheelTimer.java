@@ -0,0 +1,295 @@
+package utils;
+
+import config.AppConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashed wheel timer
+ * One daemon thread advances a wheel of buckets once per tick and expires the timeouts of the
+ * current bucket, so any number of pending timeouts costs one thread. Scheduling and cancelling
+ * are O(1): both only enqueue the timeout, and the worker links it into or out of its bucket on
+ * the next tick. Ticks are measured from the start time rather than slept back to back, so
+ * expiry does not drift; a timeout fires within one tick after its deadline.
+ */
+@Slf4j
+public class HashedWheelTimer implements AutoCloseable {
+    private static final AppConfig CONFIG = AppConfig.getInstance();
+    private static final long TICK_MILLIS = Long.parseLong(CONFIG.getProperty("timer.tick-ms", "10"));
+    private static final int WHEEL_SIZE = Integer.parseInt(CONFIG.getProperty("timer.wheel-size", "512"));
+
+    private static HashedWheelTimer instance;
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startNanos;
+    private final Thread worker;
+    // Timeouts scheduled or cancelled since the last tick
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingCount = new AtomicLong();
+    private volatile boolean closed;
+    // Ticks completed, only touched by the worker
+    private long tick;
+
+    /**
+     * Handle of a scheduled task
+     */
+    public final class Timeout {
+        private final Runnable task;
+        private final Executor executor;
+        // Deadline relative to the timer's start time (ns)
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        // Wheel turns left before the deadline, and the bucket links; only touched by the worker
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(Runnable task, Executor executor, long deadlineNanos) {
+            this.task = task;
+            this.executor = executor;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancel the task unless it has already run
+         *
+         * @return true if the task will not run
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            pendingCount.decrementAndGet();
+            cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        /**
+         * Get the time left until the deadline, negative once it has passed
+         */
+        public long getRemaining(TimeUnit unit) {
+            return unit.convert(startNanos + deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(PENDING, EXPIRED)) {
+                return;
+            }
+            pendingCount.decrementAndGet();
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                log.debug("Executor of an expired timeout is gone, dropping its task");
+            } catch (RuntimeException e) {
+                log.warn("Timer task failed", e);
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of timeouts, only touched by the worker
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        private Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.previous != null) {
+                timeout.previous.next = next;
+            }
+            if (next != null) {
+                next.previous = timeout.previous;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+
+        private void expire(long nowNanos) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                if (timeout.remainingRounds <= 0 && timeout.deadlineNanos <= nowNanos) {
+                    Timeout next = remove(timeout);
+                    timeout.expire();
+                    timeout = next;
+                } else if (timeout.isCancelled()) {
+                    timeout = remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                    timeout = timeout.next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param name      worker thread name
+     * @param tickMillis timer resolution
+     * @param wheelSize number of buckets, rounded up to a power of two
+     */
+    public HashedWheelTimer(String name, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick and wheel size must be positive");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Get the timer shared by the whole application
+     */
+    public static synchronized HashedWheelTimer getInstance() {
+        if (instance == null) {
+            instance = new HashedWheelTimer("wheel-timer", TICK_MILLIS, WHEEL_SIZE);
+        }
+        return instance;
+    }
+
+    /**
+     * Run a task on the timer thread after a delay; the task must not block
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return schedule(task, delay, unit, Runnable::run);
+    }
+
+    /**
+     * Run a task after a delay
+     *
+     * @param executor runs the task once it expires, e.g. the thread owning the state it touches
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit, Executor executor) {
+        if (closed) {
+            throw new RejectedExecutionException("Timer is closed");
+        }
+        long deadlineNanos = System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay));
+        Timeout timeout = new Timeout(task, executor, deadlineNanos);
+        pendingCount.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Get the number of timeouts that have neither expired nor been cancelled
+     */
+    public long getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Stop the worker; pending timeouts never expire
+     */
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (!closed) {
+            long nowNanos = waitForNextTick();
+            if (nowNanos < 0) {
+                break;
+            }
+            unlinkCancelled();
+            linkScheduled();
+            wheel[(int) (tick & mask)].expire(nowNanos);
+            tick++;
+        }
+    }
+
+    /**
+     * Sleep until the end of the current tick
+     *
+     * @return Time since start (ns), or -1 if interrupted
+     */
+    private long waitForNextTick() {
+        long tickEndNanos = tickNanos * (tick + 1);
+        while (true) {
+            long nowNanos = System.nanoTime() - startNanos;
+            long sleepNanos = tickEndNanos - nowNanos;
+            if (sleepNanos <= 0) {
+                return nowNanos;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                return -1;
+            }
+        }
+    }
+
+    private void unlinkCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void linkScheduled() {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long ticks = timeout.deadlineNanos / tickNanos;
+            timeout.remainingRounds = (ticks - tick) / wheel.length;
+            // Deadlines already passed go into the current bucket
+            wheel[(int) (Math.max(ticks, tick) & mask)].add(timeout);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package utils;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the server answers with a non-successful HTTP status
+ */
+@Getter
+public class HttpStatusException extends IOException {
+    // HTTP status code
+    private final int code;
+
+    public HttpStatusException(int code, String message) {
+        super(message);
+        this.code = code;
+    }
+
+    /**
+     * Check if the status is a client error (4xx)
+     */
+    public boolean isClientError() {
+        return code >= 400 && code < 500;
+    }
+}
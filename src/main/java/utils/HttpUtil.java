@@ -1,27 +1,159 @@
 package utils;
 
+import config.AppConfig;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.Proxy;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * HTTP request tool class
  */
 @Slf4j
 public class HttpUtil {
-    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(30, TimeUnit.SECONDS)
-            .writeTimeout(30, TimeUnit.SECONDS)
-            .proxy(Proxy.NO_PROXY) // ⬅ Disable proxy explicitly
-            .build();
+    private static final AppConfig CONFIG = AppConfig.getInstance();
+
+    // Disk cache for GET responses, revalidated with If-None-Match / If-Modified-Since
+    private static final String DEFAULT_CACHE_DIR = "cache/http";
+    private static final long DEFAULT_CACHE_MAX_SIZE_MB = 50;
+
+    // Serve stale cached entries when the upstream is unreachable
+    private static final boolean OFFLINE_FALLBACK = Boolean.parseBoolean(
+            CONFIG.getProperty("http.cache.offline-fallback", "true"));
+
+    // Number of responses served from a stale cache entry by the offline fallback
+    private static final AtomicLong STALE_HIT_COUNT = new AtomicLong();
+
+    // Concurrent calls per host on the dispatcher; TMDB traffic is already bounded by the request scheduler
+    private static final int MAX_REQUESTS_PER_HOST = Integer.parseInt(
+            CONFIG.getProperty("http.max-requests-per-host", "64"));
+
+    private static Cache httpCache;
+    private static OkHttpClient httpClient = buildClient(
+            CONFIG.getProperty("http.cache.dir", DEFAULT_CACHE_DIR));
 
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+    // Per-type readers, built once and reused for every response of that type
+    private static final Map<Class<?>, ObjectReader> READER_CACHE = new ConcurrentHashMap<>();
+
+    /**
+    * Build the HTTP client with a bounded disk cache in the given directory
+    */
+    private static OkHttpClient buildClient(String cacheDir) {
+        long maxSizeMb = Long.parseLong(CONFIG.getProperty("http.cache.max-size-mb",
+                                                           String.valueOf(DEFAULT_CACHE_MAX_SIZE_MB)));
+        httpCache = new Cache(new File(cacheDir), maxSizeMb * 1024 * 1024);
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Math.max(dispatcher.getMaxRequests(), MAX_REQUESTS_PER_HOST));
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .proxy(Proxy.NO_PROXY) // ⬅ Disable proxy explicitly
+                .cache(httpCache)
+                .addInterceptor(HttpUtil::offlineFallback)
+                .build();
+    }
+
+    /**
+    * Set the HTTP cache directory (for testing only)
+    */
+    public static synchronized void setCacheDirectory(String dir) {
+        try {
+            httpCache.close();
+        } catch (IOException e) {
+            log.warn("Failed to close HTTP cache", e);
+        }
+        STALE_HIT_COUNT.set(0);
+        httpClient = buildClient(dir);
+    }
+
+    /**
+    * Retry a failed GET against the disk cache only, accepting stale entries
+    */
+    private static Response offlineFallback(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!OFFLINE_FALLBACK || !"GET".equals(request.method()) || request
+                .cacheControl()
+                .onlyIfCached()) {
+            return chain.proceed(request);
+        }
+
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            Response stale = proceedFromCache(chain, request);
+            if (stale == null) {
+                throw e;
+            }
+            log.warn("Upstream unreachable, serving stale cache entry: {}", request.url());
+            return stale;
+        }
+
+        if (response.code() >= 500) {
+            Response stale = proceedFromCache(chain, request);
+            if (stale != null) {
+                log.warn("Upstream returned {}, serving stale cache entry: {}", response.code(), request.url());
+                response.close();
+                return stale;
+            }
+        }
+        return response;
+    }
+
+    /**
+    * Get a cached response regardless of its freshness, or null if nothing is cached
+    */
+    private static Response proceedFromCache(Interceptor.Chain chain, Request request) throws IOException {
+        Request cacheOnly = request
+                .newBuilder()
+                .cacheControl(CacheControl.FORCE_CACHE)
+                .build();
+        Response cached = chain.proceed(cacheOnly);
+        if (!cached.isSuccessful()) {
+            cached.close();
+            return null;
+        }
+        STALE_HIT_COUNT.incrementAndGet();
+        return cached;
+    }
+
+    /**
+    * Get HTTP cache statistics
+    *
+    * @return snapshot of the cache counters
+    */
+    public static CacheStats getCacheStats() {
+        return new CacheStats(httpCache.requestCount(), httpCache.networkCount(),
+                              httpCache.hitCount(), STALE_HIT_COUNT.get());
+    }
+
+    /**
+    * Get the number of HTTP calls currently in flight
+    */
+    public static int getRunningCallCount() {
+        return httpClient
+                .dispatcher()
+                .runningCallsCount();
+    }
+
     /**
     * Send GET request
     *
@@ -31,16 +163,12 @@ public class HttpUtil {
     */
     public static String get(String url, Map<String, String> headers) throws IOException {
         log.debug("Send a GET request: {}", url);
-        Request.Builder requestBuilder = new Request.Builder().url(url);
-        if (headers != null) {
-            headers.forEach(requestBuilder::addHeader);
-        }
-        Request request = requestBuilder.build();
-        try (Response response = HTTP_CLIENT
+        Request request = buildGetRequest(url, headers);
+        try (Response response = httpClient
                 .newCall(request)
                 .execute()) {
             if (!response.isSuccessful()) {
-                throw new IOException("Unexpected code " + response);
+                throw new HttpStatusException(response.code(), "Unexpected code " + response);
             }
             String responseBody = response
                     .body()
@@ -50,6 +178,136 @@ public class HttpUtil {
         }
     }
 
+    /**
+    * Send GET request and decode the response body directly from its byte stream,
+    * without materializing it as a String first
+    *
+    * @param url request address
+    * @param headers request header
+    * @param clazz target class
+    * @return decoded response, or null if the response has no body
+    */
+    public static <T> T get(String url, Map<String, String> headers, Class<T> clazz) throws IOException {
+        return get(url, headers, clazz, 0);
+    }
+
+    /**
+    * Send GET request and decode the response body, giving up after a deadline
+    *
+    * @param url request address
+    * @param headers request header
+    * @param clazz target class
+    * @param timeoutMillis deadline of the whole call, including connecting and reading the body (0 for none)
+    * @return decoded response, or null if the response has no body
+    */
+    public static <T> T get(String url, Map<String, String> headers, Class<T> clazz, long timeoutMillis) throws IOException {
+        log.debug("Send a streaming GET request: {}", url);
+        Request request = buildGetRequest(url, headers);
+        Call call = httpClient.newCall(request);
+        if (timeoutMillis > 0) {
+            call
+                    .timeout()
+                    .timeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        // Blocking socket reads ignore interrupts, so the call runs on the dispatcher and the caller
+        // waits interruptibly, cancelling the call when it gives up
+        CompletableFuture<T> result = new CompletableFuture<>();
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    result.complete(decode(response, clazz));
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            call.cancel();
+            Thread
+                    .currentThread()
+                    .interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + request.url());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+    * Decode a successful response body
+    */
+    private static <T> T decode(Response response, Class<T> clazz) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new HttpStatusException(response.code(), "Unexpected code " + response);
+        }
+        ResponseBody body = response.body();
+        if (body == null) {
+            return null;
+        }
+        try (InputStream in = body.byteStream()) {
+            return readerFor(clazz).readValue(in);
+        }
+    }
+
+    /**
+    * Decode a GET response from the disk cache only, without touching the network.
+    * Stale entries are accepted.
+    *
+    * @param url request address
+    * @param headers request header
+    * @param clazz target class
+    * @return decoded cached response, or null if nothing is cached
+    */
+    public static <T> T getCached(String url, Map<String, String> headers, Class<T> clazz) throws IOException {
+        Request request = buildGetRequest(url, headers)
+                .newBuilder()
+                .cacheControl(CacheControl.FORCE_CACHE)
+                .build();
+        try (Response response = httpClient
+                .newCall(request)
+                .execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                return null;
+            }
+            try (InputStream in = body.byteStream()) {
+                return readerFor(clazz).readValue(in);
+            }
+        }
+    }
+
+    /**
+    * Build a GET request with the given headers
+    */
+    private static Request buildGetRequest(String url, Map<String, String> headers) {
+        Request.Builder requestBuilder = new Request.Builder().url(url);
+        if (headers != null) {
+            headers.forEach(requestBuilder::addHeader);
+        }
+        return requestBuilder.build();
+    }
+
+    /**
+    * Get the cached reader for a target class
+    */
+    private static ObjectReader readerFor(Class<?> clazz) {
+        return READER_CACHE.computeIfAbsent(clazz, OBJECT_MAPPER::readerFor);
+    }
+
     /**
     * Send POST request
     *
@@ -68,11 +326,11 @@ public class HttpUtil {
             headers.forEach(requestBuilder::addHeader);
         }
         Request request = requestBuilder.build();
-        try (Response response = HTTP_CLIENT
+        try (Response response = httpClient
                 .newCall(request)
                 .execute()) {
             if (!response.isSuccessful()) {
-                throw new IOException("Unexpected code " + response);
+                throw new HttpStatusException(response.code(), "Unexpected code " + response);
             }
             String responseBody = null;
             if (response.body() != null) {
@@ -93,7 +351,7 @@ public class HttpUtil {
     * @return converted object
     */
     public static <T> T fromJson(String json, Class<T> clazz) throws IOException {
-        return OBJECT_MAPPER.readValue(json, clazz);
+        return readerFor(clazz).readValue(json);
     }
 
     /**
@@ -120,4 +378,27 @@ public class HttpUtil {
             return value;
         }
     }
+
+    /**
+     * HTTP cache counters
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class CacheStats {
+        // Requests that went through the cache
+        private final long requestCount;
+        // Requests that needed the network, including conditional revalidations
+        private final long networkCount;
+        // Responses served from cache, including 304 revalidations
+        private final long hitCount;
+        // Stale responses served because the upstream was unreachable
+        private final long staleHitCount;
+
+        /**
+         * Fraction of requests answered from the cache
+         */
+        public double getHitRatio() {
+            return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+        }
+    }
 }
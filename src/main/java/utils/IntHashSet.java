@@ -0,0 +1,126 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive ints
+ * Open addressing with linear probing over a power-of-two table, so membership checks
+ * neither box the key nor chase pointers. Not thread-safe.
+ */
+public class IntHashSet {
+    private static final float LOAD_FACTOR = 0.5f;
+    // Marks a free slot; the key 0 itself is tracked by a flag
+    private static final int FREE = 0;
+
+    private int[] keys;
+    private int mask;
+    private int size;
+    private boolean containsZero;
+
+    /**
+     * Constructor
+     */
+    public IntHashSet() {
+        this(16);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param expectedSize number of keys the set holds without resizing
+     */
+    public IntHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        this.keys = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Add a key
+     *
+     * @return true if the key was not in the set
+     */
+    public boolean add(int key) {
+        if (key == FREE) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int slot = slot(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (++size > keys.length * LOAD_FACTOR) {
+            resize();
+        }
+        return true;
+    }
+
+    /**
+     * Check whether a key is in the set
+     */
+    public boolean contains(int key) {
+        if (key == FREE) {
+            return containsZero;
+        }
+        int slot = slot(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check whether the set is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove every key
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        containsZero = false;
+        size = 0;
+    }
+
+    private int slot(int key) {
+        // Fibonacci hashing spreads sequential IDs over the table
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void resize() {
+        int[] old = keys;
+        keys = new int[old.length << 1];
+        mask = keys.length - 1;
+        for (int key : old) {
+            if (key != FREE) {
+                int slot = slot(key);
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Map from primitive int keys to primitive int values
+ * Open addressing with linear probing over parallel key and value arrays, so counters are
+ * updated without boxing. Not thread-safe.
+ */
+public class IntIntHashMap {
+    private static final float LOAD_FACTOR = 0.5f;
+    // Marks a free slot; the key 0 itself is stored separately
+    private static final int FREE = 0;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private boolean containsZero;
+    private int zeroValue;
+
+    /**
+     * Callback for forEach
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+
+    /**
+     * Constructor
+     */
+    public IntIntHashMap() {
+        this(8);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param expectedSize number of keys the map holds without resizing
+     */
+    public IntIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        this.keys = new int[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Get the value of a key
+     *
+     * @param defaultValue returned if the key is not in the map
+     */
+    public int get(int key, int defaultValue) {
+        if (key == FREE) {
+            return containsZero ? zeroValue : defaultValue;
+        }
+        int slot = slot(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Check whether a key is in the map
+     */
+    public boolean containsKey(int key) {
+        if (key == FREE) {
+            return containsZero;
+        }
+        int slot = slot(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Set the value of a key
+     */
+    public void put(int key, int value) {
+        merge(key, value, (oldValue, newValue) -> newValue);
+    }
+
+    /**
+     * Add one to the value of a key, starting from 0 for a new key
+     *
+     * @return the new value
+     */
+    public int increment(int key) {
+        return merge(key, 1, Integer::sum);
+    }
+
+    /**
+     * Get the number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check whether the map is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove every key
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        containsZero = false;
+        zeroValue = 0;
+        size = 0;
+    }
+
+    /**
+     * Visit every entry, in no particular order
+     */
+    public void forEach(EntryConsumer consumer) {
+        if (containsZero) {
+            consumer.accept(FREE, zeroValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Store value for a new key, or combine it with the value of an existing one
+     *
+     * @return the value stored
+     */
+    private int merge(int key, int value, IntBinaryOperator combine) {
+        if (key == FREE) {
+            if (!containsZero) {
+                containsZero = true;
+                size++;
+                return zeroValue = value;
+            }
+            return zeroValue = combine.applyAsInt(zeroValue, value);
+        }
+        int slot = slot(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                return values[slot] = combine.applyAsInt(values[slot], value);
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            resize();
+        }
+        return value;
+    }
+
+    private int slot(int key) {
+        // Fibonacci hashing spreads sequential IDs over the table
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length << 1];
+        values = new int[oldKeys.length << 1];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package utils;
+
+import config.AppConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for blocking I/O
+ * On Java 21+ every task gets its own virtual thread, so thousands of blocking TMDB calls can
+ * wait on the request scheduler or the network without sizing a pool. On older runtimes, or when
+ * tmdb.executor.mode=platform, a fixed pool of daemon platform threads is used instead.
+ * Virtual threads are created reflectively so the code still builds for Java 17.
+ */
+@Slf4j
+public class IoExecutors {
+    private static final String MODE = AppConfig
+            .getInstance()
+            .getProperty("tmdb.executor.mode", "virtual");
+
+    private IoExecutors() {
+    }
+
+    /**
+     * Create an executor for blocking I/O tasks
+     *
+     * @param name            thread name prefix
+     * @param platformThreads pool size when virtual threads are not used
+     */
+    public static ExecutorService newExecutor(String name, int platformThreads) {
+        if (useVirtualThreads()) {
+            try {
+                return newVirtualThreadExecutor(name);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Virtual threads unavailable, using {} platform threads for {}", platformThreads, name, e);
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(platformThreads, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Check whether new executors run tasks on virtual threads
+     */
+    public static boolean useVirtualThreads() {
+        return "virtual".equalsIgnoreCase(MODE.trim()) && Runtime
+                .version()
+                .feature() >= 21;
+    }
+
+    /**
+     * Equivalent of Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory())
+     */
+    private static ExecutorService newVirtualThreadExecutor(String name) throws ReflectiveOperationException {
+        Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+        Object builder = Thread.class
+                .getMethod("ofVirtual")
+                .invoke(null);
+        builder = builderType
+                .getMethod("name", String.class, long.class)
+                .invoke(builder, name + "-", 1L);
+        ThreadFactory factory = (ThreadFactory) builderType
+                .getMethod("factory")
+                .invoke(builder);
+        return (ExecutorService) Executors.class
+                .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, factory);
+    }
+}
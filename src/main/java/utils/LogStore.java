@@ -0,0 +1,421 @@
+package utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log-structured key-value store
+ * Records are appended to a single file as [length][key][CRC32][payload], the CRC32 covering
+ * length, key and payload; an in-memory index maps each key to its latest record and reads go
+ * through a memory-mapped view of the file.
+ * On open, the file is scanned and a torn or corrupt tail left by a crash is truncated.
+ * Overwritten records are reclaimed by a background compaction that rewrites the live records
+ * to a temporary file and atomically renames it over the log, syncing the directory so the
+ * rename survives a crash.
+ * Appends and compaction assume a single process owns the file; callers sharing a directory
+ * between processes must lock it first.
+ */
+@Slf4j
+public class LogStore implements Closeable {
+    private static final int HEADER_SIZE = 12; // length, key and CRC32 (4 bytes each)
+    private static final int CHECKED_HEADER_SIZE = 8; // length and key, covered by the CRC32
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024; // Larger lengths mean a corrupt header
+    private static final long COMPACTION_MIN_BYTES = 1024 * 1024; // Smaller logs are never compacted
+    private static final double COMPACTION_GARBAGE_RATIO = 0.5; // Compact when half of the log is dead
+
+    // Shared by all stores, compactions run one at a time
+    private static final ExecutorService COMPACTION_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "log-store-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path file;
+    private final Path compactionFile;
+    // Readers share the lock, appends and compaction take it exclusively
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+
+    // Key -> latest record
+    private Map<Integer, Entry> index = new HashMap<>();
+    private FileChannel channel;
+    // Read-only view of the log, remapped when it no longer covers a requested record
+    private volatile MappedByteBuffer mapped;
+    // End of the last valid record
+    private long size;
+    // Bytes of the records still referenced by the index
+    private long liveBytes;
+
+    /**
+     * Open or create a store, recovering the index from the log
+     *
+     * @param file log file
+     */
+    public LogStore(Path file) throws IOException {
+        this.file = file;
+        this.compactionFile = file.resolveSibling(file.getFileName() + ".compact");
+        Path parent = file
+                .toAbsolutePath()
+                .getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // A leftover compaction file means the rename never happened, the log itself is intact
+        Files.deleteIfExists(compactionFile);
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE);
+        recover();
+    }
+
+    /**
+     * Get the latest value of a key
+     *
+     * @return the value, or null if the key is not stored
+     */
+    public byte[] get(int key) throws IOException {
+        lock
+                .readLock()
+                .lock();
+        try {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                return null;
+            }
+            ByteBuffer view = mappedView(entry.offset + HEADER_SIZE + entry.length);
+            byte[] value = new byte[entry.length];
+            view.position((int) (entry.offset + HEADER_SIZE));
+            view.get(value);
+            return value;
+        } finally {
+            lock
+                    .readLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Append a value, replacing any previous value of the key
+     */
+    public void put(int key, byte[] value) throws IOException {
+        if (value.length > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Record too large: " + value.length + " bytes");
+        }
+        ByteBuffer record = encode(key, value);
+
+        lock
+                .writeLock()
+                .lock();
+        try {
+            long offset = size;
+            // Records are read through a single mapping, whose positions are ints
+            if (offset + record.remaining() > Integer.MAX_VALUE) {
+                throw new IOException("Log store is full: " + file);
+            }
+            while (record.hasRemaining()) {
+                channel.write(record, offset + record.position());
+            }
+            Entry previous = index.put(key, new Entry(offset, value.length));
+            size += HEADER_SIZE + value.length;
+            liveBytes += HEADER_SIZE + value.length;
+            if (previous != null) {
+                liveBytes -= HEADER_SIZE + previous.length;
+            }
+        } finally {
+            lock
+                    .writeLock()
+                    .unlock();
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * Check whether a key is stored
+     */
+    public boolean contains(int key) {
+        lock
+                .readLock()
+                .lock();
+        try {
+            return index.containsKey(key);
+        } finally {
+            lock
+                    .readLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Get all stored keys
+     */
+    public Set<Integer> keys() {
+        lock
+                .readLock()
+                .lock();
+        try {
+            return new HashSet<>(index.keySet());
+        } finally {
+            lock
+                    .readLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Get the number of stored keys
+     */
+    public int size() {
+        lock
+                .readLock()
+                .lock();
+        try {
+            return index.size();
+        } finally {
+            lock
+                    .readLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Get the size of the log file, including overwritten records
+     */
+    public long fileSize() {
+        lock
+                .readLock()
+                .lock();
+        try {
+            return size;
+        } finally {
+            lock
+                    .readLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Force appended records to disk
+     */
+    public void flush() throws IOException {
+        lock
+                .writeLock()
+                .lock();
+        try {
+            channel.force(false);
+        } finally {
+            lock
+                    .writeLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Rewrite the live records to a new log and atomically replace the old one
+     */
+    public void compact() throws IOException {
+        lock
+                .writeLock()
+                .lock();
+        try {
+            long start = System.currentTimeMillis();
+            long before = size;
+            List<Map.Entry<Integer, Entry>> live = new ArrayList<>(index.entrySet());
+            live.sort(Comparator.comparingLong(e -> e.getValue().offset));
+
+            Map<Integer, Entry> compacted = new HashMap<>(index.size() * 2);
+            long offset = 0;
+            try (FileChannel target = FileChannel.open(compactionFile, StandardOpenOption.CREATE,
+                                                       StandardOpenOption.TRUNCATE_EXISTING,
+                                                       StandardOpenOption.WRITE)) {
+                for (Map.Entry<Integer, Entry> e : live) {
+                    Entry entry = e.getValue();
+                    long recordSize = HEADER_SIZE + entry.length;
+                    long copied = 0;
+                    while (copied < recordSize) {
+                        copied += channel.transferTo(entry.offset + copied, recordSize - copied, target);
+                    }
+                    compacted.put(e.getKey(), new Entry(offset, entry.length));
+                    offset += recordSize;
+                }
+                target.force(true);
+            }
+
+            // Until the rename the old log stays the valid one
+            FileUtil.replaceAtomically(compactionFile, file);
+            channel.close();
+            mapped = null;
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            index = compacted;
+            size = offset;
+            liveBytes = offset;
+            log.info("Compacted {}: {} -> {} bytes in {} ms", file.getFileName(), before, size,
+                     System.currentTimeMillis() - start);
+        } finally {
+            lock
+                    .writeLock()
+                    .unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock
+                .writeLock()
+                .lock();
+        try {
+            if (channel.isOpen()) {
+                channel.force(true);
+                channel.close();
+            }
+            mapped = null;
+        } finally {
+            lock
+                    .writeLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Rebuild the index by scanning the log, truncating it at the first invalid record
+     */
+    private void recover() throws IOException {
+        long fileSize = channel.size();
+        long offset = 0;
+        if (fileSize > 0) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            CRC32 crc = new CRC32();
+            while (offset + HEADER_SIZE <= fileSize) {
+                buffer.position((int) offset);
+                int length = buffer.getInt();
+                int key = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length < 0 || length > MAX_RECORD_SIZE || offset + HEADER_SIZE + length > fileSize) {
+                    break;
+                }
+                ByteBuffer checkedHeader = buffer.duplicate();
+                checkedHeader
+                        .position((int) offset)
+                        .limit((int) offset + CHECKED_HEADER_SIZE);
+                ByteBuffer payload = buffer.slice();
+                payload.limit(length);
+                crc.reset();
+                crc.update(checkedHeader);
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                Entry previous = index.put(key, new Entry(offset, length));
+                liveBytes += HEADER_SIZE + length;
+                if (previous != null) {
+                    liveBytes -= HEADER_SIZE + previous.length;
+                }
+                offset += HEADER_SIZE + length;
+            }
+        }
+
+        if (offset < fileSize) {
+            log.warn("Truncating {} bytes of torn or corrupt records from {}", fileSize - offset,
+                     file.getFileName());
+            channel.truncate(offset);
+            channel.force(true);
+        }
+        size = offset;
+        log.info("Opened {}: {} keys, {} bytes", file.getFileName(), index.size(), size);
+    }
+
+    /**
+     * Get a private view of the mapped log covering at least the given number of bytes
+     */
+    private ByteBuffer mappedView(long minSize) throws IOException {
+        MappedByteBuffer buffer = mapped;
+        if (buffer == null || buffer.capacity() < minSize) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapped = buffer;
+        }
+        return buffer.duplicate();
+    }
+
+    /**
+     * Schedule a compaction once enough of the log is overwritten records
+     */
+    private void scheduleCompactionIfNeeded() {
+        if (!needsCompaction() || !compactionScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        COMPACTION_EXECUTOR.execute(() -> {
+            try {
+                if (needsCompaction()) {
+                    compact();
+                }
+            } catch (IOException e) {
+                log.error("Failed to compact {}", file.getFileName(), e);
+            } finally {
+                compactionScheduled.set(false);
+            }
+        });
+    }
+
+    private boolean needsCompaction() {
+        lock
+                .readLock()
+                .lock();
+        try {
+            return channel.isOpen() && size >= COMPACTION_MIN_BYTES
+                    && size - liveBytes > size * COMPACTION_GARBAGE_RATIO;
+        } finally {
+            lock
+                    .readLock()
+                    .unlock();
+        }
+    }
+
+    private static ByteBuffer encode(int key, byte[] value) {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + value.length);
+        record
+                .putInt(value.length)
+                .putInt(key);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, CHECKED_HEADER_SIZE);
+        crc.update(value);
+        record
+                .putInt((int) crc.getValue())
+                .put(value)
+                .flip();
+        return record;
+    }
+
+    /**
+     * Location of a record in the log
+     */
+    private static class Entry {
+        private final long offset;
+        private final int length;
+
+        private Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of lookups known to have no result (e.g. a movie ID TMDB answers 404 for)
+ * Entries expire after a TTL and the oldest ones are dropped beyond a maximum size.
+ * An optional Bloom filter in front answers the common "never missing" case without taking the lock.
+ *
+ * @param <K> key type
+ */
+public class NegativeCache<K> {
+    private final String name;
+    // How long a miss is remembered (ms)
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final boolean bloomFilterEnabled;
+    // Clock in milliseconds
+    private final LongSupplier clock;
+
+    // Expiry time per key, oldest first, guarded by itself
+    private final LinkedHashMap<K, Long> expiries = new LinkedHashMap<>();
+    // Rebuilt from the live keys once it has seen maxEntries additions, so it does not fill up
+    private volatile BloomFilter bloomFilter;
+    private int bloomAdditions;
+
+    // Lookups answered by the cache, i.e. remote calls avoided
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor
+     */
+    public NegativeCache(String name, long ttlMillis, int maxEntries, boolean bloomFilterEnabled) {
+        this(name, ttlMillis, maxEntries, bloomFilterEnabled, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor with a custom clock (for testing)
+     */
+    public NegativeCache(String name, long ttlMillis, int maxEntries, boolean bloomFilterEnabled,
+                         LongSupplier clock) {
+        this.name = name;
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.bloomFilterEnabled = bloomFilterEnabled;
+        this.clock = clock;
+        this.bloomFilter = bloomFilterEnabled ? new BloomFilter(maxEntries) : null;
+    }
+
+    /**
+     * Check whether a key is known to have no result
+     *
+     * @return true if the remote lookup can be skipped
+     */
+    public boolean contains(K key) {
+        BloomFilter filter = bloomFilter;
+        if (filter != null && !filter.mightContain(key)) {
+            misses.increment();
+            return false;
+        }
+        boolean known;
+        synchronized (expiries) {
+            Long expiry = expiries.get(key);
+            known = expiry != null && expiry > clock.getAsLong();
+            if (expiry != null && !known) {
+                expiries.remove(key);
+            }
+        }
+        if (known) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return known;
+    }
+
+    /**
+     * Remember that a key has no result
+     */
+    public void add(K key) {
+        synchronized (expiries) {
+            // Re-inserted so the key moves to the young end
+            expiries.remove(key);
+            expiries.put(key, clock.getAsLong() + ttlMillis);
+            if (expiries.size() > maxEntries) {
+                evict();
+            }
+            if (bloomFilterEnabled) {
+                if (++bloomAdditions > maxEntries) {
+                    rebuildBloomFilter();
+                } else {
+                    bloomFilter.add(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget every key
+     */
+    public void clear() {
+        synchronized (expiries) {
+            expiries.clear();
+            if (bloomFilterEnabled) {
+                rebuildBloomFilter();
+            }
+        }
+    }
+
+    /**
+     * Get the number of remembered keys, including expired ones not yet dropped
+     */
+    public int size() {
+        synchronized (expiries) {
+            return expiries.size();
+        }
+    }
+
+    /**
+     * Get the number of lookups answered by the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups that had to go to the remote
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{entries=%d, hits=%d, misses=%d}", name, size(), getHits(), getMisses());
+    }
+
+    /**
+     * Drop expired keys, then the oldest ones while over capacity; only called while holding the lock
+     */
+    private void evict() {
+        long now = clock.getAsLong();
+        Iterator<Long> iterator = expiries
+                .values()
+                .iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() > now && expiries.size() <= maxEntries) {
+                // Every later key was added after this one and expires later
+                break;
+            }
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Replace the Bloom filter with one holding only the live keys; only called while holding the lock
+     */
+    private void rebuildBloomFilter() {
+        BloomFilter filter = new BloomFilter(maxEntries);
+        for (Map.Entry<K, Long> entry : expiries.entrySet()) {
+            filter.add(entry.getKey());
+        }
+        bloomAdditions = expiries.size();
+        bloomFilter = filter;
+    }
+}
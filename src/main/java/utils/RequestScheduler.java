@@ -0,0 +1,293 @@
+package utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Priority-aware request scheduler
+ * Hands out permits at a fixed rate shared by all callers. Waiting requests are queued per lane
+ * and an interactive request is always granted before any queued background request, so
+ * a player's move is not stuck behind a catalog refresh or a credits crawl.
+ * The lane is taken from the calling thread, which is interactive unless marked otherwise.
+ */
+public class RequestScheduler {
+    /**
+     * Request priority lane, in priority order
+     */
+    public enum Lane {
+        INTERACTIVE, BACKGROUND
+    }
+
+    private static final ThreadLocal<Lane> CURRENT_LANE = ThreadLocal.withInitial(() -> Lane.INTERACTIVE);
+
+    // Interval between two permits (ns)
+    private final long intervalNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Lane, Deque<Ticket>> queues = new EnumMap<>(Lane.class);
+    private final Map<Lane, LaneMetrics> metrics = new EnumMap<>(Lane.class);
+    // Time at which the next permit becomes available (ns)
+    private long nextFreeNanos = System.nanoTime();
+
+    /**
+     * Constructor
+     *
+     * @param permitsPerSecond maximum number of permits per second, across all lanes
+     */
+    public RequestScheduler(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        for (Lane lane : Lane.values()) {
+            queues.put(lane, new ArrayDeque<>());
+            metrics.put(lane, new LaneMetrics());
+        }
+    }
+
+    /**
+     * Get the lane of the calling thread
+     */
+    public static Lane currentLane() {
+        return CURRENT_LANE.get();
+    }
+
+    /**
+     * Run a task with every request it makes on the calling thread scheduled in the given lane
+     */
+    public static <T> T callInLane(Lane lane, Supplier<T> task) {
+        Lane previous = CURRENT_LANE.get();
+        CURRENT_LANE.set(lane);
+        try {
+            return task.get();
+        } finally {
+            CURRENT_LANE.set(previous);
+        }
+    }
+
+    /**
+     * Run a task with every request it makes on the calling thread scheduled in the given lane
+     */
+    public static void runInLane(Lane lane, Runnable task) {
+        Lane previous = CURRENT_LANE.get();
+        CURRENT_LANE.set(lane);
+        try {
+            task.run();
+        } finally {
+            CURRENT_LANE.set(previous);
+        }
+    }
+
+    /**
+     * Block until a permit is granted in the calling thread's lane
+     */
+    public void acquire() throws InterruptedException {
+        acquire(currentLane());
+    }
+
+    /**
+     * Block until a permit is granted in the given lane
+     */
+    public void acquire(Lane lane) throws InterruptedException {
+        await(lane, 0, false);
+    }
+
+    /**
+     * Block until a permit is granted in the given lane, giving up at a deadline
+     * A request that gives up leaves the queue, so an abandoned caller does not hold up the ones behind it.
+     *
+     * @param deadlineNanos System.nanoTime() by which the permit must be granted
+     * @throws SocketTimeoutException if no permit can be granted before the deadline
+     */
+    public void acquire(Lane lane, long deadlineNanos) throws InterruptedException, SocketTimeoutException {
+        if (!await(lane, deadlineNanos, true)) {
+            throw new SocketTimeoutException("No request permit within the deadline");
+        }
+    }
+
+    /**
+     * Queue for a permit and take it once it is this request's turn
+     *
+     * @return false if the deadline passed first, the request then having left the queue
+     */
+    private boolean await(Lane lane, long deadlineNanos, boolean timed) throws InterruptedException {
+        lock.lock();
+        try {
+            Ticket ticket = new Ticket(lock.newCondition());
+            queues
+                    .get(lane)
+                    .addLast(ticket);
+            metrics
+                    .get(lane)
+                    .enqueued(queues
+                                      .get(lane)
+                                      .size());
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    boolean isHead = head() == ticket;
+                    if (isHead && nextFreeNanos - now <= 0) {
+                        break;
+                    }
+                    long remainingNanos = deadlineNanos - now;
+                    // Permits are never granted earlier than planned, so the head can give up right away
+                    if (timed && (remainingNanos <= 0 || isHead && nextFreeNanos - deadlineNanos > 0)) {
+                        leave(lane, ticket);
+                        return false;
+                    }
+                    if (!isHead) {
+                        // Woken up by the request ahead of it once it becomes the head
+                        if (timed) {
+                            ticket.turn.awaitNanos(remainingNanos);
+                        } else {
+                            ticket.turn.await();
+                        }
+                        continue;
+                    }
+                    // A higher-priority arrival may take the head while this one waits
+                    ticket.turn.awaitNanos(nextFreeNanos - now);
+                }
+            } catch (InterruptedException e) {
+                leave(lane, ticket);
+                throw e;
+            }
+
+            long now = System.nanoTime();
+            nextFreeNanos = Math.max(nextFreeNanos, now) + intervalNanos;
+            queues
+                    .get(lane)
+                    .removeFirst();
+            metrics
+                    .get(lane)
+                    .granted(now - ticket.enqueuedNanos);
+            signalHead();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove a request that gave up from its queue, handing the head over if it held it
+     */
+    private void leave(Lane lane, Ticket ticket) {
+        boolean wasHead = head() == ticket;
+        queues
+                .get(lane)
+                .remove(ticket);
+        if (wasHead) {
+            signalHead();
+        }
+    }
+
+    /**
+     * Get queue and wait-time metrics of a lane
+     */
+    public LaneStats getStats(Lane lane) {
+        lock.lock();
+        try {
+            return metrics
+                    .get(lane)
+                    .snapshot(lane, queues
+                            .get(lane)
+                            .size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The next request to be granted: the oldest one in the highest-priority non-empty lane
+     */
+    private Ticket head() {
+        for (Lane lane : Lane.values()) {
+            Ticket ticket = queues
+                    .get(lane)
+                    .peekFirst();
+            if (ticket != null) {
+                return ticket;
+            }
+        }
+        return null;
+    }
+
+    private void signalHead() {
+        Ticket next = head();
+        if (next != null) {
+            next.turn.signal();
+        }
+    }
+
+    /**
+     * A waiting request
+     */
+    private static class Ticket {
+        private final Condition turn;
+        private final long enqueuedNanos = System.nanoTime();
+
+        private Ticket(Condition turn) {
+            this.turn = turn;
+        }
+    }
+
+    /**
+     * Counters of one lane, guarded by the scheduler lock
+     */
+    private static class LaneMetrics {
+        private long granted;
+        private long totalWaitNanos;
+        private long maxWaitNanos;
+        private int maxQueueDepth;
+
+        private void enqueued(int depth) {
+            maxQueueDepth = Math.max(maxQueueDepth, depth);
+        }
+
+        private void granted(long waitNanos) {
+            granted++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        }
+
+        private LaneStats snapshot(Lane lane, int queueDepth) {
+            return new LaneStats(lane, queueDepth, maxQueueDepth, granted,
+                                 TimeUnit.NANOSECONDS.toMillis(totalWaitNanos),
+                                 TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+        }
+    }
+
+    /**
+     * Metrics snapshot of one lane
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class LaneStats {
+        private final Lane lane;
+        // Requests currently waiting
+        private final int queueDepth;
+        // Most requests ever waiting at once
+        private final int maxQueueDepth;
+        // Permits granted
+        private final long granted;
+        // Total time spent waiting (ms)
+        private final long totalWaitMillis;
+        // Longest wait (ms)
+        private final long maxWaitMillis;
+
+        /**
+         * Get the average wait per granted request (ms)
+         */
+        public double getAverageWaitMillis() {
+            return granted == 0 ? 0 : (double) totalWaitMillis / granted;
+        }
+    }
+}
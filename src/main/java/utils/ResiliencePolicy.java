@@ -0,0 +1,301 @@
+package utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retry and hedging policy for idempotent requests
+ * Every attempt takes a permit from the request scheduler and is cut off at a deadline.
+ * Failed attempts are retried after an exponential backoff with full jitter; client errors (4xx) are not.
+ * An interactive attempt still running after the p95 of recent latencies gets a hedged duplicate,
+ * and whichever answers first wins. Background requests are never hedged, they can wait.
+ */
+@Slf4j
+public class ResiliencePolicy {
+    // Latencies kept for the p95 estimate
+    private static final int LATENCY_WINDOW = 128;
+    // Samples needed before the p95 replaces the default hedge delay
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    // Hedging a faster request would double the load for no visible gain (ms)
+    private static final long MIN_HEDGE_DELAY_MILLIS = 100;
+
+    private final String name;
+    private final RequestScheduler scheduler;
+    private final int maxAttempts;
+    // Backoff before the first retry, doubled for each further retry (ms)
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    // Deadline of a single attempt (ms)
+    private final long attemptTimeoutMillis;
+    // Hedge delay until enough latencies are known (ms), 0 disables hedging
+    private final long defaultHedgeDelayMillis;
+    private final ExecutorService executor;
+
+    // Recent attempt latencies (ms), guarded by itself
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private int latencyCount;
+    private int nextLatency;
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    /**
+     * A single attempt of a request
+     */
+    @FunctionalInterface
+    public interface Attempt<T> {
+        /**
+         * @param timeoutMillis deadline of this attempt
+         */
+        T call(long timeoutMillis) throws IOException;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param name                    policy name, also used for the hedging threads
+     * @param scheduler               request budget every attempt takes a permit from
+     * @param maxAttempts             attempts per request, including the first one
+     * @param baseBackoffMillis       backoff cap before the first retry
+     * @param maxBackoffMillis        backoff cap for any retry
+     * @param attemptTimeoutMillis    deadline of a single attempt
+     * @param defaultHedgeDelayMillis hedge delay before enough latencies are known, 0 disables hedging
+     */
+    public ResiliencePolicy(String name, RequestScheduler scheduler, int maxAttempts, long baseBackoffMillis,
+                            long maxBackoffMillis, long attemptTimeoutMillis, long defaultHedgeDelayMillis) {
+        this.name = name;
+        this.scheduler = scheduler;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.attemptTimeoutMillis = attemptTimeoutMillis;
+        this.defaultHedgeDelayMillis = defaultHedgeDelayMillis;
+        this.executor = defaultHedgeDelayMillis > 0 ? IoExecutors.newExecutor(name + "-hedge", 8) : null;
+    }
+
+    /**
+     * Run a request in the calling thread's lane
+     *
+     * @return the result of the first successful attempt
+     * @throws IOException the failure of the last attempt
+     */
+    public <T> T execute(Attempt<T> attempt) throws IOException {
+        return execute(attempt, 0);
+    }
+
+    /**
+     * Run a request in the calling thread's lane, giving up once a deadline has passed.
+     * Each attempt is cut off at whatever is left of the deadline, and no retry starts after it.
+     *
+     * @param timeoutMillis deadline of the whole request, including retries (0 for none)
+     * @return the result of the first successful attempt
+     * @throws IOException the failure of the last attempt, or a SocketTimeoutException past the deadline
+     */
+    public <T> T execute(Attempt<T> attempt, long timeoutMillis) throws IOException {
+        RequestScheduler.Lane lane = RequestScheduler.currentLane();
+        boolean hedged = executor != null && lane == RequestScheduler.Lane.INTERACTIVE;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        IOException failure = null;
+        for (int i = 0; i < maxAttempts; i++) {
+            if (i > 0) {
+                long backoff = backoffMillis(i);
+                if (timeoutMillis > 0 && remainingMillis(deadline) <= backoff) {
+                    break;
+                }
+                retries.increment();
+                log.info("[{}] retry {} in {}ms after: {}", name, i, backoff, failure.getMessage());
+                sleep(backoff);
+            }
+            long budget = timeoutMillis > 0 ? Math.min(attemptTimeoutMillis, remainingMillis(deadline)) : attemptTimeoutMillis;
+            if (budget <= 0) {
+                break;
+            }
+            try {
+                return hedged
+                        ? callHedged(attempt, lane, budget)
+                        : callOnce(attempt, lane, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget));
+            } catch (HttpStatusException e) {
+                if (e.isClientError()) {
+                    throw e;
+                }
+                failure = e;
+            } catch (IOException e) {
+                if (Thread
+                        .currentThread()
+                        .isInterrupted()) {
+                    throw e;
+                }
+                failure = e;
+            }
+        }
+        if (failure == null) {
+            throw new SocketTimeoutException("Deadline of " + timeoutMillis + "ms exceeded");
+        }
+        throw failure;
+    }
+
+    /**
+     * Get the backoff before a retry: a random delay up to base * 2^(retry - 1), capped (full jitter)
+     *
+     * @param retry retry number, starting at 1
+     */
+    public long backoffMillis(int retry) {
+        long cap = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(retry - 1, 20));
+        return cap <= 0 ? 0 : ThreadLocalRandom
+                .current()
+                .nextLong(cap + 1);
+    }
+
+    /**
+     * Get the delay after which an interactive attempt is hedged (ms)
+     */
+    public long getHedgeDelayMillis() {
+        long[] samples;
+        synchronized (latencies) {
+            if (latencyCount < MIN_LATENCY_SAMPLES) {
+                return defaultHedgeDelayMillis;
+            }
+            samples = Arrays.copyOf(latencies, latencyCount);
+        }
+        Arrays.sort(samples);
+        return Math.max(MIN_HEDGE_DELAY_MILLIS, samples[(int) Math.ceil(samples.length * 0.95) - 1]);
+    }
+
+    /**
+     * Get attempt, retry and hedge counters
+     */
+    public Stats getStats() {
+        return new Stats(attempts.sum(), retries.sum(), hedges.sum(), hedgeWins.sum(), getHedgeDelayMillis());
+    }
+
+    /**
+     * Run an attempt once a permit is granted, the wait for the permit counting against the attempt's deadline
+     */
+    private <T> T callOnce(Attempt<T> attempt, RequestScheduler.Lane lane, long deadlineNanos) throws IOException {
+        try {
+            scheduler.acquire(lane, deadlineNanos);
+        } catch (InterruptedException e) {
+            Thread
+                    .currentThread()
+                    .interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a request permit");
+        }
+        attempts.increment();
+        long start = System.nanoTime();
+        T result = attempt.call(Math.max(1, remainingMillis(deadlineNanos)));
+        recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+
+    /**
+     * Run an attempt and, if it is slower than the hedge delay, a duplicate; the first answer wins
+     */
+    private <T> T callHedged(Attempt<T> attempt, RequestScheduler.Lane lane, long budgetMillis) throws IOException {
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        List<Future<T>> futures = new ArrayList<>(2);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        try {
+            futures.add(completion.submit(() -> callOnce(attempt, lane, deadline)));
+            Future<T> done = completion.poll(getHedgeDelayMillis(), TimeUnit.MILLISECONDS);
+            if (done == null) {
+                hedges.increment();
+                futures.add(completion.submit(() -> callOnce(attempt, lane, deadline)));
+            }
+
+            IOException failure = null;
+            for (int pending = futures.size(); pending > 0; pending--) {
+                if (done == null) {
+                    done = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (done == null) {
+                        throw new SocketTimeoutException("No response within " + budgetMillis + "ms");
+                    }
+                }
+                try {
+                    T result = done.get();
+                    if (done != futures.get(0)) {
+                        hedgeWins.increment();
+                    }
+                    return result;
+                } catch (ExecutionException e) {
+                    failure = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause()
+                            : new IOException(e.getCause());
+                    if (failure instanceof HttpStatusException && ((HttpStatusException) failure).isClientError()) {
+                        throw failure;
+                    }
+                }
+                done = null;
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread
+                    .currentThread()
+                    .interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a response");
+        } finally {
+            // The losing attempt is bounded by its own deadline
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Record the latency of a successful attempt
+     */
+    private void recordLatency(long millis) {
+        synchronized (latencies) {
+            latencies[nextLatency] = millis;
+            nextLatency = (nextLatency + 1) % LATENCY_WINDOW;
+            latencyCount = Math.min(latencyCount + 1, LATENCY_WINDOW);
+        }
+    }
+
+    private static long remainingMillis(long deadlineNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread
+                    .currentThread()
+                    .interrupt();
+            throw new InterruptedIOException("Interrupted during retry backoff");
+        }
+    }
+
+    /**
+     * Policy counters
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+        // Attempts sent, including retries and hedges
+        private final long attempts;
+        private final long retries;
+        // Hedged duplicates sent
+        private final long hedges;
+        // Requests answered by the hedge rather than the original attempt
+        private final long hedgeWins;
+        // Current hedge delay (ms)
+        private final long hedgeDelayMillis;
+    }
+}
@@ -0,0 +1,81 @@
+package utils;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Fixed-capacity list that keeps the most recent elements
+ * Adding to a full buffer overwrites the oldest element. Indexes run from the oldest to the
+ * newest element, and get and forEach read the backing array without allocating. Not thread-safe.
+ */
+public class RingBuffer<T> extends AbstractList<T> {
+    private final Object[] elements;
+    // Index of the oldest element
+    private int head;
+    private int size;
+
+    /**
+     * Constructor
+     *
+     * @param capacity maximum number of elements kept
+     */
+    public RingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.elements = new Object[capacity];
+    }
+
+    /**
+     * Add an element, dropping the oldest one if the buffer is full
+     */
+    @Override
+    public boolean add(T element) {
+        if (size < elements.length) {
+            elements[(head + size) % elements.length] = element;
+            size++;
+        } else {
+            elements[head] = element;
+            head = (head + 1) % elements.length;
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        Objects.checkIndex(index, size);
+        return (T) elements[(head + index) % elements.length];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the maximum number of elements kept
+     */
+    public int capacity() {
+        return elements.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept((T) elements[(head + i) % elements.length]);
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(elements, null);
+        head = 0;
+        size = 0;
+        modCount++;
+    }
+}
@@ -0,0 +1,300 @@
+package utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tiered read-through cache keyed by int
+ * L1 is on-heap: pinned entries that are never evicted plus a bounded LRU.
+ * Lower tiers (e.g. a disk store, then a remote API) are probed in order on an L1 miss;
+ * a hit is promoted into L1 and every local tier above it. Entries evicted from the LRU are
+ * demoted to the next tier unless it already holds them.
+ *
+ * @param <V> value type
+ */
+public class TieredCache<V> {
+    private static final String L1_NAME = "L1";
+
+    private final String name;
+    private final int capacity;
+    private final List<CacheTier<V>> tiers;
+
+    // Entries that must stay on heap (e.g. the movie catalog)
+    private final Map<Integer, V> pinned = new ConcurrentHashMap<>();
+    // Bounded LRU in access order, guarded by itself
+    private final LinkedHashMap<Integer, V> lru = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Metrics, index 0 is L1 and index i is tiers[i - 1]
+    private final TierMetrics[] metrics;
+
+    /**
+     * Constructor
+     *
+     * @param name     cache name
+     * @param capacity maximum number of unpinned L1 entries
+     * @param tiers    lower tiers, fastest first
+     */
+    @SafeVarargs
+    public TieredCache(String name, int capacity, CacheTier<V>... tiers) {
+        this.name = name;
+        this.capacity = capacity;
+        this.tiers = List.of(tiers);
+        this.metrics = new TierMetrics[tiers.length + 1];
+        this.metrics[0] = new TierMetrics(L1_NAME);
+        for (int i = 0; i < tiers.length; i++) {
+            this.metrics[i + 1] = new TierMetrics(tiers[i].getName());
+        }
+    }
+
+    /**
+     * Read through all tiers
+     *
+     * @return the value, or null if no tier has it
+     */
+    public V get(int key) {
+        return get(key, false);
+    }
+
+    /**
+     * Read through L1 and the local tiers only, never calling a remote tier
+     *
+     * @return the value, or null if no local tier has it
+     */
+    public V getLocal(int key) {
+        return get(key, true);
+    }
+
+    /**
+     * Look up L1 only, without touching the metrics
+     */
+    public V peek(int key) {
+        V value = pinned.get(key);
+        if (value != null) {
+            return value;
+        }
+        synchronized (lru) {
+            return lru.get(key);
+        }
+    }
+
+    /**
+     * Put a value into L1, where it may later be evicted and demoted to a lower tier
+     */
+    public void put(int key, V value) {
+        if (pinned.containsKey(key)) {
+            pinned.put(key, value);
+            return;
+        }
+        List<Map.Entry<Integer, V>> evicted = null;
+        synchronized (lru) {
+            lru.put(key, value);
+            if (lru.size() > capacity) {
+                evicted = new ArrayList<>();
+                Iterator<Map.Entry<Integer, V>> iterator = lru
+                        .entrySet()
+                        .iterator();
+                while (lru.size() > capacity && iterator.hasNext()) {
+                    evicted.add(iterator.next());
+                    iterator.remove();
+                }
+            }
+        }
+        if (evicted != null) {
+            for (Map.Entry<Integer, V> entry : evicted) {
+                demote(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Put a value into L1 permanently
+     */
+    public void pin(int key, V value) {
+        pinned.put(key, value);
+        synchronized (lru) {
+            lru.remove(key);
+        }
+    }
+
+    /**
+     * Put a value into L1 and write it through to every local tier
+     */
+    public void putThrough(int key, V value) {
+        put(key, value);
+        for (CacheTier<V> tier : tiers) {
+            if (tier.isLocal()) {
+                tier.put(key, value);
+            }
+        }
+    }
+
+    /**
+     * Check whether L1 holds a key
+     */
+    public boolean containsInMemory(int key) {
+        if (pinned.containsKey(key)) {
+            return true;
+        }
+        synchronized (lru) {
+            return lru.containsKey(key);
+        }
+    }
+
+    /**
+     * Get the number of L1 entries
+     */
+    public int memorySize() {
+        synchronized (lru) {
+            return pinned.size() + lru.size();
+        }
+    }
+
+    /**
+     * Drop all L1 entries, lower tiers are untouched
+     */
+    public void clear() {
+        pinned.clear();
+        synchronized (lru) {
+            lru.clear();
+        }
+    }
+
+    /**
+     * Get hit and latency metrics per tier, L1 first
+     */
+    public List<TierStats> getStats() {
+        List<TierStats> stats = new ArrayList<>(metrics.length);
+        for (TierMetrics tier : metrics) {
+            stats.add(tier.snapshot());
+        }
+        return Collections.unmodifiableList(stats);
+    }
+
+    @Override
+    public String toString() {
+        return name + getStats();
+    }
+
+    private V get(int key, boolean localOnly) {
+        long start = System.nanoTime();
+        V value = peek(key);
+        metrics[0].record(value != null, System.nanoTime() - start);
+        if (value != null) {
+            return value;
+        }
+
+        for (int i = 0; i < tiers.size(); i++) {
+            CacheTier<V> tier = tiers.get(i);
+            if (localOnly && !tier.isLocal()) {
+                break;
+            }
+            start = System.nanoTime();
+            value = tier.get(key);
+            metrics[i + 1].record(value != null, System.nanoTime() - start);
+            if (value != null) {
+                promote(key, value, i);
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copy a value found in tier index into L1 and the local tiers above it
+     */
+    private void promote(int key, V value, int index) {
+        for (int i = 0; i < index; i++) {
+            CacheTier<V> tier = tiers.get(i);
+            if (tier.isLocal()) {
+                tier.put(key, value);
+            }
+        }
+        put(key, value);
+    }
+
+    /**
+     * Move an evicted L1 value to the next tier, unless it already holds it
+     */
+    private void demote(int key, V value) {
+        if (tiers.isEmpty()) {
+            return;
+        }
+        CacheTier<V> next = tiers.get(0);
+        if (next.isLocal() && !next.contains(key)) {
+            next.put(key, value);
+        }
+    }
+
+    /**
+     * Hit and latency counters of one tier
+     */
+    private static class TierMetrics {
+        private final String name;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        private TierMetrics(String name) {
+            this.name = name;
+        }
+
+        private void record(boolean hit, long nanos) {
+            if (hit) {
+                hits.increment();
+            } else {
+                misses.increment();
+            }
+            totalNanos.add(nanos);
+        }
+
+        private TierStats snapshot() {
+            return new TierStats(name, hits.sum(), misses.sum(), totalNanos.sum());
+        }
+    }
+
+    /**
+     * Metrics snapshot of one tier
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class TierStats {
+        // Tier name
+        private final String name;
+        // Lookups answered by this tier
+        private final long hits;
+        // Lookups passed on to the next tier
+        private final long misses;
+        // Total lookup time (ns)
+        private final long totalNanos;
+
+        /**
+         * Get the hit ratio of the lookups that reached this tier
+         */
+        public double getHitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        /**
+         * Get the average lookup latency (µs)
+         */
+        public double getAverageMicros() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : totalNanos / 1000.0 / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{hits=%d, misses=%d, avg=%.1fµs}", name, hits, misses, getAverageMicros());
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package view;
+
+import lombok.extern.slf4j.Slf4j;
+import model.tmdb.Movie;
+import service.movie.SearchSlot;
+import utils.HashedWheelTimer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Autocomplete pipeline for a text box
+ * Keystrokes are debounced on the shared wheel timer, the search runs on a worker thread, and
+ * only the results of the latest input are handed to the UI thread. Each keystroke starts a new
+ * generation; work and results of older generations are dropped.
+ */
+@Slf4j
+public class AutocompletePipeline implements AutoCloseable {
+    /**
+     * Deadline-bound movie search, see MovieDataService#searchMoviesByPrefix(String, long, Consumer, SearchSlot)
+     */
+    @FunctionalInterface
+    public interface Search {
+        List<Movie> search(String prefix, long deadlineMillis, Consumer<List<Movie>> lateResults, SearchSlot slot);
+    }
+
+    private final Search search;
+    // Quiet time after a keystroke before searching (ms)
+    private final long debounceMillis;
+    // How long the worker waits for a search before showing what it has (ms)
+    private final long deadlineMillis;
+    // Runs tasks on the UI thread
+    private final Executor uiExecutor;
+    // Shows suggestions, always called on the UI thread
+    private final Consumer<List<Movie>> renderer;
+    private final HashedWheelTimer timer = HashedWheelTimer.getInstance();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "autocomplete");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Generation of the latest input
+    private final AtomicLong generation = new AtomicLong();
+    // Time of the latest keystroke (ns)
+    private volatile long keystrokeNanos;
+    // Debounce of the latest input, and the search it started
+    private HashedWheelTimer.Timeout pending;
+    private Future<?> running;
+    // Remote search of the latest input, possibly still running after its deadline
+    private final SearchSlot remoteSearch = new SearchSlot();
+    // Suggestions shown for the current generation, only touched on the UI thread
+    private List<Movie> shown = Collections.emptyList();
+    private long shownGeneration = -1;
+
+    // Keystroke-to-render latency
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param search         movie search
+     * @param debounceMillis quiet time after a keystroke before searching
+     * @param deadlineMillis how long a search may take before its local results are shown
+     * @param uiExecutor     runs tasks on the UI thread
+     * @param renderer       shows suggestions, called on the UI thread
+     */
+    public AutocompletePipeline(Search search, long debounceMillis, long deadlineMillis, Executor uiExecutor,
+                                Consumer<List<Movie>> renderer) {
+        this.search = search;
+        this.debounceMillis = debounceMillis;
+        this.deadlineMillis = deadlineMillis;
+        this.uiExecutor = uiExecutor;
+        this.renderer = renderer;
+    }
+
+    /**
+     * Handle new input text; called on the UI thread for every keystroke
+     */
+    public synchronized void onTextChanged(String text) {
+        long current = generation.incrementAndGet();
+        keystrokeNanos = System.nanoTime();
+        cancelPending();
+        String query = text == null ? "" : text.trim();
+        if (query.isEmpty()) {
+            post(current, Collections.emptyList());
+            return;
+        }
+        try {
+            pending = timer.schedule(() -> startSearch(current, query), debounceMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Autocomplete timer closed, ignoring input");
+        }
+    }
+
+    /**
+     * Get the number of suggestion lists rendered
+     */
+    public long getRenderCount() {
+        return renders.sum();
+    }
+
+    /**
+     * Get the average time from the last keystroke to rendering its suggestions (ms)
+     */
+    public double getAverageLatencyMillis() {
+        long count = renders.sum();
+        return count == 0 ? 0 : totalLatencyNanos.sum() / 1e6 / count;
+    }
+
+    /**
+     * Get the longest time from the last keystroke to rendering its suggestions (ms)
+     */
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+    }
+
+    /**
+     * Stop the worker; pending searches are dropped
+     */
+    @Override
+    public void close() {
+        generation.incrementAndGet();
+        synchronized (this) {
+            cancelPending();
+        }
+        worker.shutdownNow();
+        log.debug("Autocomplete: {} renders, average {} ms, max {} ms from keystroke to render",
+                  getRenderCount(), String.format("%.1f", getAverageLatencyMillis()), getMaxLatencyMillis());
+    }
+
+    private void cancelPending() {
+        if (pending != null) {
+            pending.cancel();
+            pending = null;
+        }
+        if (running != null) {
+            // Interrupts a superseded search still waiting for its deadline
+            running.cancel(true);
+            running = null;
+        }
+        // The worker only waits on the remote search, which has to be cancelled on its own
+        remoteSearch.cancel();
+    }
+
+    /**
+     * Hand a debounced search to the worker; called on the timer thread
+     */
+    private synchronized void startSearch(long searchGeneration, String query) {
+        if (generation.get() != searchGeneration) {
+            return;
+        }
+        try {
+            running = worker.submit(() -> runSearch(searchGeneration, query));
+        } catch (RejectedExecutionException e) {
+            log.debug("Autocomplete closed, dropping search");
+        }
+    }
+
+    private void runSearch(long searchGeneration, String query) {
+        if (generation.get() != searchGeneration) {
+            return;
+        }
+        List<Movie> results = search.search(query, deadlineMillis, late -> post(searchGeneration, late), remoteSearch);
+        post(searchGeneration, results);
+    }
+
+    /**
+     * Hand results to the UI thread, merging them with what is already shown for the same input
+     */
+    private void post(long resultGeneration, List<Movie> results) {
+        if (generation.get() != resultGeneration) {
+            return;
+        }
+        try {
+            uiExecutor.execute(() -> render(resultGeneration, results));
+        } catch (RuntimeException e) {
+            log.debug("UI thread gone, dropping suggestions", e);
+        }
+    }
+
+    private void render(long resultGeneration, List<Movie> results) {
+        if (generation.get() != resultGeneration) {
+            return;
+        }
+        if (shownGeneration == resultGeneration) {
+            // Late remote results are added to the suggestions already shown
+            Map<Integer, Movie> merged = new LinkedHashMap<>();
+            shown.forEach(movie -> merged.put(movie.getId(), movie));
+            results.forEach(movie -> merged.putIfAbsent(movie.getId(), movie));
+            shown = new ArrayList<>(merged.values());
+        } else {
+            shown = results;
+            shownGeneration = resultGeneration;
+        }
+        renderer.accept(shown);
+
+        long latency = System.nanoTime() - keystrokeNanos;
+        renders.increment();
+        totalLatencyNanos.add(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        log.debug("Autocomplete rendered {} suggestions {} ms after the keystroke", shown.size(),
+                  TimeUnit.NANOSECONDS.toMillis(latency));
+    }
+}
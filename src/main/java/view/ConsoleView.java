@@ -14,6 +14,7 @@ import model.tmdb.Movie;
 import model.tmdb.MovieCredits;
 import service.movie.MovieDataService;
 import service.movie.MovieGenreService;
+import utils.HashedWheelTimer;
 import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.gui2.*;
 import com.googlecode.lanterna.screen.Screen;
@@ -22,10 +23,20 @@ import java.io.IOException;
 
 
 public class ConsoleView {
+    // Quiet time after a keystroke before searching
+    private static final long AUTOCOMPLETE_DEBOUNCE_MS = 80;
+    // Longest a search may take before suggestions are shown, slower remote matches are added when they arrive
+    private static final long AUTOCOMPLETE_DEADLINE_MS = 50;
+
     private final MultiWindowTextGUI gui;
-    private ScheduledExecutorService scheduler;
+    // Next countdown tick on the shared timer
+    private HashedWheelTimer.Timeout countdown;
     private volatile boolean timerRunning;
-    private volatile int secondsRemaining = 30;
+    private volatile int secondsRemaining;
+    // Window of the turn being played, closed early when the turn ends
+    private volatile BasicWindow turnWindow;
+    // Set once the game has ended outside a move, so no further turn is shown
+    private volatile boolean turnsEnded;
 
     public ConsoleView() throws IOException {
         Screen screen = new DefaultTerminalFactory().createScreen();
@@ -138,35 +149,69 @@ public class ConsoleView {
         gui.addWindowAndWait(window);
     }
 
-    public void startCountdownTimer(int seconds, Runnable onTimeout, Label timerLabel) {
-        secondsRemaining = seconds;
+    /**
+     * Count the time left down on a label
+     * Only a display: the game engine owns the turn deadline and ends the turn through endTurn.
+     */
+    public synchronized void startCountdownTimer(long millis, Label timerLabel) {
+        stopCountdownTimer();
+        secondsRemaining = (int) TimeUnit.MILLISECONDS.toSeconds(millis + 999);
         timerRunning = true;
+        scheduleCountdownTick(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis), timerLabel);
+    }
 
-        scheduler = Executors.newSingleThreadScheduledExecutor();
+    /**
+     * Schedule the next label update when the time left drops to a whole second
+     * Ticks are measured from the deadline, so the countdown does not drift.
+     */
+    private synchronized void scheduleCountdownTick(long deadlineNanos, Label timerLabel) {
+        if (!timerRunning) {
+            return;
+        }
+        long second = TimeUnit.SECONDS.toNanos(1);
+        long remainingNanos = Math.max(0, deadlineNanos - System.nanoTime());
+        long delayNanos = remainingNanos % second;
+        if (delayNanos == 0 && remainingNanos > 0) {
+            delayNanos = second;
+        }
+        countdown = HashedWheelTimer
+                .getInstance()
+                .schedule(() -> {
+                    if (!timerRunning) {
+                        return;
+                    }
+                    secondsRemaining = (int) Math.round((double) (deadlineNanos - System.nanoTime()) / second);
+                    if (secondsRemaining > 0) {
+                        timerLabel.setText("Time left: " + secondsRemaining + "s");
+                        scheduleCountdownTick(deadlineNanos, timerLabel);
+                    } else {
+                        secondsRemaining = 0;
+                        timerRunning = false;
+                        timerLabel.setText("Time left: 0s");
+                    }
+                }, delayNanos, TimeUnit.NANOSECONDS, task -> gui
+                        .getGUIThread()
+                        .invokeLater(task));
+    }
 
-        scheduler.scheduleAtFixedRate(() -> {
-            if (timerRunning && secondsRemaining > 0) {
-                secondsRemaining--;
-                timerLabel.setText("Time left: " + secondsRemaining + "s");
-            } else if (secondsRemaining == 0) {
-                timerRunning = false;
-                scheduler.shutdownNow();
-                onTimeout.run(); // Timeout action
-            }
-        }, 1, 1, TimeUnit.SECONDS);
+    private synchronized void stopCountdownTimer() {
+        timerRunning = false;
+        if (countdown != null) {
+            countdown.cancel();
+            countdown = null;
+        }
     }
     
-    public String showGameTurn(
+    public MovieSuggestion showGameTurn(
             
             int round,
             String playerName,
             List<HistoryRecord> history,
             Movie movie,
             WinCondition condition,
+            int qualifyingMovies,
             MovieDataService movieDataService,
-            Runnable onTimeout,
-            Label timerLabel,
-            boolean startTimer
+            long turnMillisRemaining
     ) {
         BasicWindow window = new BasicWindow("Movie Game Turn");
         Panel panel = new Panel(new LinearLayout(Direction.VERTICAL));
@@ -230,55 +275,54 @@ public class ConsoleView {
             panel.addComponent(new Label("(Credits not available)"));
         }
 
-        panel.addComponent(new Label("Progress: " + condition.getConditionValue()+ ": " +condition.getCurrentCount() + " / " + condition.getTargetCount()));
+        panel.addComponent(new Label("Progress: " + condition.getConditionValue()+ ": " +condition.getCurrentCount() + " / " + condition.getTargetCount()
+                                             + " (" + qualifyingMovies + " known movies left)"));
         panel.addComponent(new Label("Enter the next movie prefix:"));
 
         TextBox inputBox = new TextBox().setPreferredSize(new TerminalSize(40, 1));
         panel.addComponent(inputBox);
 
-        Label usedTimerLabel = timerLabel != null ? timerLabel : new Label("Time left: " + secondsRemaining + "s");
-        panel.addComponent(usedTimerLabel);
+        Label timerLabel = new Label(turnMillisRemaining < 0
+                                             ? "No time limit"
+                                             : "Time left: " + TimeUnit.MILLISECONDS.toSeconds(turnMillisRemaining + 999) + "s");
+        panel.addComponent(timerLabel);
 
         panel.addComponent(new Label("Suggestions:"));
-        ComboBox<String> movieComboBox = new ComboBox<>();
+        ComboBox<MovieSuggestion> movieComboBox = new ComboBox<>();
         movieComboBox.setPreferredSize(new TerminalSize(40, 1));
         panel.addComponent(movieComboBox);
 
         Button submitButton = new Button("Submit", window::close);
         panel.addComponent(submitButton);
 
-        inputBox.setTextChangeListener((newText, changedByUserInteraction) -> {
-            movieComboBox.clearItems();
-            if (!newText.trim().isEmpty()) {
-                List<Movie> suggestions = movieDataService.searchMoviesByPrefix(newText.trim());
-                for (Movie m : suggestions) {
-                    movieComboBox.addItem(m.getTitle());
-                }
-            }
-            try {
-                gui.updateScreen();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        });
+        AutocompletePipeline autocomplete = new AutocompletePipeline(movieDataService::searchMoviesByPrefix,
+                AUTOCOMPLETE_DEBOUNCE_MS, AUTOCOMPLETE_DEADLINE_MS,
+                task -> gui.getGUIThread().invokeLater(task),
+                suggestions -> {
+                    movieComboBox.clearItems();
+                    for (Movie m : suggestions) {
+                        movieComboBox.addItem(MovieSuggestion.of(m));
+                    }
+                });
+        inputBox.setTextChangeListener((newText, changedByUserInteraction) -> autocomplete.onTextChanged(newText));
         
-        if (startTimer) {
-            startCountdownTimer(secondsRemaining, () -> {
-                window.close();
-                onTimeout.run();
-            }, usedTimerLabel);
+        if (turnMillisRemaining >= 0) {
+            startCountdownTimer(turnMillisRemaining, timerLabel);
         }
 
         window.setComponent(panel);
-        gui.addWindowAndWait(window);
+        // Published before checking turnsEnded, so endTurn either sees the window or is seen here
+        turnWindow = window;
+        if (!turnsEnded) {
+            gui.addWindowAndWait(window);
+        }
+        turnWindow = null;
+        autocomplete.close();
 
-        timerRunning = false;
-        if (scheduler != null) scheduler.shutdownNow();
+        stopCountdownTimer();
            
        
-        String selectedTitle = movieComboBox.getSelectedItem();
-            
-        return selectedTitle != null ? selectedTitle.trim() : "";
+        return movieComboBox.getSelectedItem();
     }
 
     private void addCrew(Panel panel, String label, List<CrewMember> crewList, String... jobs) {
@@ -310,7 +354,23 @@ public class ConsoleView {
         }).start();
     }
     
-    public void resettime() {
-        this.secondsRemaining = 30;
+    /**
+     * Close the window of the turn being played and show no further turns, e.g. when the deadline has
+     * passed; callable from any thread
+     */
+    public void endTurn() {
+        turnsEnded = true;
+        try {
+            gui
+                    .getGUIThread()
+                    .invokeLater(() -> {
+                        BasicWindow window = turnWindow;
+                        if (window != null) {
+                            window.close();
+                        }
+                    });
+        } catch (IllegalStateException e) {
+            // The GUI has already stopped
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package view;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import model.tmdb.Movie;
+
+/**
+ * Autocomplete entry
+ * Carries the movie ID so a submitted suggestion resolves to exactly the movie shown,
+ * even when several movies share a title
+ */
+@Getter
+@AllArgsConstructor
+public class MovieSuggestion {
+    private final int movieId;
+    private final String title;
+    // Release year, or null if unknown
+    private final String year;
+
+    /**
+     * Create the suggestion for a movie
+     */
+    public static MovieSuggestion of(Movie movie) {
+        String releaseDate = movie.getReleaseDate();
+        String year = releaseDate != null && releaseDate.length() >= 4 ? releaseDate.substring(0, 4) : null;
+        return new MovieSuggestion(movie.getId(), movie.getTitle(), year);
+    }
+
+    /**
+     * Text shown in the combo box
+     */
+    @Override
+    public String toString() {
+        return year != null ? title + " (" + year + ")" : title;
+    }
+}
@@ -0,0 +1,275 @@
+package server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import model.game.WinCondition;
+import model.tmdb.CastMember;
+import model.tmdb.Movie;
+import model.tmdb.MovieCredits;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import service.game.GameEngine;
+import service.movie.MovieDataServiceImpl;
+import service.movie.MovieIndexService;
+import service.tmdbApi.TMDBMovieCacheService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Game server test class, including a load test against localhost
+ */
+@Slf4j
+public class GameServerLoadTest {
+    private static final int FIRST_ID = 930000;
+    private static final int SESSIONS = 500;
+    // Requests in flight at once during the load test
+    private static final int CONCURRENCY = 32;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private GameEngine engine;
+    private GameServer server;
+    private HttpClient client;
+    private Movie movieA, movieB;
+
+    @Before
+    public void setUp() throws Exception {
+        java.lang.reflect.Field instance = MovieIndexService.class.getDeclaredField("instance");
+        instance.setAccessible(true);
+        instance.set(null, null);
+        instance = MovieDataServiceImpl.class.getDeclaredField("instance");
+        instance.setAccessible(true);
+        instance.set(null, null);
+        TMDBMovieCacheService.setCache("test_cache");
+        TMDBMovieCacheService.setTestMode(true);
+        MovieDataServiceImpl.setTestMode(true);
+
+        movieA = movie(FIRST_ID, "Served Alpha");
+        movieB = movie(FIRST_ID + 1, "Served Beta");
+        MovieIndexService indexService = MovieIndexService.getInstance();
+        indexService.initializeIndexes(List.of(movieA, movieB));
+        indexService.indexMovieCredits(movieA.getId(), credits(movieA.getId(), "Actor 1"));
+        indexService.indexMovieCredits(movieB.getId(), credits(movieB.getId(), "Actor 1"));
+
+        engine = new GameEngine(MovieDataServiceImpl.getInstance());
+        server = new GameServer(engine, MovieDataServiceImpl.getInstance(), 0);
+        server.start();
+        client = HttpClient
+                .newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void testMovesStateAndAutocomplete() throws Exception {
+        String id = newSession(new WinCondition("actor", "Nobody", 1));
+
+        HttpResponse<String> state = send("GET", "/sessions/" + id, null);
+        assertEquals(200, state.statusCode());
+        assertEquals("P1", json(state).get("currentPlayer").asText());
+
+        HttpResponse<String> move = send("POST", "/sessions/" + id + "/moves", "{\"movieId\":" + movieB.getId() + "}");
+        assertEquals(200, move.statusCode());
+        assertEquals("ACCEPTED", json(move).get("status").asText());
+        assertEquals("Actor 1", json(move).get("connection").get("name").asText());
+
+        move = send("POST", "/sessions/" + id + "/moves", "{\"movieId\":" + movieA.getId() + "}");
+        assertEquals(422, move.statusCode());
+        assertEquals("MOVIE_ALREADY_USED", json(move).get("status").asText());
+
+        state = send("GET", "/sessions/" + id, null);
+        assertEquals("P2", json(state).get("currentPlayer").asText());
+        assertEquals(2, json(state).get("history").size());
+
+        assertEquals(400, send("POST", "/sessions/" + id + "/moves", "{}").statusCode());
+        assertEquals(404, send("GET", "/sessions/no-such-session", null).statusCode());
+
+        HttpResponse<String> suggestions = send("GET", "/autocomplete?q=Served%20Al", null);
+        assertEquals(200, suggestions.statusCode());
+        assertEquals(movieA.getId(), json(suggestions).get(0).get("movieId").asInt());
+
+        assertEquals(200, send("DELETE", "/sessions/" + id, null).statusCode());
+        assertEquals(404, send("GET", "/sessions/" + id, null).statusCode());
+    }
+
+    @Test
+    public void testEventStreamEndsWithTheWinningMove() throws Exception {
+        String id = newSession(new WinCondition("actor", "Actor 1", 1));
+        CompletableFuture<HttpResponse<Stream<String>>> stream = client.sendAsync(
+                request("GET", "/sessions/" + id + "/events", null), HttpResponse.BodyHandlers.ofLines());
+        // Wait for the subscription before playing
+        List<String> lines = new ArrayList<>();
+        Iterator<String> iterator = stream
+                .get(5, TimeUnit.SECONDS)
+                .body()
+                .iterator();
+        while (!lines.contains("event: state")) {
+            lines.add(iterator.next());
+        }
+
+        send("POST", "/sessions/" + id + "/moves", "{\"movieId\":" + movieB.getId() + "}");
+        iterator.forEachRemaining(lines::add);
+
+        List<String> events = lines
+                .stream()
+                .filter(line -> line.startsWith("event: "))
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("event: state", "event: move"), events);
+        assertTrue(lines
+                           .stream()
+                           .anyMatch(line -> line.contains("\"status\":\"WON\"")));
+    }
+
+    @Test
+    public void testEventStreamOfAnEndedGameClosesAtOnce() throws Exception {
+        String id = newSession(new WinCondition("actor", "Actor 1", 1));
+        send("POST", "/sessions/" + id + "/moves", "{\"movieId\":" + movieB.getId() + "}");
+
+        HttpResponse<String> late = client
+                .sendAsync(request("GET", "/sessions/" + id + "/events", null), HttpResponse.BodyHandlers.ofString())
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(200, late.statusCode());
+        assertTrue(late
+                           .body()
+                           .startsWith("event: state"));
+        assertTrue(late
+                           .body()
+                           .contains("\"winner\":\"P1\""));
+
+        assertEquals(404, send("GET", "/sessions/no-such-session/events", null).statusCode());
+        assertTrue("No stream is left registered", openStreams().isEmpty());
+    }
+
+    @Test
+    public void testRemovingASessionEndsItsEventStreams() throws Exception {
+        String id = newSession(new WinCondition("actor", "Nobody", 1));
+        CompletableFuture<HttpResponse<String>> stream = client.sendAsync(
+                request("GET", "/sessions/" + id + "/events", null), HttpResponse.BodyHandlers.ofString());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (openStreams().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertFalse(openStreams().isEmpty());
+
+        assertEquals(200, send("DELETE", "/sessions/" + id, null).statusCode());
+        assertTrue(stream
+                           .get(5, TimeUnit.SECONDS)
+                           .body()
+                           .startsWith("event: state"));
+        assertTrue(openStreams().isEmpty());
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            ids.add(newSession(new WinCondition("actor", "Nobody", 1)));
+        }
+
+        // Each session: read the state, play a move, read the state again
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        List<CompletableFuture<Long>> latencies = new ArrayList<>();
+        long start = System.nanoTime();
+        for (String id : ids) {
+            for (HttpRequest request : List.of(request("GET", "/sessions/" + id, null),
+                                               request("POST", "/sessions/" + id + "/moves",
+                                                       "{\"movieId\":" + movieB.getId() + "}"),
+                                               request("GET", "/sessions/" + id, null))) {
+                inFlight.acquire();
+                long sent = System.nanoTime();
+                latencies.add(client
+                                      .sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                                      .whenComplete((response, error) -> inFlight.release())
+                                      .thenApply(response -> {
+                                          assertEquals(200, response.statusCode());
+                                          return System.nanoTime() - sent;
+                                      }));
+            }
+        }
+        long[] sorted = new long[latencies.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = latencies
+                    .get(i)
+                    .get(30, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(sorted);
+        log.info("{} requests in {} ms ({} req/s), latency p50={} ms p99={} ms", sorted.length,
+                 TimeUnit.NANOSECONDS.toMillis(elapsed), sorted.length * 1_000_000_000L / elapsed,
+                 String.format("%.2f", sorted[sorted.length / 2] / 1e6),
+                 String.format("%.2f", sorted[sorted.length * 99 / 100] / 1e6));
+
+        for (String id : ids) {
+            assertEquals("P2", engine.withSession(id, session -> session.getCurrentPlayerName()));
+        }
+    }
+
+    private Map<?, ?> openStreams() throws Exception {
+        java.lang.reflect.Field streams = GameServer.class.getDeclaredField("streams");
+        streams.setAccessible(true);
+        return (Map<?, ?>) streams.get(server);
+    }
+
+    private String newSession(WinCondition player1WinCondition) {
+        return engine
+                .createSession("P1", "P2", movieA, player1WinCondition, new WinCondition("actor", "Nobody", 1))
+                .getSessionId();
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        return client.send(request(method, path, body), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest request(String method, String path, String body) {
+        return HttpRequest
+                .newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+                .method(method, body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static JsonNode json(HttpResponse<String> response) throws Exception {
+        return OBJECT_MAPPER.readTree(response.body());
+    }
+
+    private static Movie movie(int id, String title) {
+        Movie movie = new Movie();
+        movie.setId(id);
+        movie.setTitle(title);
+        movie.setPopularity(10);
+        return movie;
+    }
+
+    private static MovieCredits credits(int movieId, String actorName) {
+        CastMember actor = new CastMember();
+        actor.setId(FIRST_ID + 100);
+        actor.setName(actorName);
+        MovieCredits credits = new MovieCredits();
+        credits.setId(movieId);
+        credits.setCast(List.of(actor));
+        credits.setCrew(List.of());
+        return credits;
+    }
+}
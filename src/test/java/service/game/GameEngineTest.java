@@ -0,0 +1,241 @@
+package service.game;
+
+import lombok.extern.slf4j.Slf4j;
+import model.game.GameSession;
+import model.game.WinCondition;
+import model.tmdb.CastMember;
+import model.tmdb.CrewMember;
+import model.tmdb.Movie;
+import model.tmdb.MovieCredits;
+import org.junit.Before;
+import org.junit.Test;
+import service.movie.MovieDataServiceImpl;
+import service.movie.MovieIndexService;
+import service.tmdbApi.TMDBMovieCacheService;
+import utils.HashedWheelTimer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Game engine test class
+ */
+@Slf4j
+public class GameEngineTest {
+    private static final int FIRST_ID = 920000;
+
+    private GameEngine engine;
+    private Movie movieA, movieB, movieC, movieD;
+
+    @Before
+    public void setUp() throws Exception {
+        java.lang.reflect.Field instance = MovieIndexService.class.getDeclaredField("instance");
+        instance.setAccessible(true);
+        instance.set(null, null);
+        instance = MovieDataServiceImpl.class.getDeclaredField("instance");
+        instance.setAccessible(true);
+        instance.set(null, null);
+        TMDBMovieCacheService.setCache("test_cache");
+        TMDBMovieCacheService.setTestMode(true);
+        MovieDataServiceImpl.setTestMode(true);
+
+        movieA = movie(FIRST_ID, "Engine A");
+        movieB = movie(FIRST_ID + 1, "Engine B");
+        movieC = movie(FIRST_ID + 2, "Engine C");
+        movieD = movie(FIRST_ID + 3, "Engine D");
+        MovieIndexService indexService = MovieIndexService.getInstance();
+        indexService.initializeIndexes(List.of(movieA, movieB, movieC, movieD));
+        // A-B share an actor, B-C a director, C-D the same actor again
+        indexService.indexMovieCredits(movieA.getId(), credits(movieA.getId(), 1, 2, 0));
+        indexService.indexMovieCredits(movieB.getId(), credits(movieB.getId(), 1, 0, 9));
+        indexService.indexMovieCredits(movieC.getId(), credits(movieC.getId(), 3, 4, 9));
+        indexService.indexMovieCredits(movieD.getId(), credits(movieD.getId(), 1, 4, 0));
+
+        engine = new GameEngine(MovieDataServiceImpl.getInstance(), new Random(42));
+    }
+
+    @Test
+    public void testMovesFollowTheRules() {
+        GameSession session = engine.createSession("P1", "P2", movieA,
+                                                   new WinCondition("actor", "Actor 1", 2),
+                                                   new WinCondition("actor", "Actor 8", 1));
+        String id = session.getSessionId();
+
+        assertEquals(TurnResult.Status.UNKNOWN_SESSION, engine
+                .submitMove("no-such-session", movieB.getId())
+                .getStatus());
+        assertEquals(TurnResult.Status.NO_CONNECTION, engine
+                .submitMove(id, movieC.getId())
+                .getStatus());
+
+        TurnResult result = engine.submitMove(id, movieB.getId());
+        assertEquals(TurnResult.Status.ACCEPTED, result.getStatus());
+        assertEquals("P1", result.getPlayerName());
+        assertEquals("Actor 1", result
+                .getConnection()
+                .getConnectionValue());
+        assertEquals("P2", session.getCurrentPlayerName());
+
+        assertEquals(TurnResult.Status.MOVIE_ALREADY_USED, engine
+                .submitMove(id, movieA.getId())
+                .getStatus());
+        assertEquals(TurnResult.Status.ACCEPTED, engine
+                .submitMove(id, movieC.getId())
+                .getStatus());
+
+        result = engine.submitMove(id, movieD.getId());
+        assertEquals(TurnResult.Status.WON, result.getStatus());
+        assertEquals("P1", result.getPlayerName());
+        assertEquals(TurnResult.Status.GAME_OVER, engine
+                .submitMove(id, movieB.getId())
+                .getStatus());
+        assertEquals(4, session
+                .getRecentHistory()
+                .size());
+
+        assertSame(session, engine.removeSession(id));
+        assertNull(engine.getSession(id));
+    }
+
+    @Test
+    public void testConcurrentSessionsAndRacingMoves() throws Exception {
+        int sessionCount = 20000;
+        List<String> ids = new ArrayList<>(sessionCount);
+        for (int i = 0; i < sessionCount; i++) {
+            ids.add(engine
+                            .createSession("P1", "P2", movieA, new WinCondition("actor", "Actor 8", 1),
+                                           new WinCondition("actor", "Actor 8", 1))
+                            .getSessionId());
+        }
+        assertEquals(sessionCount, ids
+                .stream()
+                .distinct()
+                .count());
+
+        // Every session receives the same move twice from different threads
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<TurnResult>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (String id : ids) {
+            results.add(pool.submit(() -> engine.submitMove(id, movieB.getId())));
+            results.add(pool.submit(() -> engine.submitMove(id, movieB.getId())));
+        }
+        int accepted = 0;
+        for (Future<TurnResult> result : results) {
+            if (result
+                    .get()
+                    .isAccepted()) {
+                accepted++;
+            }
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        pool.shutdown();
+        log.info("{} moves over {} sessions in {} ms", results.size(), sessionCount, elapsed);
+
+        assertEquals("Exactly one of each pair of racing moves is played", sessionCount, accepted);
+        for (String id : ids) {
+            assertEquals(2, engine
+                    .withSession(id, session -> session
+                            .getUsedMovies()
+                            .size())
+                    .intValue());
+        }
+    }
+
+    @Test
+    public void testMissedTurnDeadlineEndsTheGame() throws Exception {
+        try (HashedWheelTimer timer = new HashedWheelTimer("test-turns", 10, 64)) {
+            GameEngine timedEngine = new GameEngine(MovieDataServiceImpl.getInstance(), new Random(42), timer, 300);
+            BlockingQueue<GameSession> timedOut = new LinkedBlockingQueue<>();
+            timedEngine.setTurnTimeoutListener(timedOut::add);
+            GameSession session = timedEngine.createSession("P1", "P2", movieA,
+                                                            new WinCondition("actor", "Actor 8", 1),
+                                                            new WinCondition("actor", "Actor 8", 1));
+            String id = session.getSessionId();
+
+            // A played move restarts the clock for the other player
+            Thread.sleep(200);
+            assertEquals(TurnResult.Status.ACCEPTED, timedEngine
+                    .submitMove(id, movieB.getId())
+                    .getStatus());
+            assertNull(timedOut.poll(200, TimeUnit.MILLISECONDS));
+
+            assertSame(session, timedOut.poll(2, TimeUnit.SECONDS));
+            assertTrue(session.isTimedOut());
+            assertEquals("P1", session.getWinnerName());
+            assertEquals(TurnResult.Status.GAME_OVER, timedEngine
+                    .submitMove(id, movieC.getId())
+                    .getStatus());
+        }
+    }
+
+    @Test
+    public void testTurnClockStartsWhenAsked() throws Exception {
+        try (HashedWheelTimer timer = new HashedWheelTimer("test-clock", 10, 64)) {
+            GameEngine timedEngine = new GameEngine(MovieDataServiceImpl.getInstance(), new Random(42), timer, 200);
+            GameSession session = timedEngine.createSession("P1", "P2", movieA,
+                                                            new WinCondition("actor", "Actor 8", 1),
+                                                            new WinCondition("actor", "Actor 8", 1), false);
+            String id = session.getSessionId();
+
+            // No deadline runs while the first turn is not shown yet
+            Thread.sleep(400);
+            assertEquals(-1, timedEngine.getTurnTimeRemaining(id, TimeUnit.MILLISECONDS));
+            assertFalse(session.isGameOver());
+
+            timedEngine.startTurnClock(id);
+            long remaining = timedEngine.getTurnTimeRemaining(id, TimeUnit.MILLISECONDS);
+            assertTrue(remaining > 0 && remaining <= 200);
+            Thread.sleep(500);
+            assertTrue(session.isTimedOut());
+            assertEquals(TurnResult.Status.GAME_OVER, timedEngine
+                    .submitMove(id, movieB.getId())
+                    .getStatus());
+        }
+    }
+
+    private static Movie movie(int id, String title) {
+        Movie movie = new Movie();
+        movie.setId(id);
+        movie.setTitle(title);
+        movie.setGenreIds(new int[]{28});
+        return movie;
+    }
+
+    /**
+     * Credits with two actors ("Actor n") and an optional director ("Director n"), 0 meaning none
+     */
+    private static MovieCredits credits(int movieId, int actor1, int actor2, int director) {
+        MovieCredits credits = new MovieCredits();
+        credits.setId(movieId);
+        List<CastMember> cast = new ArrayList<>();
+        for (int actor : new int[]{actor1, actor2}) {
+            if (actor != 0) {
+                CastMember member = new CastMember();
+                member.setId(FIRST_ID + actor);
+                member.setName("Actor " + actor);
+                cast.add(member);
+            }
+        }
+        credits.setCast(cast);
+        List<CrewMember> crew = new ArrayList<>();
+        if (director != 0) {
+            CrewMember member = new CrewMember();
+            member.setId(FIRST_ID + 100 + director);
+            member.setName("Director " + director);
+            member.setJob("Director");
+            crew.add(member);
+        }
+        credits.setCrew(crew);
+        return credits;
+    }
+}
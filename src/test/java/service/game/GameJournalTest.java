@@ -0,0 +1,185 @@
+package service.game;
+
+import model.game.GameSession;
+import model.game.WinCondition;
+import model.tmdb.CastMember;
+import model.tmdb.CrewMember;
+import model.tmdb.Movie;
+import model.tmdb.MovieCredits;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import service.movie.MovieDataServiceImpl;
+import service.movie.MovieIndexService;
+import service.tmdbApi.TMDBMovieCacheService;
+import utils.HashedWheelTimer;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Game journal test class
+ */
+public class GameJournalTest {
+    private static final int FIRST_ID = 940000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private Movie movieA, movieB, movieC, movieD;
+
+    @Before
+    public void setUp() throws Exception {
+        java.lang.reflect.Field instance = MovieIndexService.class.getDeclaredField("instance");
+        instance.setAccessible(true);
+        instance.set(null, null);
+        instance = MovieDataServiceImpl.class.getDeclaredField("instance");
+        instance.setAccessible(true);
+        instance.set(null, null);
+        TMDBMovieCacheService.setCache("test_cache");
+        TMDBMovieCacheService.setTestMode(true);
+        MovieDataServiceImpl.setTestMode(true);
+
+        movieA = movie(FIRST_ID, "Journal A");
+        movieB = movie(FIRST_ID + 1, "Journal B");
+        movieC = movie(FIRST_ID + 2, "Journal C");
+        movieD = movie(FIRST_ID + 3, "Journal D");
+        MovieIndexService indexService = MovieIndexService.getInstance();
+        indexService.initializeIndexes(List.of(movieA, movieB, movieC, movieD));
+        // A-B share an actor, B-C a director, C-D another actor
+        indexService.indexMovieCredits(movieA.getId(), credits(movieA.getId(), 1, 2, 0));
+        indexService.indexMovieCredits(movieB.getId(), credits(movieB.getId(), 1, 0, 9));
+        indexService.indexMovieCredits(movieC.getId(), credits(movieC.getId(), 3, 4, 9));
+        indexService.indexMovieCredits(movieD.getId(), credits(movieD.getId(), 1, 4, 0));
+
+        directory = folder
+                .getRoot()
+                .toPath();
+    }
+
+    @Test
+    public void testRecoverFromSnapshotAndJournal() throws Exception {
+        String playedId, wonId;
+        try (GameJournal journal = new GameJournal(directory, 4, 64)) {
+            GameEngine engine = newEngine();
+            assertEquals(0, engine.recoverFrom(journal, 0));
+
+            playedId = engine
+                    .createSession("P1", "P2", movieA, new WinCondition("actor", "Actor 1", 3),
+                                   new WinCondition("actor", "Actor 8", 1))
+                    .getSessionId();
+            wonId = engine
+                    .createSession("P1", "P2", movieA, new WinCondition("actor", "Actor 1", 1),
+                                   new WinCondition("actor", "Actor 8", 1))
+                    .getSessionId();
+            assertEquals(TurnResult.Status.ACCEPTED, engine
+                    .submitMove(playedId, movieB.getId())
+                    .getStatus());
+            engine.snapshot();
+
+            // Changes after the snapshot only live in the journal
+            assertEquals(TurnResult.Status.ACCEPTED, engine
+                    .submitMove(playedId, movieC.getId())
+                    .getStatus());
+            assertEquals(TurnResult.Status.WON, engine
+                    .submitMove(wonId, movieB.getId())
+                    .getStatus());
+            String removedId = engine
+                    .createSession("P1", "P2", movieA, new WinCondition("actor", "Actor 8", 1),
+                                   new WinCondition("actor", "Actor 8", 1))
+                    .getSessionId();
+            engine.removeSession(removedId);
+        }
+
+        try (GameJournal journal = new GameJournal(directory, 4, 64)) {
+            GameEngine engine = newEngine();
+            assertEquals(2, engine.recoverFrom(journal, 0));
+
+            GameSession played = engine.getSession(playedId);
+            assertEquals(movieC.getId(), played
+                    .getCurrentMovie()
+                    .getId());
+            assertEquals("P1", played.getCurrentPlayerName());
+            assertEquals(3, played
+                    .getUsedMovies()
+                    .size());
+            assertEquals(3, played
+                    .getRecentHistory()
+                    .size());
+            assertEquals(1, played
+                    .getPlayer1WinCondition()
+                    .getCurrentCount());
+            assertEquals(1, played.getConnectionUsage(FIRST_ID + 1));
+            assertEquals(1, played.getConnectionUsage(FIRST_ID + 109));
+            assertTrue(engine
+                               .getSession(wonId)
+                               .isGameOver());
+
+            // The restored game goes on, and is journaled again
+            assertEquals(TurnResult.Status.MOVIE_ALREADY_USED, engine
+                    .submitMove(playedId, movieB.getId())
+                    .getStatus());
+            assertEquals(TurnResult.Status.ACCEPTED, engine
+                    .submitMove(playedId, movieD.getId())
+                    .getStatus());
+        }
+
+        try (GameJournal journal = new GameJournal(directory, 4, 64)) {
+            GameEngine engine = newEngine();
+            engine.recoverFrom(journal, 0);
+            assertEquals(movieD.getId(), engine
+                    .getSession(playedId)
+                    .getCurrentMovie()
+                    .getId());
+            assertEquals(4, engine
+                    .getSession(playedId)
+                    .getCurrentStep());
+        }
+    }
+
+    private static GameEngine newEngine() {
+        return new GameEngine(MovieDataServiceImpl.getInstance(), new Random(42), HashedWheelTimer.getInstance(), 0);
+    }
+
+    private static Movie movie(int id, String title) {
+        Movie movie = new Movie();
+        movie.setId(id);
+        movie.setTitle(title);
+        movie.setGenreIds(new int[]{28});
+        return movie;
+    }
+
+    /**
+     * Credits with two actors ("Actor n") and an optional director ("Director n"), 0 meaning none
+     */
+    private static MovieCredits credits(int movieId, int actor1, int actor2, int director) {
+        MovieCredits credits = new MovieCredits();
+        credits.setId(movieId);
+        List<CastMember> cast = new ArrayList<>();
+        for (int actor : new int[]{actor1, actor2}) {
+            if (actor != 0) {
+                CastMember member = new CastMember();
+                member.setId(FIRST_ID + actor);
+                member.setName("Actor " + actor);
+                cast.add(member);
+            }
+        }
+        credits.setCast(cast);
+        List<CrewMember> crew = new ArrayList<>();
+        if (director != 0) {
+            CrewMember member = new CrewMember();
+            member.setId(FIRST_ID + 100 + director);
+            member.setName("Director " + director);
+            member.setJob("Director");
+            crew.add(member);
+        }
+        credits.setCrew(crew);
+        return credits;
+    }
+}
@@ -0,0 +1,100 @@
+package service.movie;
+
+import lombok.extern.slf4j.Slf4j;
+import model.tmdb.Movie;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Catalog importer test class
+ */
+@Slf4j
+public class CatalogImporterTest {
+    private static final int FIXTURE_MOVIES = 20000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MovieIndexService indexService;
+
+    @Before
+    public void setUp() {
+        try {
+            java.lang.reflect.Field instance = MovieIndexService.class.getDeclaredField("instance");
+            instance.setAccessible(true);
+            instance.set(null, null);
+        } catch (Exception e) {
+            log.error("Failed to reset singleton", e);
+        }
+        indexService = MovieIndexService.getInstance();
+    }
+
+    @Test
+    public void testImportMovies() throws Exception {
+        Path file = folder.newFile("movies.json.gz").toPath();
+        try (BufferedWriter writer = gzipWriter(file)) {
+            for (int i = 1; i <= FIXTURE_MOVIES; i++) {
+                writer.write("{\"id\":" + i + ",\"title\":\"Fixture Movie " + i + "\",\"popularity\":" + i + "}");
+                writer.newLine();
+            }
+            // Export-style record with only the original title
+            writer.write("{\"adult\":false,\"id\":999999,\"original_title\":\"Blondie\",\"popularity\":2.6}");
+            writer.newLine();
+            // Blank line and malformed line
+            writer.newLine();
+            writer.write("{\"id\":");
+            writer.newLine();
+        }
+
+        CatalogImporter.ImportResult result = CatalogImporter.importMovies(file, indexService);
+
+        assertEquals(FIXTURE_MOVIES + 1, result.getImported());
+        assertEquals(1, result.getSkipped());
+        assertEquals("Fixture Movie 123", indexService.getMovieById(123).getTitle());
+        assertEquals("Blondie", indexService.getMovieById(999999).getTitle());
+
+        List<Movie> results = indexService.searchByPrefix("fixture movie 2000");
+        assertEquals(2, results.size());
+        assertEquals(20000, results.get(0).getId());
+    }
+
+    @Test
+    public void testImportCredits() throws Exception {
+        Path file = folder.newFile("credits.json.gz").toPath();
+        try (BufferedWriter writer = gzipWriter(file)) {
+            for (int i = 1; i <= 500; i++) {
+                writer.write("{\"id\":" + i + ",\"cast\":[{\"id\":" + (100000 + i % 50) +
+                                     ",\"name\":\"Actor " + (i % 50) + "\"}]," +
+                                     "\"crew\":[{\"id\":7,\"name\":\"Director 7\",\"job\":\"Director\"}]}");
+                writer.newLine();
+            }
+            writer.write("{\"id\":501}");
+            writer.newLine();
+        }
+
+        CatalogImporter.ImportResult result = CatalogImporter.importCredits(file, indexService);
+
+        assertEquals(501, result.getImported());
+        assertEquals(Integer.valueOf(100003), indexService.getActorIdByName("Actor 3"));
+        assertEquals(Integer.valueOf(7), indexService.getDirectorIdByName("director 7"));
+        assertNotNull(indexService.getMovieCredits(501));
+    }
+
+    private BufferedWriter gzipWriter(Path file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8));
+    }
+}
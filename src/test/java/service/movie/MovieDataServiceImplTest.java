@@ -1,6 +1,7 @@
 package service.movie;
 
 import lombok.extern.slf4j.Slf4j;
+import model.game.CompiledWinCondition;
 import model.game.Connection;
 import model.game.GameSession;
 import model.game.WinCondition;
@@ -8,11 +9,21 @@ import model.tmdb.CastMember;
 import model.tmdb.CrewMember;
 import model.tmdb.Movie;
 import model.tmdb.MovieCredits;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
 import org.junit.Before;
 import org.junit.Test;
+import service.tmdbApi.TMDBApiService;
 import service.tmdbApi.TMDBMovieCacheService;
+import utils.HttpUtil;
+import view.AutocompletePipeline;
+
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 import static org.junit.Assert.*;
 
@@ -70,6 +81,89 @@ public class MovieDataServiceImplTest {
         assertNotNull(results);
     }
 
+    @Test
+    public void testDeadlineSearchReturnsLocalResultsAndMergesLateRemoteOnes() throws Exception {
+        assertFalse(movieDataService
+                            .searchMoviesByPrefix("Movie", 50, late -> fail("Local matches need no remote search"))
+                            .isEmpty());
+
+        MockWebServer mockWebServer = new MockWebServer();
+        mockWebServer.enqueue(new MockResponse()
+                                      .setBody("{\"page\":1,\"total_pages\":1,\"results\":" +
+                                                       "[{\"id\":77,\"title\":\"Zyzzyx Road\"}]}")
+                                      .setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        mockWebServer.start();
+        String originalBaseUrl = TMDBApiService.getBaseUrl();
+        try {
+            TMDBApiService.setBaseUrl("http://" + mockWebServer.getHostName() + ":" + mockWebServer.getPort());
+            TMDBApiService.setTestMode(false, null);
+            TMDBApiService.resetCircuitBreaker();
+
+            CompletableFuture<List<Movie>> lateResults = new CompletableFuture<>();
+            long start = System.nanoTime();
+            List<Movie> results = movieDataService.searchMoviesByPrefix("Zyzzyx", 50, lateResults::complete);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(results.isEmpty());
+            assertTrue("The caller waited " + elapsed + "ms", elapsed < 250);
+            assertEquals("Zyzzyx Road", lateResults
+                    .get(5, TimeUnit.SECONDS)
+                    .get(0)
+                    .getTitle());
+        } finally {
+            mockWebServer.shutdown();
+            TMDBApiService.setBaseUrl(originalBaseUrl);
+        }
+    }
+
+    @Test
+    public void testSupersededRemoteSearchCancelsItsHttpCall() throws Exception {
+        MockWebServer mockWebServer = new MockWebServer();
+        for (int i = 0; i < 2; i++) {
+            mockWebServer.enqueue(new MockResponse()
+                                          .setBody("{\"page\":1,\"total_pages\":1,\"results\":[]}")
+                                          .setHeadersDelay(2, TimeUnit.SECONDS));
+        }
+        mockWebServer.start();
+        String originalBaseUrl = TMDBApiService.getBaseUrl();
+        List<List<Movie>> rendered = new CopyOnWriteArrayList<>();
+        try (AutocompletePipeline pipeline = new AutocompletePipeline(movieDataService::searchMoviesByPrefix,
+                                                                      10, 50, Runnable::run, rendered::add)) {
+            TMDBApiService.setBaseUrl("http://" + mockWebServer.getHostName() + ":" + mockWebServer.getPort());
+            TMDBApiService.setTestMode(false, null);
+            TMDBApiService.resetCircuitBreaker();
+
+            pipeline.onTextChanged("Zyzzyx");
+            assertTrue(waitFor(() -> rendered.size() == 1 && HttpUtil.getRunningCallCount() == 1));
+
+            // The next keystroke supersedes the query, whose HTTP call is cancelled instead of running on
+            pipeline.onTextChanged("Zyzzyq");
+            assertTrue(waitFor(() -> rendered.size() == 2));
+            assertTrue(waitFor(() -> HttpUtil.getRunningCallCount() == 1));
+            assertEquals(2, mockWebServer.getRequestCount());
+
+            pipeline.close();
+            assertTrue(waitFor(() -> HttpUtil.getRunningCallCount() == 0));
+        } finally {
+            mockWebServer.shutdown();
+            TMDBApiService.setBaseUrl(originalBaseUrl);
+        }
+    }
+
+    /**
+     * Wait well under the server's response delay for a condition
+     */
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1000);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
     @Test
     public void testGetMovieById() {
         Movie movie = movieDataService.getMovieById(1);
@@ -138,6 +232,37 @@ public class MovieDataServiceImplTest {
         assertFalse(movieDataService.matchesWinCondition(movie1, noMatch));
     }
 
+    @Test
+    public void testMatchesWinConditionGenreByName() {
+        WinCondition action = new WinCondition("genre", "Action");
+        assertTrue(movieDataService.matchesWinCondition(movie1, action));
+        assertFalse(movieDataService.matchesWinCondition(movie2, action));
+    }
+
+    @Test
+    public void testCompiledWinConditionFollowsTheIndex() {
+        WinCondition condition = new WinCondition("director", "Director Compiled", 2);
+        assertFalse(movieDataService.matchesWinCondition(movie2, condition));
+        assertEquals(0, movieDataService.countQualifyingMovies(condition, testSession));
+        CompiledWinCondition compiled = condition.getCompiled();
+        assertNotNull(compiled);
+
+        // Credits indexed later are seen by the condition compiled before
+        MovieCredits credits = new MovieCredits();
+        credits.setId(2);
+        CrewMember director = new CrewMember(); director.setId(203); director.setName("Director Compiled"); director.setJob("Director");
+        credits.setCast(List.of());
+        credits.setCrew(List.of(director));
+        MovieIndexService.getInstance().setMovieCreditsForTest(movie2.getId(), credits);
+
+        assertTrue(movieDataService.matchesWinCondition(movie2, condition));
+        assertEquals(1, movieDataService.countQualifyingMovies(condition, testSession));
+        assertSame(compiled, condition.getCompiled());
+
+        movieDataService.registerUsedMovie(movie2, testSession);
+        assertEquals(0, movieDataService.countQualifyingMovies(condition, testSession));
+    }
+
     @Test
     public void testMatchesWinConditionInvalidType() {
         WinCondition invalid = new WinCondition("invalid", "value");
@@ -157,6 +282,19 @@ public class MovieDataServiceImplTest {
         assertEquals(movie2, testSession.getCurrentMovie());
         assertEquals(2, testSession.getCurrentStep());
         assertTrue(testSession.isMovieAlreadyUsed(movie2));
+        assertTrue(testSession.isMovieUsed(movie2.getId()));
+        assertFalse(testSession.isMovieUsed(3));
+    }
+
+    @Test
+    public void testFilterUnusedMovies() {
+        Movie movie3 = new Movie(); movie3.setId(3); movie3.setTitle("Movie 3");
+        movieDataService.registerUsedMovie(movie2, testSession);
+
+        List<Movie> unused = testSession.filterUnusedMovies(Arrays.asList(movie3, movie2, movie1));
+
+        assertEquals(List.of(movie3), unused);
+        assertEquals(List.of(movie1, movie2), testSession.getUsedMovies());
     }
 
     @Test
@@ -165,6 +303,7 @@ public class MovieDataServiceImplTest {
         movieDataService.registerUsedConnection(connection, testSession);
         assertEquals(1, connection.getUsageCount());
         assertEquals(1, testSession.getConnectionUsageCount().get(101).intValue());
+        assertEquals(1, testSession.getConnectionUsage(101));
     }
 
     // --- Test Data ---
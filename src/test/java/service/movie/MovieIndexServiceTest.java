@@ -6,9 +6,16 @@ import model.tmdb.CrewMember;
 import model.tmdb.Movie;
 import model.tmdb.MovieCredits;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import static org.junit.Assert.*;
 
 /**
@@ -17,6 +24,9 @@ import static org.junit.Assert.*;
 @Slf4j
 public class MovieIndexServiceTest {
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   private MovieIndexService indexService;
   private List<Movie> testMovies;
   private MovieCredits testCredits;
@@ -96,6 +106,51 @@ public class MovieIndexServiceTest {
     assertEquals(2, credits.getCrew().size());
   }
 
+  @Test
+  public void testGetMovieFromPersistentStore() throws Exception {
+    String originalDirectory = MovieStore.getDirectory();
+    MovieStore.setDirectory(folder.getRoot().getAbsolutePath());
+    try {
+      Movie stored = new Movie();
+      stored.setId(4242);
+      stored.setTitle("Stored Movie");
+      stored.setGenreIds(new int[] { 18 });
+      MovieStore.getInstance().putMovie(stored);
+      MovieStore.getInstance().putCredits(4242, testCredits);
+
+      // A restart loses the heap caches but not the store
+      MovieStore.setDirectory(folder.getRoot().getAbsolutePath());
+      Movie movie = indexService.getMovieById(4242);
+
+      assertNotNull(movie);
+      assertEquals("Stored Movie", movie.getTitle());
+      assertArrayEquals(new int[] { 18 }, movie.getGenreIds());
+      assertEquals(1, indexService.searchByPrefix("stored").size());
+      assertEquals(2, indexService.getMovieCredits(4242).getCast().size());
+      assertEquals(1, indexService.getMoviesByActor(101).stream().filter(m -> m.getId() == 4242).count());
+    } finally {
+      MovieStore.setDirectory(originalDirectory);
+    }
+  }
+
+  @Test
+  public void testStoreOwnedByAnotherProcessIsSkipped() throws Exception {
+    String originalDirectory = MovieStore.getDirectory();
+    // Stands in for another process holding the store directory
+    try (FileChannel channel = FileChannel.open(folder.getRoot().toPath().resolve(".lock"),
+                                                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      FileLock otherProcess = channel.lock();
+      MovieStore.setDirectory(folder.getRoot().getAbsolutePath());
+      assertNull("The store is not opened behind its owner's back", MovieStore.getInstance());
+
+      otherProcess.release();
+      MovieStore.setDirectory(folder.getRoot().getAbsolutePath());
+      assertNotNull(MovieStore.getInstance());
+    } finally {
+      MovieStore.setDirectory(originalDirectory);
+    }
+  }
+
   @Test
   public void testGetMoviesByActor() {
     List<Movie> movies = indexService.getMoviesByActor(101);
@@ -130,6 +185,34 @@ public class MovieIndexServiceTest {
     assertEquals(Integer.valueOf(201), directorId);
   }
 
+  @Test
+  public void testUnknownLookupsDoNotGrowTheIndex() throws Exception {
+    java.lang.reflect.Field field = MovieIndexService.class.getDeclaredField("actorNameMovieIndex");
+    field.setAccessible(true);
+    Map<?, ?> actorNames = (Map<?, ?>) field.get(indexService);
+    int indexed = actorNames.size();
+
+    for (int i = 0; i < 100; i++) {
+      assertTrue(indexService.getMovieIdsByPersonName("actor", "Nobody " + i).isEmpty());
+      assertTrue(indexService.getMovieIdsByGenre(-i).isEmpty());
+    }
+    assertEquals(indexed, actorNames.size());
+    assertEquals(Set.of(1), indexService.getMovieIdsByPersonName("Actor", "ACTOR 1"));
+
+    // A tracked person's view follows credits indexed later
+    Set<Integer> tracked = indexService.trackMovieIdsByPersonName("actor", "Newcomer");
+    assertTrue(tracked.isEmpty());
+    MovieCredits credits = new MovieCredits();
+    credits.setId(2);
+    CastMember newcomer = new CastMember();
+    newcomer.setId(103);
+    newcomer.setName("Newcomer");
+    credits.setCast(List.of(newcomer));
+    credits.setCrew(new ArrayList<>());
+    indexService.indexMovieCredits(2, credits);
+    assertEquals(Set.of(2), tracked);
+  }
+
   @Test
   public void testClearIndexes() {
     indexService.clearIndexes();
@@ -0,0 +1,105 @@
+package service.movie;
+
+import lombok.extern.slf4j.Slf4j;
+import model.tmdb.Movie;
+import org.junit.Before;
+import org.junit.Test;
+import service.tmdbApi.TMDBMovieCacheService;
+import view.MovieSuggestion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark of resolving a submitted suggestion to a movie at the end of a turn:
+ * searching again by title (before) against looking up the ID the suggestion carries (after)
+ */
+@Slf4j
+public class SuggestionResolutionBenchmarkTest {
+    private static final int MOVIE_COUNT = 5000;
+    private static final int FIRST_ID = 910000;
+    private static final int ROUNDS = 5;
+
+    private MovieDataService movieDataService;
+    private final List<MovieSuggestion> suggestions = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        java.lang.reflect.Field instance = MovieDataServiceImpl.class.getDeclaredField("instance");
+        instance.setAccessible(true);
+        instance.set(null, null);
+        TMDBMovieCacheService.setCache("test_cache");
+        TMDBMovieCacheService.setTestMode(true);
+        MovieDataServiceImpl.setTestMode(true);
+
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < MOVIE_COUNT; i++) {
+            movies.add(movie(FIRST_ID + i, String.format("Benchmark Title %04d", i), "2000-01-01", 10));
+        }
+        // Two movies sharing a title, the less popular one is the one the player picked
+        movies.add(movie(FIRST_ID + MOVIE_COUNT, "Benchmark Crash", "2004-05-06", 50));
+        movies.add(movie(FIRST_ID + MOVIE_COUNT + 1, "Benchmark Crash", "1996-07-18", 5));
+        MovieIndexService
+                .getInstance()
+                .initializeIndexes(movies);
+        movies.forEach(movie -> suggestions.add(MovieSuggestion.of(movie)));
+        movieDataService = MovieDataServiceImpl.getInstance();
+    }
+
+    @Test
+    public void testIdLookupResolvesTheSelectedMovieFasterThanSearchingAgain() {
+        long byTitle = Long.MAX_VALUE;
+        long byId = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (MovieSuggestion suggestion : suggestions) {
+                assertNotNull(resolveByTitle(suggestion));
+            }
+            byTitle = Math.min(byTitle, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (MovieSuggestion suggestion : suggestions) {
+                assertNotNull(movieDataService.getMovieById(suggestion.getMovieId()));
+            }
+            byId = Math.min(byId, System.nanoTime() - start);
+        }
+        log.info("Resolving a submitted suggestion: {} µs by title search, {} µs by ID",
+                 String.format("%.2f", byTitle / 1000.0 / suggestions.size()),
+                 String.format("%.2f", byId / 1000.0 / suggestions.size()));
+        assertTrue("ID lookup took " + byId + "ns, title search " + byTitle + "ns", byId < byTitle);
+    }
+
+    @Test
+    public void testIdLookupResolvesTheMovieShownWhenTitlesCollide() {
+        MovieSuggestion picked = suggestions.get(suggestions.size() - 1);
+        assertEquals("Benchmark Crash (1996)", picked.toString());
+
+        assertEquals("Searching by title finds the more popular namesake", FIRST_ID + MOVIE_COUNT,
+                     resolveByTitle(picked).getId());
+        assertEquals(FIRST_ID + MOVIE_COUNT + 1, movieDataService
+                .getMovieById(picked.getMovieId())
+                .getId());
+    }
+
+    /**
+     * How GameController resolved the selection before suggestions carried IDs
+     */
+    private Movie resolveByTitle(MovieSuggestion suggestion) {
+        return movieDataService
+                .searchMoviesByPrefix(suggestion.getTitle())
+                .stream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static Movie movie(int id, String title, String releaseDate, double popularity) {
+        Movie movie = new Movie();
+        movie.setId(id);
+        movie.setTitle(title);
+        movie.setReleaseDate(releaseDate);
+        movie.setPopularity(popularity);
+        return movie;
+    }
+}
@@ -0,0 +1,104 @@
+package utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Circuit breaker test class
+ */
+public class CircuitBreakerTest {
+    private AtomicLong now;
+    private CircuitBreaker breaker;
+
+    @Before
+    public void setUp() {
+        now = new AtomicLong(0);
+        breaker = new CircuitBreaker("test", 3, 100, 1000, now::get);
+    }
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void testSuccessResetsFailureCount() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess(10);
+        breaker.recordFailure();
+        breaker.recordFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testSlowCallsOpenBreaker() {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordSuccess(500);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenTrialClosesOnSuccess() {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        now.set(1000);
+
+        assertTrue("A trial request should be allowed after the open period", breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse("Only one trial request at a time", breaker.allowRequest());
+
+        breaker.recordSuccess(10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void testHalfOpenTrialReopensOnFailure() {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        now.set(1000);
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        now.set(1500);
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void testAbortedHalfOpenTrialAllowsTheNextProbe() {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        now.set(1000);
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+
+        // The caller gave up on the trial, which says nothing about the upstream
+        breaker.releaseTrial();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue("The cool-down has passed, so the next request probes again", breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.recordSuccess(10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.releaseTrial();
+        assertEquals("Releasing without a trial changes nothing", CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,148 @@
+package utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Group-commit log test class
+ */
+@Slf4j
+public class GroupCommitLogTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReopenTruncatesTornTail() throws IOException {
+        Path directory = folder
+                .getRoot()
+                .toPath();
+        try (GroupCommitLog log = new GroupCommitLog(directory, "test", 16)) {
+            for (int i = 0; i < 3; i++) {
+                log
+                        .append(bytes("record " + i))
+                        .join();
+            }
+        }
+        // A crash in the middle of a write leaves half a record behind
+        Path segment = onlySegment(directory);
+        Files.write(segment, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (GroupCommitLog log = new GroupCommitLog(directory, "test", 16)) {
+            assertEquals(List.of("record 0", "record 1", "record 2"), replay(log));
+            log
+                    .append(bytes("record 3"))
+                    .join();
+            assertEquals(List.of("record 0", "record 1", "record 2", "record 3"), replay(log));
+        }
+    }
+
+    @Test
+    public void testRotateAndDeleteSealedSegments() throws IOException {
+        try (GroupCommitLog log = new GroupCommitLog(folder
+                                                             .getRoot()
+                                                             .toPath(), "test", 16)) {
+            log.append(bytes("old"));
+            long sealed = log
+                    .rotate()
+                    .join();
+            log
+                    .append(bytes("new"))
+                    .join();
+            assertEquals(List.of("old", "new"), replay(log));
+
+            log.deleteSegmentsUpTo(sealed);
+            assertEquals(List.of("new"), replay(log));
+        }
+    }
+
+    @Test
+    public void testGroupCommitThroughput() throws Exception {
+        int threads = 16;
+        long synced = appendConcurrently("synced", 1, threads, 50);
+        long grouped = appendConcurrently("grouped", 256, threads, 500);
+        log.info("Appends per second: {} with an fsync per record, {} with group commit", synced, grouped);
+    }
+
+    /**
+     * Append from several threads at once, each waiting for its records to be on disk
+     *
+     * @return Records per second
+     */
+    private long appendConcurrently(String name, int maxBatch, int threads, int recordsPerThread) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (GroupCommitLog log = new GroupCommitLog(folder
+                                                             .getRoot()
+                                                             .toPath(), name, maxBatch)) {
+            byte[] payload = new byte[64];
+            List<CompletableFuture<Void>> writers = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                writers.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < recordsPerThread; i++) {
+                        log
+                                .append(payload)
+                                .join();
+                    }
+                }, pool));
+            }
+            CompletableFuture
+                    .allOf(writers.toArray(new CompletableFuture[0]))
+                    .get(60, TimeUnit.SECONDS);
+            long elapsed = System.nanoTime() - start;
+
+            long records = (long) threads * recordsPerThread;
+            assertEquals(records, log.getRecordCount());
+            if (maxBatch == 1) {
+                assertEquals(records, log.getBatchCount());
+            } else {
+                assertTrue("Concurrent appends share fsyncs", log.getBatchCount() < records);
+            }
+            GroupCommitLogTest.log.info("{}: {} records in {} batches", name, records, log.getBatchCount());
+            return records * TimeUnit.SECONDS.toNanos(1) / elapsed;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Path onlySegment(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    private static List<String> replay(GroupCommitLog log) throws IOException {
+        List<String> records = new ArrayList<>();
+        log.replay(record -> records.add(string(record)));
+        return records;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
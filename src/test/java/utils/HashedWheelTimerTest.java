@@ -0,0 +1,108 @@
+package utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Hashed wheel timer test class
+ */
+@Slf4j
+public class HashedWheelTimerTest {
+    private static final long TICK_MILLIS = 10;
+
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        // A small wheel, so longer delays take several rounds
+        timer = new HashedWheelTimer("test-timer", TICK_MILLIS, 8);
+    }
+
+    @After
+    public void tearDown() {
+        timer.close();
+    }
+
+    @Test
+    public void testTimeoutsExpireAfterTheirDeadlineWithinATick() throws Exception {
+        int count = 100;
+        CountDownLatch done = new CountDownLatch(count);
+        AtomicLong earliest = new AtomicLong(Long.MAX_VALUE);
+        AtomicLong latest = new AtomicLong(Long.MIN_VALUE);
+        for (int i = 0; i < count; i++) {
+            long delayMillis = 5 + i * 4;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            timer.schedule(() -> {
+                long lateness = System.nanoTime() - deadline;
+                earliest.accumulateAndGet(lateness, Math::min);
+                latest.accumulateAndGet(lateness, Math::max);
+                done.countDown();
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        log.info("Timeouts fired {} to {} ms after their deadline",
+                 String.format("%.2f", earliest.get() / 1e6), String.format("%.2f", latest.get() / 1e6));
+        assertTrue("Fired early by " + earliest.get() + "ns", earliest.get() >= 0);
+        // One tick, plus scheduling noise on a busy machine
+        assertTrue("Fired late by " + latest.get() + "ns", latest.get() < TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS + 40));
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    public void testCancelledTimeoutsNeverRun() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        List<HashedWheelTimer.Timeout> timeouts = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            timeouts.add(timer.schedule(runs::incrementAndGet, 30 + i % 50, TimeUnit.MILLISECONDS));
+        }
+        for (int i = 0; i < timeouts.size(); i += 2) {
+            assertTrue(timeouts
+                               .get(i)
+                               .cancel());
+        }
+        assertEquals(500, timer.getPendingCount());
+
+        Thread.sleep(300);
+        assertEquals(500, runs.get());
+        assertFalse("Expired timeouts cannot be cancelled", timeouts
+                .get(1)
+                .cancel());
+        assertTrue(timeouts
+                           .get(1)
+                           .isExpired());
+        assertTrue(timeouts
+                           .get(0)
+                           .isCancelled());
+    }
+
+    @Test
+    public void testScheduleAndCancelScaleToManyPendingTimeouts() {
+        int count = 300_000;
+        List<HashedWheelTimer.Timeout> timeouts = new ArrayList<>(count);
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            timeouts.add(timer.schedule(() -> {
+            }, 60 + i % 600, TimeUnit.SECONDS));
+        }
+        long scheduled = System.nanoTime();
+        timeouts.forEach(HashedWheelTimer.Timeout::cancel);
+        long cancelled = System.nanoTime();
+        log.info("Scheduled {} timeouts in {} ms, cancelled them in {} ms", count,
+                 TimeUnit.NANOSECONDS.toMillis(scheduled - start), TimeUnit.NANOSECONDS.toMillis(cancelled - scheduled));
+
+        assertEquals(0, timer.getPendingCount());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(cancelled - start) < 5000);
+    }
+}
@@ -1,14 +1,18 @@
 package utils;
 
 import lombok.extern.slf4j.Slf4j;
+import model.tmdb.MovieCredits;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -16,11 +20,15 @@ import static org.junit.Assert.*;
 
 @Slf4j
 public class HttpUtilTest {
+    @Rule
+    public TemporaryFolder cacheFolder = new TemporaryFolder();
+
     private MockWebServer mockWebServer;
     private String baseUrl;
 
     @Before
     public void setUp() throws IOException {
+        HttpUtil.setCacheDirectory(cacheFolder.getRoot().getAbsolutePath());
         mockWebServer = new MockWebServer();
         mockWebServer.start();
         baseUrl = "http://" + mockWebServer.getHostName() + ":" + mockWebServer.getPort() + "/";
@@ -98,6 +106,147 @@ public class HttpUtilTest {
         assertEquals(testData.getValue(), converted.getValue());
     }
 
+    @Test
+    public void testConditionalRevalidationWithETag() throws Exception {
+        String body = "{\"message\":\"cached\"}";
+        mockWebServer.enqueue(new MockResponse()
+                                      .setBody(body)
+                                      .setHeader("ETag", "\"v1\"")
+                                      .setHeader("Cache-Control", "no-cache")
+                                      .setResponseCode(200));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(304));
+
+        assertEquals(body, HttpUtil.get(baseUrl, null));
+        assertEquals(body, HttpUtil.get(baseUrl, null));
+
+        assertNull(mockWebServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals("\"v1\"", mockWebServer.takeRequest().getHeader("If-None-Match"));
+
+        HttpUtil.CacheStats stats = HttpUtil.getCacheStats();
+        assertEquals(2, stats.getRequestCount());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(0.5, stats.getHitRatio(), 0.0001);
+    }
+
+    @Test
+    public void testFreshEntryServedWithoutNetwork() throws Exception {
+        String body = "{\"message\":\"fresh\"}";
+        mockWebServer.enqueue(new MockResponse()
+                                      .setBody(body)
+                                      .setHeader("Cache-Control", "max-age=3600")
+                                      .setResponseCode(200));
+
+        assertEquals(body, HttpUtil.get(baseUrl, null));
+        assertEquals(body, HttpUtil.get(baseUrl, null));
+
+        assertEquals(1, mockWebServer.getRequestCount());
+        assertEquals(1, HttpUtil.getCacheStats().getHitCount());
+    }
+
+    @Test
+    public void testOfflineFallbackServesStaleEntry() throws Exception {
+        String body = "{\"message\":\"stale\"}";
+        mockWebServer.enqueue(new MockResponse()
+                                      .setBody(body)
+                                      .setHeader("ETag", "\"v1\"")
+                                      .setHeader("Cache-Control", "max-age=0")
+                                      .setResponseCode(200));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+
+        assertEquals(body, HttpUtil.get(baseUrl, null));
+        // Upstream error: the stale entry is served instead
+        assertEquals(body, HttpUtil.get(baseUrl, null));
+
+        // Upstream unreachable: the stale entry is still served
+        mockWebServer.shutdown();
+        assertEquals(body, HttpUtil.get(baseUrl, null));
+        assertEquals(2, HttpUtil.getCacheStats().getStaleHitCount());
+    }
+
+    @Test
+    public void testStreamingGetDecodesCredits() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                                      .setBody(createCreditsJson(3))
+                                      .setResponseCode(200));
+
+        MovieCredits credits = HttpUtil.get(baseUrl, null, MovieCredits.class);
+
+        assertNotNull(credits);
+        assertEquals(42, credits.getId());
+        assertEquals(3, credits.getCast().size());
+        assertEquals("Actor 0", credits.getCast().get(0).getName());
+        // Unused fields are skipped while decoding
+        assertNull(credits.getCast().get(0).getCharacter());
+        assertNull(credits.getCast().get(0).getProfilePath());
+        assertEquals("Director", credits.getCrew().get(0).getJob());
+    }
+
+    @Test
+    public void testStreamingGetAllocatesLessThanStringDecode() throws Exception {
+        String json = createCreditsJson(600);
+        int iterations = 20;
+
+        // Warm up both paths so class loading and reader creation are not measured
+        measureAllocation(json, 5, false);
+        measureAllocation(json, 5, true);
+
+        long stringBytes = measureAllocation(json, iterations, false);
+        long streamingBytes = measureAllocation(json, iterations, true);
+        log.info("Credits payload of {} bytes: String decode {} bytes/request, streaming decode {} bytes/request",
+                 json.length(), stringBytes / iterations, streamingBytes / iterations);
+
+        assertTrue("Streaming decode should allocate less per request", streamingBytes < stringBytes);
+    }
+
+    /**
+     * Allocated bytes on the current thread for the given number of credits requests
+     */
+    private long measureAllocation(String json, int iterations, boolean streaming) throws Exception {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < iterations; i++) {
+            mockWebServer.enqueue(new MockResponse()
+                                          .setBody(json)
+                                          .setResponseCode(200));
+        }
+        long before = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < iterations; i++) {
+            MovieCredits credits = streaming
+                    ? HttpUtil.get(baseUrl, null, MovieCredits.class)
+                    : HttpUtil.fromJson(HttpUtil.get(baseUrl, null), MovieCredits.class);
+            assertNotNull(credits);
+        }
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+    }
+
+    /**
+     * Build a TMDB-style credits payload with the given number of cast and crew entries
+     */
+    private String createCreditsJson(int size) {
+        StringBuilder json = new StringBuilder("{\"id\":42,\"cast\":[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i)
+                .append(",\"name\":\"Actor ").append(i)
+                .append("\",\"character\":\"Character ").append(i)
+                .append("\",\"order\":").append(i)
+                .append(",\"profile_path\":\"/profile").append(i).append(".jpg\",\"gender\":1}");
+        }
+        json.append("],\"crew\":[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(10000 + i)
+                .append(",\"name\":\"Crew ").append(i)
+                .append("\",\"job\":\"").append(i == 0 ? "Director" : "Grip")
+                .append("\",\"department\":\"Crew\",\"profile_path\":null,\"gender\":2}");
+        }
+        return json.append("]}").toString();
+    }
+
     @lombok.Data
     @lombok.NoArgsConstructor
     private static class TestData {
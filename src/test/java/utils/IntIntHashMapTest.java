@@ -0,0 +1,56 @@
+package utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Primitive int-to-int map test class
+ */
+public class IntIntHashMapTest {
+    @Test
+    public void testAgreesWithHashMap() {
+        IntIntHashMap map = new IntIntHashMap(4);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(5000) - 100;
+            if (random.nextBoolean()) {
+                assertEquals(expected.merge(key, 1, Integer::sum).intValue(), map.increment(key));
+            } else {
+                expected.put(key, i);
+                map.put(key, i);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int key = -100; key < 4900; key++) {
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+            assertEquals(expected.getOrDefault(key, -1).intValue(), map.get(key, -1));
+        }
+
+        Map<Integer, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    public void testZeroAndClear() {
+        IntIntHashMap map = new IntIntHashMap();
+        assertEquals(-1, map.get(0, -1));
+        assertEquals(1, map.increment(0));
+        assertEquals(2, map.increment(0));
+        map.put(Integer.MIN_VALUE, 7);
+        assertEquals(2, map.size());
+        assertEquals(2, map.get(0, -1));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(0));
+        assertEquals(0, map.get(Integer.MIN_VALUE, 0));
+        assertEquals(1, map.increment(0));
+    }
+}
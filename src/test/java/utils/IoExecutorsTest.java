@@ -0,0 +1,58 @@
+package utils;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * I/O executor test class
+ */
+public class IoExecutorsTest {
+    @Test
+    public void testTasksDoNotKeepTheJvmAlive() throws Exception {
+        ExecutorService executor = IoExecutors.newExecutor("test-io", 2);
+        try {
+            Future<Thread> thread = executor.submit(Thread::currentThread);
+            assertTrue(thread
+                               .get(5, TimeUnit.SECONDS)
+                               .isDaemon());
+            assertTrue(thread
+                               .get()
+                               .getName()
+                               .startsWith("test-io-"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testThousandsOfBlockingTasksRunConcurrently() throws Exception {
+        Assume.assumeTrue("Virtual threads need Java 21+", IoExecutors.useVirtualThreads());
+
+        int tasks = 5000;
+        CountDownLatch started = new CountDownLatch(tasks);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = IoExecutors.newExecutor("test-io", 2);
+        try {
+            for (int i = 0; i < tasks; i++) {
+                executor.submit(() -> {
+                    started.countDown();
+                    // Blocks like a task waiting for a request permit or a response
+                    release.await();
+                    return null;
+                });
+            }
+            assertTrue("Every task should be blocked at the same time", started.await(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+}
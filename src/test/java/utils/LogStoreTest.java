@@ -0,0 +1,164 @@
+package utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+/**
+ * Log-structured store test class
+ */
+public class LogStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private LogStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder
+                .getRoot()
+                .toPath()
+                .resolve("test.log");
+        store = new LogStore(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Test
+    public void testPutGetAndOverwrite() throws IOException {
+        store.put(1, bytes("first"));
+        store.put(2, bytes("second"));
+        store.put(1, bytes("first, updated"));
+
+        assertEquals("first, updated", string(store.get(1)));
+        assertEquals("second", string(store.get(2)));
+        assertNull(store.get(3));
+        assertEquals(2, store.size());
+        assertTrue(store.contains(2));
+    }
+
+    @Test
+    public void testReopenRecoversIndex() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            store.put(i, bytes("value " + i));
+        }
+        store.put(7, bytes("value 7, updated"));
+        store.close();
+
+        store = new LogStore(file);
+        assertEquals(100, store.size());
+        assertEquals("value 42", string(store.get(42)));
+        assertEquals("The latest record wins", "value 7, updated", string(store.get(7)));
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws IOException {
+        store.put(1, bytes("complete"));
+        store.put(2, bytes("also complete"));
+        store.close();
+        long validSize = Files.size(file);
+
+        // Simulate a crash in the middle of appending a record
+        Files.write(file, new byte[]{0, 0, 0, 50, 0, 0, 0, 3, 1, 2}, StandardOpenOption.APPEND);
+
+        store = new LogStore(file);
+        assertEquals(2, store.size());
+        assertNull(store.get(3));
+        assertEquals(validSize, Files.size(file));
+
+        // New records are appended after the last valid one
+        store.put(3, bytes("after recovery"));
+        store.close();
+        store = new LogStore(file);
+        assertEquals("after recovery", string(store.get(3)));
+        assertEquals("complete", string(store.get(1)));
+    }
+
+    @Test
+    public void testCorruptRecordIsDropped() throws IOException {
+        store.put(1, bytes("good"));
+        long secondRecord = store.fileSize();
+        store.put(2, bytes("will be corrupted"));
+        store.close();
+
+        // Flip a payload byte so the checksum no longer matches
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(secondRecord + 14);
+            raf.write('X');
+        }
+
+        store = new LogStore(file);
+        assertEquals("good", string(store.get(1)));
+        assertNull(store.get(2));
+        assertEquals(secondRecord, Files.size(file));
+    }
+
+    @Test
+    public void testCorruptKeyIsDropped() throws IOException {
+        store.put(1, bytes("good"));
+        long secondRecord = store.fileSize();
+        store.put(2, bytes("key will be corrupted"));
+        store.close();
+
+        // Change the key only; the payload and its length are intact
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(secondRecord + 7);
+            raf.write(3);
+        }
+
+        store = new LogStore(file);
+        assertEquals("good", string(store.get(1)));
+        assertNull(store.get(2));
+        assertNull("A record is never filed under a corrupt key", store.get(3));
+        assertEquals(secondRecord, Files.size(file));
+    }
+
+    @Test
+    public void testCompactionKeepsLatestValues() throws IOException {
+        byte[] payload = new byte[1024];
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 500; i++) {
+                payload[0] = (byte) round;
+                store.put(i, payload.clone());
+            }
+        }
+
+        store.compact();
+
+        assertEquals("Only the live records should remain", 500 * (12 + 1024), store.fileSize());
+        assertEquals(store.fileSize(), Files.size(file));
+        assertEquals(500, store.size());
+        assertEquals(4, store.get(123)[0]);
+
+        // The compacted log is readable after a restart and still appendable
+        store.put(1000, bytes("new"));
+        store.close();
+        store = new LogStore(file);
+        assertEquals(501, store.size());
+        assertEquals(4, store.get(499)[0]);
+        assertEquals("new", string(store.get(1000)));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,76 @@
+package utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Negative cache test class
+ */
+public class NegativeCacheTest {
+    private final AtomicLong now = new AtomicLong(1000);
+
+    @Test
+    public void testEntriesExpireAfterTtl() {
+        NegativeCache<Integer> cache = new NegativeCache<>("test", 100, 10, true, now::get);
+        cache.add(42);
+
+        assertTrue(cache.contains(42));
+        assertFalse(cache.contains(43));
+        now.addAndGet(100);
+        assertFalse(cache.contains(42));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testOldestEntriesAreDroppedOverCapacity() {
+        NegativeCache<Integer> cache = new NegativeCache<>("test", 1000, 3, false, now::get);
+        for (int key = 1; key <= 5; key++) {
+            now.incrementAndGet();
+            cache.add(key);
+        }
+
+        assertEquals(3, cache.size());
+        assertFalse(cache.contains(1));
+        assertFalse(cache.contains(2));
+        assertTrue(cache.contains(5));
+    }
+
+    @Test
+    public void testBloomFilterStaysAccurateAcrossRebuilds() {
+        NegativeCache<String> cache = new NegativeCache<>("test", 1000, 100, true, now::get);
+        for (int i = 0; i < 1000; i++) {
+            cache.add("query " + i);
+        }
+
+        // Only the 100 most recent keys survive, and the rebuilt filter must still admit them
+        for (int i = 900; i < 1000; i++) {
+            assertTrue(cache.contains("query " + i));
+        }
+        assertFalse(cache.contains("query 0"));
+        cache.clear();
+        assertFalse(cache.contains("query 999"));
+    }
+
+    @Test
+    public void testBloomFilterHasNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(1000);
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            filter.add(i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain(i));
+        }
+        for (int i = 1000; i < 11000; i++) {
+            if (filter.mightContain(i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("False positives: " + falsePositives, falsePositives < 300);
+    }
+}
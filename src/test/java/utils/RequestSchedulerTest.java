@@ -0,0 +1,141 @@
+package utils;
+
+import org.junit.Test;
+import utils.RequestScheduler.Lane;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Request scheduler test class
+ */
+public class RequestSchedulerTest {
+    @Test
+    public void testInteractiveRequestPreemptsQueuedBackgroundRequests() throws Exception {
+        // One permit every 200ms
+        RequestScheduler scheduler = new RequestScheduler(5);
+        scheduler.acquire(Lane.BACKGROUND);
+
+        List<String> granted = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(start(scheduler, Lane.BACKGROUND, "background-" + i, granted));
+        }
+        waitForQueueDepth(scheduler, Lane.BACKGROUND, 4);
+        threads.add(start(scheduler, Lane.INTERACTIVE, "interactive", granted));
+
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+        assertEquals(5, granted.size());
+        // At most the background request already at the head of the queue goes first
+        assertTrue("Granted in order " + granted, granted.indexOf("interactive") <= 1);
+
+        RequestScheduler.LaneStats background = scheduler.getStats(Lane.BACKGROUND);
+        assertEquals(5, background.getGranted());
+        assertEquals(0, background.getQueueDepth());
+        assertEquals(4, background.getMaxQueueDepth());
+        assertTrue(background.getMaxWaitMillis() >= 400);
+
+        RequestScheduler.LaneStats interactive = scheduler.getStats(Lane.INTERACTIVE);
+        assertEquals(1, interactive.getGranted());
+        assertTrue(interactive.getMaxWaitMillis() < background.getMaxWaitMillis());
+    }
+
+    @Test
+    public void testLaneFollowsTheCallingThread() {
+        assertEquals(Lane.INTERACTIVE, RequestScheduler.currentLane());
+        Lane inside = RequestScheduler.callInLane(Lane.BACKGROUND, RequestScheduler::currentLane);
+        assertEquals(Lane.BACKGROUND, inside);
+        assertEquals(Lane.INTERACTIVE, RequestScheduler.currentLane());
+
+        try {
+            RequestScheduler.runInLane(Lane.BACKGROUND, () -> {
+                throw new IllegalStateException("task failed");
+            });
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals(Lane.INTERACTIVE, RequestScheduler.currentLane());
+        }
+    }
+
+    @Test
+    public void testInterruptedRequestLeavesTheQueue() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(0.5);
+        scheduler.acquire();
+
+        Thread waiting = new Thread(() -> {
+            try {
+                scheduler.acquire(Lane.BACKGROUND);
+            } catch (InterruptedException e) {
+                Thread
+                        .currentThread()
+                        .interrupt();
+            }
+        });
+        waiting.start();
+        waitForQueueDepth(scheduler, Lane.BACKGROUND, 1);
+        waiting.interrupt();
+        waiting.join(5000);
+
+        assertEquals(0, scheduler
+                .getStats(Lane.BACKGROUND)
+                .getQueueDepth());
+        assertEquals(0, scheduler
+                .getStats(Lane.BACKGROUND)
+                .getGranted());
+    }
+
+    @Test
+    public void testTimedRequestGivesUpAtItsDeadline() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(0.5);
+        scheduler.acquire();
+
+        long start = System.nanoTime();
+        try {
+            scheduler.acquire(Lane.INTERACTIVE, start + TimeUnit.MILLISECONDS.toNanos(200));
+            fail("SocketTimeoutException expected");
+        } catch (SocketTimeoutException e) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("Took " + elapsed + "ms", elapsed < 1000);
+        }
+        assertEquals(0, scheduler
+                .getStats(Lane.INTERACTIVE)
+                .getQueueDepth());
+        assertEquals(1, scheduler
+                .getStats(Lane.INTERACTIVE)
+                .getGranted());
+    }
+
+    private static Thread start(RequestScheduler scheduler, Lane lane, String name, List<String> granted) {
+        Thread thread = new Thread(() -> {
+            try {
+                scheduler.acquire(lane);
+                granted.add(name);
+            } catch (InterruptedException e) {
+                Thread
+                        .currentThread()
+                        .interrupt();
+            }
+        }, name);
+        thread.start();
+        return thread;
+    }
+
+    private static void waitForQueueDepth(RequestScheduler scheduler, Lane lane, int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler
+                .getStats(lane)
+                .getQueueDepth() < depth && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(depth, scheduler
+                .getStats(lane)
+                .getQueueDepth());
+    }
+}
@@ -0,0 +1,185 @@
+package utils;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Resilience policy test class
+ */
+@Slf4j
+public class ResiliencePolicyTest {
+    private static final Map<String, String> HEADERS = Collections.singletonMap("accept", "application/json");
+    // Every 10th response is this slow (ms)
+    private static final long TAIL_DELAY_MILLIS = 800;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer mockWebServer;
+    private final AtomicInteger requestCount = new AtomicInteger(0);
+
+    @Before
+    public void setUp() throws IOException {
+        HttpUtil.setCacheDirectory(folder
+                                           .newFolder("http")
+                                           .getAbsolutePath());
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    public void testHedgingCutsTailLatency() throws Exception {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                MockResponse response = new MockResponse().setBody("{\"page\":1}");
+                if (requestCount.incrementAndGet() % 10 == 0) {
+                    response.setHeadersDelay(TAIL_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                return response;
+            }
+        });
+
+        long[] plain = measure(new ResiliencePolicy("plain", new RequestScheduler(1000), 1, 0, 0, 5000, 0));
+        long[] hedged = measure(new ResiliencePolicy("hedged", new RequestScheduler(1000), 1, 0, 0, 5000, 100));
+        log.info("Latency (ms) without hedging: p50={} max={}, with hedging: p50={} max={}",
+                 plain[plain.length / 2], plain[plain.length - 1], hedged[hedged.length / 2], hedged[hedged.length - 1]);
+
+        assertTrue(plain[plain.length - 1] >= TAIL_DELAY_MILLIS);
+        assertTrue("Hedged max latency " + hedged[hedged.length - 1] + "ms",
+                   hedged[hedged.length - 1] < TAIL_DELAY_MILLIS / 2);
+    }
+
+    @Test
+    public void testServerErrorsAreRetriedWithBackoff() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        mockWebServer.enqueue(new MockResponse().setBody("{\"page\":2}"));
+        ResiliencePolicy policy = new ResiliencePolicy("retry", new RequestScheduler(1000), 3, 10, 50, 5000, 0);
+
+        Map<?, ?> result = policy.execute(timeout -> HttpUtil.get(url(), HEADERS, Map.class, timeout));
+
+        assertEquals(2, result.get("page"));
+        assertEquals(3, mockWebServer.getRequestCount());
+        assertEquals(2, policy
+                .getStats()
+                .getRetries());
+    }
+
+    @Test
+    public void testClientErrorsAndDeadlinesEndTheRequest() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(404));
+        ResiliencePolicy policy = new ResiliencePolicy("fail", new RequestScheduler(1000), 3, 10, 50, 200, 0);
+
+        try {
+            policy.execute(timeout -> HttpUtil.get(url(), HEADERS, Map.class, timeout));
+            fail("HttpStatusException expected");
+        } catch (HttpStatusException e) {
+            assertEquals(404, e.getCode());
+        }
+        assertEquals("A 404 is not retried", 1, mockWebServer.getRequestCount());
+
+        mockWebServer.enqueue(new MockResponse()
+                                      .setBody("{}")
+                                      .setHeadersDelay(2, TimeUnit.SECONDS));
+        mockWebServer.enqueue(new MockResponse().setBody("{\"page\":3}"));
+        long start = System.nanoTime();
+        Map<?, ?> result = policy.execute(timeout -> HttpUtil.get(url(), HEADERS, Map.class, timeout));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("The slow attempt is abandoned at its deadline", 3, result.get("page"));
+        assertTrue("Took " + elapsed + "ms", elapsed < 1500);
+    }
+
+    @Test
+    public void testRequestDeadlineCoversRetries() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockWebServer.enqueue(new MockResponse()
+                                          .setBody("{}")
+                                          .setHeadersDelay(2, TimeUnit.SECONDS));
+        }
+        ResiliencePolicy policy = new ResiliencePolicy("deadline", new RequestScheduler(1000), 3, 10, 50, 5000, 0);
+
+        long start = System.nanoTime();
+        try {
+            policy.execute(timeout -> HttpUtil.get(url(), HEADERS, Map.class, timeout), 300);
+            fail("Timeout expected");
+        } catch (InterruptedIOException e) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("Took " + elapsed + "ms", elapsed < 1000);
+        }
+    }
+
+    @Test
+    public void testRequestDeadlineCoversThePermitWait() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(0.5);
+        scheduler.acquire();
+        ResiliencePolicy policy = new ResiliencePolicy("queued", scheduler, 3, 10, 50, 5000, 0);
+
+        long start = System.nanoTime();
+        try {
+            policy.execute(timeout -> HttpUtil.get(url(), HEADERS, Map.class, timeout), 300);
+            fail("Timeout expected");
+        } catch (InterruptedIOException e) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("Took " + elapsed + "ms", elapsed < 1000);
+        }
+        assertEquals("No request is sent without a permit", 0, mockWebServer.getRequestCount());
+        assertEquals(0, scheduler
+                .getStats(RequestScheduler.Lane.INTERACTIVE)
+                .getQueueDepth());
+    }
+
+    @Test
+    public void testBackoffIsJitteredAndCapped() {
+        ResiliencePolicy policy = new ResiliencePolicy("backoff", new RequestScheduler(1000), 3, 100, 1000, 5000, 0);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.backoffMillis(1) <= 100);
+            assertTrue(policy.backoffMillis(3) <= 400);
+            assertTrue(policy.backoffMillis(10) <= 1000);
+        }
+    }
+
+    /**
+     * Send 50 sequential requests and return their sorted latencies (ms)
+     */
+    private long[] measure(ResiliencePolicy policy) throws IOException {
+        long[] latencies = new long[50];
+        for (int i = 0; i < latencies.length; i++) {
+            long start = System.nanoTime();
+            policy.execute(timeout -> HttpUtil.get(url(), HEADERS, Map.class, timeout));
+            latencies[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private String url() {
+        return mockWebServer
+                .url("/movie")
+                .toString();
+    }
+}
@@ -0,0 +1,56 @@
+package utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Ring buffer test class
+ */
+public class RingBufferTest {
+    @Test
+    public void testKeepsTheMostRecentElementsInOrder() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(3);
+        assertTrue(buffer.isEmpty());
+        buffer.add(1);
+        buffer.add(2);
+        assertEquals(List.of(1, 2), buffer);
+
+        for (int i = 3; i <= 7; i++) {
+            buffer.add(i);
+        }
+        assertEquals(3, buffer.size());
+        assertEquals(List.of(5, 6, 7), buffer);
+        assertEquals(5, buffer
+                .get(0)
+                .intValue());
+        assertEquals(7, buffer
+                .get(2)
+                .intValue());
+
+        List<Integer> visited = new ArrayList<>();
+        buffer.forEach(visited::add);
+        assertEquals(List.of(5, 6, 7), visited);
+    }
+
+    @Test
+    public void testIndexesAreCheckedAndClearEmpties() {
+        RingBuffer<String> buffer = new RingBuffer<>(2);
+        buffer.add("a");
+        try {
+            buffer.get(1);
+            fail("IndexOutOfBoundsException expected");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        buffer.add("b");
+        assertEquals(List.of("b"), buffer);
+        assertEquals(2, buffer.capacity());
+    }
+}
@@ -0,0 +1,131 @@
+package utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tiered cache test class
+ */
+public class TieredCacheTest {
+    private MapTier disk;
+    private MapTier remote;
+    private TieredCache<String> cache;
+
+    @Before
+    public void setUp() {
+        disk = new MapTier("disk", true);
+        remote = new MapTier("remote", false);
+        cache = new TieredCache<>("test", 3, disk, remote);
+    }
+
+    @Test
+    public void testReadThroughPromotesToUpperTiers() {
+        remote.values.put(1, "one");
+
+        assertEquals("one", cache.get(1));
+        assertTrue("Promoted to L1", cache.containsInMemory(1));
+        assertEquals("Promoted to the disk tier", "one", disk.values.get(1));
+
+        assertEquals("one", cache.get(1));
+        assertEquals("The second read is served by L1", 1, remote.reads.get());
+    }
+
+    @Test
+    public void testGetLocalSkipsRemoteTier() {
+        remote.values.put(1, "one");
+        disk.values.put(2, "two");
+
+        assertNull(cache.getLocal(1));
+        assertEquals(0, remote.reads.get());
+        assertEquals("two", cache.getLocal(2));
+    }
+
+    @Test
+    public void testEvictionDemotesAndKeepsPinned() {
+        cache.pin(100, "pinned");
+        for (int i = 1; i <= 5; i++) {
+            cache.put(i, "value " + i);
+        }
+
+        assertEquals(4, cache.memorySize());
+        assertFalse(cache.containsInMemory(1));
+        assertFalse(cache.containsInMemory(2));
+        assertTrue(cache.containsInMemory(100));
+        assertEquals("Evicted entries are demoted", "value 1", disk.values.get(1));
+
+        // An evicted entry is read back from the disk tier, never from the remote one
+        assertEquals("value 2", cache.get(2));
+        assertEquals(0, remote.reads.get());
+    }
+
+    @Test
+    public void testStatsPerTier() {
+        cache.put(1, "one");
+        disk.values.put(2, "two");
+        remote.values.put(3, "three");
+
+        cache.get(1);
+        cache.get(2);
+        cache.get(3);
+        cache.get(4);
+
+        List<TieredCache.TierStats> stats = cache.getStats();
+        assertEquals(3, stats.size());
+        assertEquals("L1", stats.get(0).getName());
+        assertEquals(1, stats.get(0).getHits());
+        assertEquals(3, stats.get(0).getMisses());
+        assertEquals(1, stats.get(1).getHits());
+        assertEquals(2, stats.get(1).getMisses());
+        assertEquals(1, stats.get(2).getHits());
+        assertEquals(1, stats.get(2).getMisses());
+        assertEquals(0.5, stats.get(2).getHitRatio(), 0.0001);
+    }
+
+    /**
+     * Map-backed tier that counts reads
+     */
+    private static class MapTier implements CacheTier<String> {
+        private final String name;
+        private final boolean local;
+        private final Map<Integer, String> values = new ConcurrentHashMap<>();
+        private final AtomicInteger reads = new AtomicInteger();
+
+        private MapTier(String name, boolean local) {
+            this.name = name;
+            this.local = local;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String get(int key) {
+            reads.incrementAndGet();
+            return values.get(key);
+        }
+
+        @Override
+        public void put(int key, String value) {
+            values.put(key, value);
+        }
+
+        @Override
+        public boolean contains(int key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public boolean isLocal() {
+            return local;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package utils.tmdbApi;
+
+import lombok.extern.slf4j.Slf4j;
+import model.tmdb.Movie;
+import model.tmdb.MovieCredits;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import service.tmdbApi.TMDBApiService;
+import service.tmdbApi.TMDBCreditsCrawler;
+import utils.HttpUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * TMDB credits crawler test class
+ */
+@Slf4j
+public class TMDBCreditsCrawlerTest {
+    private static final Pattern CREDITS_PATH = Pattern.compile("/movie/(\\d+)/credits.*");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer mockWebServer;
+    private String originalBaseUrl;
+    private final AtomicInteger requestCount = new AtomicInteger(0);
+
+    @Before
+    public void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                Matcher matcher = CREDITS_PATH.matcher(request.getPath());
+                if (!matcher.matches()) {
+                    return new MockResponse().setResponseCode(404);
+                }
+                requestCount.incrementAndGet();
+                int movieId = Integer.parseInt(matcher.group(1));
+                return new MockResponse()
+                        .setBody("{\"id\":" + movieId + ",\"cast\":[{\"id\":" + (1000 + movieId) +
+                                         ",\"name\":\"Actor " + movieId + "\"}],\"crew\":[]}")
+                        .setResponseCode(200);
+            }
+        });
+        mockWebServer.start();
+
+        originalBaseUrl = TMDBApiService.getBaseUrl();
+        TMDBApiService.setBaseUrl("http://" + mockWebServer.getHostName() + ":" + mockWebServer.getPort());
+        TMDBApiService.setTestMode(false, null);
+        TMDBApiService.setTestDetailData(null, null);
+        TMDBApiService.resetCircuitBreaker();
+        HttpUtil.setCacheDirectory(folder.newFolder("http").getAbsolutePath());
+        TMDBCreditsCrawler.setCache(folder.getRoot().getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mockWebServer.shutdown();
+        TMDBApiService.setBaseUrl(originalBaseUrl);
+    }
+
+    @Test
+    public void testCrawlFeedsConsumerAndCheckpoints() throws Exception {
+        Map<Integer, MovieCredits> indexed = new ConcurrentHashMap<>();
+
+        int fetched = TMDBCreditsCrawler.crawl(createMovies(1, 25), indexed::put);
+
+        assertEquals(25, fetched);
+        assertEquals(25, indexed.size());
+        assertEquals("Actor 7", indexed.get(7).getCast().get(0).getName());
+        assertEquals(25, Files.readAllLines(creditsFile()).size());
+    }
+
+    @Test
+    public void testCrawlResumesFromCheckpoint() throws Exception {
+        TMDBCreditsCrawler.crawl(createMovies(1, 20), (id, credits) -> {
+        });
+        requestCount.set(0);
+
+        Map<Integer, MovieCredits> indexed = new ConcurrentHashMap<>();
+        int fetched = TMDBCreditsCrawler.crawl(createMovies(1, 30), indexed::put);
+
+        assertEquals("Only movies missing from the checkpoint are fetched", 10, fetched);
+        assertEquals(10, requestCount.get());
+        assertFalse(indexed.containsKey(1));
+        assertTrue(indexed.containsKey(30));
+    }
+
+    @Test
+    public void testLoadCreditsSkipsTornRecord() throws Exception {
+        TMDBCreditsCrawler.crawl(createMovies(1, 5), (id, credits) -> {
+        });
+        // Simulate a crash in the middle of writing a record
+        Files.write(creditsFile(), "{\"id\":6,\"cast\":[{\"id\":1".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+
+        Map<Integer, MovieCredits> indexed = new ConcurrentHashMap<>();
+        Set<Integer> loaded = TMDBCreditsCrawler.loadCredits(indexed::put);
+        assertEquals(5, loaded.size());
+        assertFalse(loaded.contains(6));
+
+        // The torn movie is fetched again and the file stays readable
+        requestCount.set(0);
+        assertEquals(1, TMDBCreditsCrawler.crawl(createMovies(1, 6), (id, credits) -> {
+        }));
+        assertEquals(6, TMDBCreditsCrawler.loadCredits((id, credits) -> {
+        }).size());
+    }
+
+    private Path creditsFile() {
+        return folder.getRoot().toPath().resolve("credits.ndjson");
+    }
+
+    private List<Movie> createMovies(int from, int to) {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            Movie movie = new Movie();
+            movie.setId(i);
+            movie.setTitle("Movie " + i);
+            movies.add(movie);
+        }
+        return movies;
+    }
+}
@@ -3,11 +3,19 @@ package utils.tmdbApi;
 import lombok.extern.slf4j.Slf4j;
 import model.tmdb.Movie;
 import model.tmdb.MovieList;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import service.tmdbApi.TMDBApiService;
 import service.tmdbApi.TMDBMovieCacheService;
+import utils.DirectoryLock;
+import utils.HttpUtil;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -16,7 +24,13 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
@@ -27,9 +41,13 @@ import static org.junit.Assert.*;
 public class TMDBMovieCacheServiceTest {
     private static final String TEST_CACHE_DIR = "test_cache";
     private static final String TEST_CACHE_FILE = TEST_CACHE_DIR + "/popular_movies.json";
+    private static final String TEST_NDJSON_CACHE_FILE = TEST_CACHE_DIR + "/popular_movies.ndjson";
     private static final String TEST_LAST_UPDATE_FILE = TEST_CACHE_DIR + "/last_update.txt";
     private static final int TEST_MOVIE_COUNT = 20; // Get 20 movies during testing
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void setUp() throws IOException {
         TMDBMovieCacheService.setCache(TEST_CACHE_DIR);
@@ -41,6 +59,7 @@ public class TMDBMovieCacheServiceTest {
 
     @After
     public void tearDown() throws IOException {
+        TMDBMovieCacheService.setRefreshListener(null);
         cleanTestCacheDir();
     }
 
@@ -236,4 +255,211 @@ public class TMDBMovieCacheServiceTest {
         // Verify that a re-fetch is triggered
         assertTrue("The cache file should be updated", Files.size(Paths.get(TEST_CACHE_FILE)) > originalSize);
     }
+
+    @Test
+    public void testStreamingCacheRoundTrip() throws Exception {
+        Files.createDirectories(Paths.get(TEST_CACHE_DIR));
+        List<Movie> movies = createTestMovieList(TEST_MOVIE_COUNT).getResults();
+
+        TMDBMovieCacheService.writeToCache(movies);
+
+        List<String> lines = Files.readAllLines(Paths.get(TEST_NDJSON_CACHE_FILE));
+        assertTrue("The checksum comes first", lines
+                .get(0)
+                .startsWith("#crc32:"));
+        assertEquals("One record per line after the checksum", TEST_MOVIE_COUNT + 1, lines.size());
+
+        List<Movie> firstFive = TMDBMovieCacheService.readFromCache(5);
+        assertEquals("Only the requested number of records should be read", 5, firstFive.size());
+        assertEquals("Test Movie 1", firstFive.get(0).getTitle());
+        assertEquals(movies.get(4), firstFive.get(4));
+
+        List<Movie> all = TMDBMovieCacheService.readFromCache(TEST_MOVIE_COUNT + 10);
+        assertEquals(TEST_MOVIE_COUNT, all.size());
+    }
+
+    @Test
+    public void testReadLegacyArrayCache() throws Exception {
+        String cachedData = "[{\"id\":1,\"title\":\"Cached Movie 1\",\"popularity\":100.0}," +
+                "{\"id\":2,\"title\":\"Cached Movie 2\",\"popularity\":90.0}," +
+                "{\"id\":3,\"title\":\"Cached Movie 3\",\"popularity\":80.0}]";
+        Files.createDirectories(Paths.get(TEST_CACHE_DIR));
+        Files.write(Paths.get(TEST_CACHE_FILE), cachedData.getBytes(StandardCharsets.UTF_8));
+
+        List<Movie> movies = TMDBMovieCacheService.readFromCache(2);
+
+        assertEquals(2, movies.size());
+        assertEquals("Cached Movie 2", movies.get(1).getTitle());
+    }
+
+    @Test
+    public void testIncrementalRefresh() throws Exception {
+        List<String> paths = new CopyOnWriteArrayList<>();
+        MockWebServer mockWebServer = new MockWebServer();
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                paths.add(path);
+                if (path.startsWith("/movie/changes")) {
+                    return new MockResponse().setBody("{\"page\":1,\"total_pages\":1,\"results\":" +
+                                                              "[{\"id\":3,\"adult\":false},{\"id\":999}]}");
+                }
+                if (path.startsWith("/movie/3?")) {
+                    return new MockResponse().setBody("{\"id\":3,\"title\":\"Renamed Movie 3\"," +
+                                                              "\"popularity\":200.0,\"genres\":[{\"id\":18," +
+                                                              "\"name\":\"Drama\"}]}");
+                }
+                if (path.startsWith("/discover/movie") && path.contains("page=1&")) {
+                    return new MockResponse().setBody("{\"page\":1,\"total_pages\":1,\"results\":" +
+                                                              "[{\"id\":500,\"title\":\"New Movie\"," +
+                                                              "\"popularity\":150.0}]}");
+                }
+                if (path.startsWith("/discover/movie")) {
+                    return new MockResponse().setBody("{\"page\":2,\"total_pages\":1,\"results\":[]}");
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        mockWebServer.start();
+        String originalBaseUrl = TMDBApiService.getBaseUrl();
+        try {
+            TMDBApiService.setBaseUrl("http://" + mockWebServer.getHostName() + ":" + mockWebServer.getPort());
+            TMDBApiService.setTestDetailData(null, null);
+            TMDBApiService.resetCircuitBreaker();
+            HttpUtil.setCacheDirectory(folder.newFolder("http").getAbsolutePath());
+
+            // 40 cached movies, last refreshed two days ago
+            Files.createDirectories(Paths.get(TEST_CACHE_DIR));
+            List<Movie> cached = new ArrayList<>(createTestMovieList(20).getResults());
+            cached.addAll(createTestMovieList(40)
+                                  .getResults()
+                                  .subList(20, 40));
+            TMDBMovieCacheService.writeToCache(cached);
+            Files.write(Paths.get(TEST_LAST_UPDATE_FILE), LocalDateTime
+                    .now()
+                    .minusDays(2)
+                    .toString()
+                    .getBytes(StandardCharsets.UTF_8));
+
+            List<Movie> notified = new ArrayList<>();
+            TMDBMovieCacheService.setRefreshListener((all, changed) -> notified.addAll(changed));
+
+            List<Movie> movies = TMDBMovieCacheService.refreshMovieCache(40);
+
+            assertEquals(40, movies.size());
+            assertEquals("The changed movie moves to the top", 3, movies.get(0).getId());
+            assertEquals("Renamed Movie 3", movies.get(0).getTitle());
+            assertArrayEquals(new int[]{18}, movies.get(0).getGenreIds());
+            assertEquals("The new movie enters the list", 500, movies.get(1).getId());
+            assertFalse("The least popular movie drops out", movies
+                    .stream()
+                    .anyMatch(movie -> movie.getId() == 40));
+
+            // Only the change feed, one changed detail and the top pages are requested
+            assertTrue(paths.get(0).startsWith("/movie/changes"));
+            assertEquals(1, paths
+                    .stream()
+                    .filter(path -> path.startsWith("/movie/3?"))
+                    .count());
+            assertFalse("Changed movies outside the cached list are not fetched", paths
+                    .stream()
+                    .anyMatch(path -> path.startsWith("/movie/999")));
+            assertTrue(paths.size() <= 4);
+
+            assertEquals(List.of(3, 500), notified
+                    .stream()
+                    .map(Movie::getId)
+                    .sorted()
+                    .collect(Collectors.toList()));
+            assertEquals(40, TMDBMovieCacheService.readFromCache(100).size());
+        } finally {
+            mockWebServer.shutdown();
+            TMDBApiService.setBaseUrl(originalBaseUrl);
+        }
+    }
+
+    @Test
+    public void testBackgroundRefresh() throws Exception {
+        TMDBApiService.setTestMode(true, createTestMovieList(TEST_MOVIE_COUNT));
+        CountDownLatch refreshed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Movie> notified = new CopyOnWriteArrayList<>();
+        TMDBMovieCacheService.setRefreshListener((movies, changed) -> {
+            notified.addAll(movies);
+            refreshed.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread
+                        .currentThread()
+                        .interrupt();
+            }
+        });
+
+        assertTrue("A refresh should be scheduled", TMDBMovieCacheService.refreshMovieCacheAsync(TEST_MOVIE_COUNT));
+        assertTrue(refreshed.await(10, TimeUnit.SECONDS));
+        assertFalse("Only one background refresh may run at a time",
+                    TMDBMovieCacheService.refreshMovieCacheAsync(TEST_MOVIE_COUNT));
+        release.countDown();
+
+        assertEquals(TEST_MOVIE_COUNT, notified.size());
+        assertEquals(TEST_MOVIE_COUNT, TMDBMovieCacheService.readFromCache(100).size());
+        assertTrue(Files.exists(Paths.get(TEST_LAST_UPDATE_FILE)));
+    }
+
+    @Test
+    public void testServeStaleWhileAnotherProcessRefreshes() throws Exception {
+        Files.createDirectories(Paths.get(TEST_CACHE_DIR));
+        List<Movie> cached = createTestMovieList(TEST_MOVIE_COUNT).getResults();
+        cached.forEach(movie -> movie.setTitle("Cached " + movie.getTitle()));
+        TMDBMovieCacheService.writeToCache(cached);
+        Files.write(Paths.get(TEST_LAST_UPDATE_FILE), LocalDateTime
+                .now()
+                .minusDays(2)
+                .toString()
+                .getBytes(StandardCharsets.UTF_8));
+        TMDBApiService.setTestMode(true, createTestMovieList(TEST_MOVIE_COUNT));
+
+        // Another refresher holds the cache directory lock
+        DirectoryLock lock = DirectoryLock.forDirectory(Paths.get(TEST_CACHE_DIR));
+        lock.lock();
+        List<Movie> served;
+        try {
+            served = CompletableFuture
+                    .supplyAsync(() -> TMDBMovieCacheService.refreshMovieCache(TEST_MOVIE_COUNT))
+                    .get(10, TimeUnit.SECONDS);
+        } finally {
+            lock.unlock();
+        }
+        assertEquals(TEST_MOVIE_COUNT, served.size());
+        assertEquals("The stale cache is served instead of a second refresh", "Cached Test Movie 1", served
+                .get(0)
+                .getTitle());
+
+        // Once the lock is free the refresh runs
+        List<Movie> refreshed = TMDBMovieCacheService.refreshMovieCache(TEST_MOVIE_COUNT);
+        assertEquals("Test Movie 1", refreshed
+                .get(0)
+                .getTitle());
+    }
+
+    @Test
+    public void testTornCacheFileIsIgnored() throws Exception {
+        Files.createDirectories(Paths.get(TEST_CACHE_DIR));
+        TMDBMovieCacheService.writeToCache(createTestMovieList(TEST_MOVIE_COUNT).getResults());
+        assertTrue("The checksum lives in the cache file itself", new String(Files.readAllBytes(
+                Paths.get(TEST_NDJSON_CACHE_FILE)), StandardCharsets.US_ASCII).startsWith("#crc32:"));
+        assertFalse(Files.exists(Paths.get(TEST_NDJSON_CACHE_FILE + ".crc32")));
+        assertFalse("No temporary file is left behind", Files.exists(Paths.get(TEST_NDJSON_CACHE_FILE + ".tmp")));
+        assertEquals(TEST_MOVIE_COUNT, TMDBMovieCacheService.readFromCache(100).size());
+
+        // Cut the file in the middle of a record, as a crashed non-atomic write would
+        byte[] content = Files.readAllBytes(Paths.get(TEST_NDJSON_CACHE_FILE));
+        Files.write(Paths.get(TEST_NDJSON_CACHE_FILE), Arrays.copyOf(content, content.length / 2));
+
+        assertTrue("A torn cache file is treated as missing", TMDBMovieCacheService
+                .readFromCache(100)
+                .isEmpty());
+    }
 }
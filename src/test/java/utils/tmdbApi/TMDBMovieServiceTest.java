@@ -4,26 +4,39 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import model.tmdb.Movie;
 import model.tmdb.MovieList;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import service.tmdbApi.TMDBApiService;
 import service.tmdbApi.TMDBMovieCacheService;
 import service.tmdbApi.TMDBMovieService;
+import utils.CircuitBreaker;
+import utils.HttpUtil;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * TMDB Movie Service Test Category
  */
 @Slf4j
 public class TMDBMovieServiceTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private MockWebServer mockWebServer;
     private String originalBaseUrl;
 
@@ -41,19 +54,13 @@ public class TMDBMovieServiceTest {
     public void tearDown() throws IOException {
         mockWebServer.shutdown();
         TMDBMovieService.setBaseUrl(originalBaseUrl);
+        // Test classes share the JVM; leave the API serving test data whichever test ran last
+        TMDBApiService.setTestMode(true, createTestMovieList());
     }
 
     @Test
     public void testGetPopularMovies() throws Exception {
-        List<Movie> moviesList = createTestMovies();
-
-        MovieList movieList = new MovieList();
-        movieList.setPage(1);
-        movieList.setResults(moviesList);
-        movieList.setTotalPages(1);
-        movieList.setTotalResults(moviesList.size());
-
-        TMDBApiService.setTestMode(true, movieList);
+        TMDBApiService.setTestMode(true, createTestMovieList());
 
         List<Movie> movies = TMDBMovieService.getPopularMovies(3);
 
@@ -81,9 +88,70 @@ public class TMDBMovieServiceTest {
         assertEquals(80.0, lastMovie.getPopularity(), 0.001);
     }
 
+    @Test
+    public void testMissingMovieAndEmptySearchAreNotRequestedTwice() throws Exception {
+        TMDBApiService.setTestMode(false, null);
+        TMDBApiService.setTestDetailData(null, null);
+        TMDBApiService.resetCircuitBreaker();
+        HttpUtil.setCacheDirectory(folder
+                                           .newFolder("http")
+                                           .getAbsolutePath());
+        mockWebServer.enqueue(new MockResponse().setResponseCode(404));
+        mockWebServer.enqueue(new MockResponse().setBody("{\"page\":1,\"total_pages\":0,\"results\":[]}"));
+        long avoided = TMDBApiService.getAvoidedRequests();
+
+        assertNull(TMDBApiService.getMovieDetails(999999));
+        assertNull(TMDBApiService.getMovieDetails(999999));
+        assertTrue(TMDBApiService
+                           .searchMovies("Incpetion", 1)
+                           .isEmpty());
+        assertTrue(TMDBApiService
+                           .searchMovies(" incpetion ", 1)
+                           .isEmpty());
+
+        assertEquals("Repeated lookups are answered by the negative cache", 2, mockWebServer.getRequestCount());
+        assertEquals(2, TMDBApiService.getAvoidedRequests() - avoided);
+    }
+
+    @Test
+    public void testMissedCallerDeadlinesDoNotOpenTheCircuit() throws Exception {
+        TMDBApiService.setTestMode(false, null);
+        TMDBApiService.resetCircuitBreaker();
+        HttpUtil.setCacheDirectory(folder
+                                           .newFolder("http")
+                                           .getAbsolutePath());
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setBody("{\"page\":1,\"total_pages\":1,\"results\":[{\"id\":5,\"title\":\"Late\"}]}")
+                        .setHeadersDelay(1, TimeUnit.SECONDS);
+            }
+        });
+
+        // More misses than the failure threshold, all caused by the caller's own deadline
+        for (int i = 0; i < 8; i++) {
+            assertTrue(TMDBApiService
+                               .searchMovies("slow query " + i, 1, 50)
+                               .isEmpty());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, TMDBApiService.getCircuitState());
+    }
+
     /**
      * Create a list of movies for testing
      */
+    private MovieList createTestMovieList() {
+        List<Movie> moviesList = createTestMovies();
+
+        MovieList movieList = new MovieList();
+        movieList.setPage(1);
+        movieList.setResults(moviesList);
+        movieList.setTotalPages(1);
+        movieList.setTotalResults(moviesList.size());
+        return movieList;
+    }
+
     private List<Movie> createTestMovies() {
         List<Movie> movies = new ArrayList<>();
 
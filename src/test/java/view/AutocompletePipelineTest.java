@@ -0,0 +1,112 @@
+package view;
+
+import model.tmdb.Movie;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Autocomplete pipeline test class
+ */
+public class AutocompletePipelineTest {
+    // Stands in for the GUI thread
+    private ExecutorService uiThread;
+    private final List<String> searched = Collections.synchronizedList(new ArrayList<>());
+    private final List<List<String>> rendered = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() {
+        uiThread = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        uiThread.shutdownNow();
+    }
+
+    @Test
+    public void testFastTypingSearchesOnlyTheLatestInput() throws Exception {
+        try (AutocompletePipeline pipeline = newPipeline((prefix, deadline, late, slot) -> {
+            searched.add(prefix);
+            return List.of(movie(1, prefix + " Movie"));
+        })) {
+            for (String text : new String[]{"I", "In", "Inc", "Ince", "Incep"}) {
+                uiThread.submit(() -> pipeline.onTextChanged(text));
+                Thread.sleep(5);
+            }
+            waitForRenders(1);
+
+            assertEquals(List.of("Incep"), searched);
+            assertEquals(List.of(List.of("Incep Movie")), rendered);
+            assertEquals(1, pipeline.getRenderCount());
+            assertTrue(pipeline.getMaxLatencyMillis() >= 30);
+        }
+    }
+
+    @Test
+    public void testLateResultsAreMergedUnlessSuperseded() throws Exception {
+        List<Consumer<List<Movie>>> lateCallbacks = Collections.synchronizedList(new ArrayList<>());
+        try (AutocompletePipeline pipeline = newPipeline((prefix, deadline, late, slot) -> {
+            lateCallbacks.add(late);
+            return Collections.emptyList();
+        })) {
+            uiThread.submit(() -> pipeline.onTextChanged("Zyz"));
+            waitForRenders(1);
+            lateCallbacks
+                    .get(0)
+                    .accept(List.of(movie(7, "Zyzzyx Road")));
+            waitForRenders(2);
+            assertEquals(List.of("Zyzzyx Road"), rendered.get(1));
+
+            // Results of a query the player has moved on from are dropped
+            uiThread.submit(() -> pipeline.onTextChanged("Zyzq"));
+            waitForRenders(3);
+            lateCallbacks
+                    .get(0)
+                    .accept(List.of(movie(8, "Zyzzyx Road 2")));
+            Thread.sleep(100);
+            assertEquals(3, rendered.size());
+            assertTrue(rendered
+                               .get(2)
+                               .isEmpty());
+        }
+    }
+
+    private AutocompletePipeline newPipeline(AutocompletePipeline.Search search) {
+        return new AutocompletePipeline(search, 30, 50, uiThread, movies -> {
+            List<String> titles = new ArrayList<>();
+            movies.forEach(movie -> titles.add(movie.getTitle()));
+            rendered.add(titles);
+        });
+    }
+
+    private void waitForRenders(int count) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (rendered.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        // Let the UI thread finish the render in progress
+        uiThread
+                .submit(() -> {
+                })
+                .get();
+        assertEquals(count, rendered.size());
+    }
+
+    private static Movie movie(int id, String title) {
+        Movie movie = new Movie();
+        movie.setId(id);
+        movie.setTitle(title);
+        return movie;
+    }
+}